@@ -0,0 +1,45 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the buildfarm JMH benchmarks, writing results as JSON for regression tracking.
+ *
+ * <p>Arguments are passed through to JMH, so benchmarks can be selected with a regular expression
+ * and options overridden, e.g. {@code ExecutionQueueBenchmark -f 1 -wi 1 -i 3}. Unless a result
+ * format or file is given, results are written to {@code jmh-result.json} in the directory that
+ * {@code bazel run} was invoked from.
+ */
+public final class Benchmarks {
+  private Benchmarks() {}
+
+  public static void main(String[] args) throws Exception {
+    List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+    if (!jmhArgs.contains("-rf") && !jmhArgs.contains("-rff")) {
+      String workingDirectory = System.getenv("BUILD_WORKING_DIRECTORY");
+      Path result =
+          workingDirectory == null
+              ? Path.of("jmh-result.json")
+              : Path.of(workingDirectory, "jmh-result.json");
+      jmhArgs.addAll(List.of("-rf", "json", "-rff", result.toString()));
+    }
+    org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+  }
+}
@@ -0,0 +1,100 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas;
+
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.buildfarm.cas.ContentAddressableStorage.Blob;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.Iterables;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent reads and writes of a MemoryCAS that holds half of the blobs in use, so that reads
+ * miss, put and expire entries at a steady rate, as well as batched existence checks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class MemoryCASBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+  private static final int BLOB_SIZE = 1024;
+
+  @Param({"10000"})
+  public int blobCount;
+
+  @Param({"100"})
+  public int batchSize;
+
+  private final List<Blob> blobs = new ArrayList<>();
+  private final List<build.bazel.remote.execution.v2.Digest> digests = new ArrayList<>();
+  private MemoryCAS cas;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < blobCount; i++) {
+      byte[] content = new byte[BLOB_SIZE];
+      ThreadLocalRandom.current().nextBytes(content);
+      Blob blob = new Blob(ByteString.copyFrom(content), DIGEST_UTIL);
+      blobs.add(blob);
+      digests.add(DigestUtil.toDigest(blob.getDigest()));
+    }
+    cas = new MemoryCAS((long) blobCount * BLOB_SIZE / 2);
+    for (Blob blob : blobs.subList(0, blobCount / 2)) {
+      cas.put(blob);
+    }
+  }
+
+  @Benchmark
+  public Blob getOrPut() {
+    Blob blob = blobs.get(ThreadLocalRandom.current().nextInt(blobCount));
+    Digest digest = blob.getDigest();
+    Blob stored = cas.get(digest);
+    if (stored == null) {
+      cas.put(blob);
+      stored = blob;
+    }
+    return stored;
+  }
+
+  @Benchmark
+  public int findMissingBlobs() throws InterruptedException {
+    int start = ThreadLocalRandom.current().nextInt(blobCount - batchSize);
+    return Iterables.size(
+        cas.findMissingBlobs(
+            digests.subList(start, start + batchSize), DigestFunction.Value.SHA256));
+  }
+}
@@ -0,0 +1,158 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.common.io.Directories;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent references of blobs in a CASFileCache on the local filesystem, as input fetches do.
+ *
+ * <p>Each reference puts the blob if it is not present, and releases it immediately. Blobs are
+ * supplied from memory. The cache holds half of the blobs in use, so that referencing any of them
+ * puts and evicts entries at a steady rate, while referencing the resident blobs measures the
+ * synchronization of the reference counts and the LRU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class CASFileCacheBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  @Param({"4096"})
+  public int blobCount;
+
+  @Param({"4096"})
+  public int blobSize;
+
+  private final Map<Digest, ByteString> blobs = new HashMap<>();
+  private final List<Digest> digests = new ArrayList<>();
+  private Path root;
+  private ExecutorService expireService;
+  private CASFileCache fileCache;
+
+  @Setup
+  public void setUp() throws IOException, InterruptedException {
+    Random random = new Random(blobCount);
+    for (int i = 0; i < blobCount; i++) {
+      byte[] content = new byte[blobSize];
+      random.nextBytes(content);
+      ByteString blob = ByteString.copyFrom(content);
+      Digest digest = DIGEST_UTIL.compute(blob);
+      blobs.put(digest, blob);
+      digests.add(digest);
+    }
+    root = Files.createTempDirectory("cas-file-cache-benchmark");
+    expireService = newSingleThreadExecutor();
+    fileCache =
+        new CASFileCache(
+            root,
+            /* maxSizeInBytes= */ (long) blobCount * blobSize / 2,
+            /* maxEntrySizeInBytes= */ blobSize,
+            /* hexBucketLevels= */ 0,
+            /* storeFileDirsIndexInMemory= */ true,
+            /* execRootFallback= */ false,
+            expireService,
+            /* accessRecorder= */ directExecutor(),
+            Maps.newConcurrentMap(),
+            /* directoriesIndexDbName= */ ":memory:",
+            /* zstdBufferPool= */ null,
+            /* onPut= */ digest -> {},
+            /* onExpire= */ expired -> {},
+            /* delegate= */ null,
+            /* delegateSkipLoad= */ false) {
+          @Override
+          protected InputStream newExternalInput(
+              Compressor.Value compressor, Digest digest, long offset) throws IOException {
+            ByteString blob = blobs.get(digest);
+            if (blob == null) {
+              throw new NoSuchFileException(DigestUtil.toString(digest));
+            }
+            return blob.substring((int) offset).newInput();
+          }
+        };
+    fileCache.start(/* skipLoad= */ false);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException, InterruptedException {
+    fileCache.stop();
+    if (!shutdownAndAwaitTermination(expireService, 1, SECONDS)) {
+      throw new RuntimeException("could not shut down expire service");
+    }
+    Directories.remove(root, Files.getFileStore(root));
+  }
+
+  private void reference(Digest digest) throws IOException, InterruptedException {
+    Path path = fileCache.put(digest, /* isExecutable= */ false);
+    fileCache.decrementReferences(
+        ImmutableList.of(path.getFileName().toString()),
+        ImmutableList.of(),
+        DigestFunction.Value.SHA256);
+  }
+
+  @Benchmark
+  public void referenceWithEviction() throws IOException, InterruptedException {
+    reference(digests.get(ThreadLocalRandom.current().nextInt(blobCount)));
+  }
+
+  @Benchmark
+  public void referenceResident() throws IOException, InterruptedException {
+    // a quarter of the blobs, which remain in the cache once put
+    reference(digests.get(ThreadLocalRandom.current().nextInt(blobCount / 4)));
+  }
+}
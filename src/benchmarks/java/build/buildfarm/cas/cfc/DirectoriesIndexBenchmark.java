@@ -0,0 +1,130 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.Iterables;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the DirectoriesIndex implementations on a workload of directories with overlapping
+ * entries: every directory is put, then entries are removed until all directories are invalidated.
+ * Directory entry files are written to an in-memory filesystem, so that the index dominates.
+ *
+ * <p>Run with: bazel run //src/benchmarks/java/build/buildfarm:benchmarks --
+ * DirectoriesIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectoriesIndexBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  @Param({"Sqlite", "HashMap", "Compact"})
+  public String type;
+
+  @Param({"1000"})
+  public int directoryCount;
+
+  @Param({"200"})
+  public int entriesPerDirectory;
+
+  private final List<Digest> directories = new ArrayList<>();
+  private final List<List<String>> directoryEntries = new ArrayList<>();
+  private final List<String> entries = new ArrayList<>();
+  private DirectoriesIndex index;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    Random random = new Random(directoryCount);
+    int entryCount = directoryCount * entriesPerDirectory / 10;
+    for (int i = 0; i < entryCount; i++) {
+      entries.add(DIGEST_UTIL.compute(ByteString.copyFromUtf8("entry-" + i)).getHash());
+    }
+    for (int i = 0; i < directoryCount; i++) {
+      directories.add(DIGEST_UTIL.compute(ByteString.copyFromUtf8("directory-" + i)));
+      List<String> members = new ArrayList<>(entriesPerDirectory);
+      for (int j = 0; j < entriesPerDirectory; j++) {
+        members.add(entries.get(random.nextInt(entryCount)));
+      }
+      directoryEntries.add(members);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void open() throws IOException {
+    Path root =
+        Iterables.getFirst(
+            Jimfs.newFileSystem(Configuration.unix()).getRootDirectories(),
+            /* defaultValue= */ null);
+    EntryPathStrategy entryPathStrategy = new HexBucketEntryPathStrategy(root, /* levels= */ 0);
+    for (Path dir : entryPathStrategy) {
+      Files.createDirectories(dir);
+    }
+    index =
+        switch (type) {
+          case "Sqlite" ->
+              new SqliteFileDirectoriesIndex("jdbc:sqlite::memory:", entryPathStrategy);
+          case "HashMap" -> new MemoryFileDirectoriesIndex(entryPathStrategy);
+          case "Compact" -> new CompactFileDirectoriesIndex(entryPathStrategy);
+          default -> throw new IllegalArgumentException("unknown index type " + type);
+        };
+    index.start();
+  }
+
+  @TearDown(Level.Invocation)
+  public void close() {
+    index.close();
+  }
+
+  @Benchmark
+  public int putAndRemoveEntries() throws IOException {
+    for (int i = 0; i < directoryCount; i++) {
+      index.put(directories.get(i), directoryEntries.get(i));
+    }
+    int removed = 0;
+    for (String entry : entries) {
+      removed += index.removeEntry(entry).size();
+    }
+    return removed;
+  }
+}
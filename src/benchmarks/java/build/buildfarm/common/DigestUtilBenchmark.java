@@ -0,0 +1,63 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.protobuf.ByteString;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Digest computation of in-memory blobs, for each supported hash function and a range of sizes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DigestUtilBenchmark {
+  @Param({"SHA256", "BLAKE3"})
+  public HashFunction hashFunction;
+
+  @Param({"1024", "1048576", "16777216"})
+  public int size;
+
+  private DigestUtil digestUtil;
+  private ByteString blob;
+
+  @Setup
+  public void setUp() {
+    digestUtil = new DigestUtil(hashFunction);
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    blob = ByteString.copyFrom(content);
+  }
+
+  @Benchmark
+  public Digest compute() {
+    return digestUtil.compute(blob);
+  }
+}
@@ -0,0 +1,86 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Digest computation of files through a stream and through a direct buffer, for each supported
+ * hash function and a range of sizes around and above the direct threshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileDigestBenchmark {
+  @Param({"SHA256", "BLAKE3"})
+  public HashFunction hashFunction;
+
+  @Param({"1048576", "16777216", "268435456"})
+  public int size;
+
+  private DigestUtil digestUtil;
+  private Path file;
+
+  @Setup
+  public void setUp() throws IOException {
+    digestUtil = new DigestUtil(hashFunction);
+    file = Files.createTempFile("file-digest-benchmark", null);
+    Random random = new Random(size);
+    byte[] buffer = new byte[1024 * 1024];
+    try (OutputStream out = Files.newOutputStream(file)) {
+      for (int remaining = size; remaining > 0; remaining -= buffer.length) {
+        random.nextBytes(buffer);
+        out.write(buffer, 0, Math.min(remaining, buffer.length));
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(file);
+  }
+
+  @Benchmark
+  public Digest streamed() throws IOException {
+    return digestUtil.compute(file, /* directThreshold= */ Long.MAX_VALUE);
+  }
+
+  @Benchmark
+  public Digest direct() throws IOException {
+    return digestUtil.compute(file, /* directThreshold= */ 0);
+  }
+}
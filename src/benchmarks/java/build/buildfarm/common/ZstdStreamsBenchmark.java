@@ -0,0 +1,92 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import build.buildfarm.common.ZstdDecompressingOutputStream.FixedBufferPool;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compression of blobs read with ZstdCompressingInputStream, and decompression of blobs written in
+ * chunks to ZstdDecompressingOutputStream, as for compressed ByteStream reads and writes. Blobs are
+ * drawn from a small alphabet, so that they compress roughly as source and object files do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZstdStreamsBenchmark {
+  // the chunk size of ByteStream writes from bazel
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  @Param({"65536", "4194304"})
+  public int size;
+
+  private ByteString blob;
+  private byte[] compressed;
+  private FixedBufferPool pool;
+
+  @Setup
+  public void setUp() throws IOException {
+    Random random = new Random(size);
+    byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) ('a' + random.nextInt(16));
+    }
+    blob = ByteString.copyFrom(content);
+    try (InputStream in = new ZstdCompressingInputStream(blob.newInput())) {
+      compressed = in.readAllBytes();
+    }
+    pool = new FixedBufferPool(/* capacity= */ 1);
+  }
+
+  @Benchmark
+  public long compress() throws IOException {
+    try (InputStream in = new ZstdCompressingInputStream(blob.newInput())) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  @Benchmark
+  public int decompress() throws IOException {
+    try (OutputStream out =
+        new ZstdDecompressingOutputStream(OutputStream.nullOutputStream(), pool)) {
+      int offset = 0;
+      while (offset < compressed.length) {
+        int len = Math.min(CHUNK_SIZE, compressed.length - offset);
+        out.write(compressed, offset, len);
+        offset += len;
+      }
+      return offset;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import build.bazel.remote.execution.v2.Platform;
+import build.buildfarm.common.redis.BalancedRedisQueue;
+import build.buildfarm.common.redis.BalancedRedisQueue.BalancedQueueEntry;
+import build.buildfarm.common.redis.ProvisionedRedisQueue;
+import build.buildfarm.common.redis.RedisQueue;
+import build.buildfarm.instance.shard.ExecutionQueue.ExecutionQueueEntry;
+import build.buildfarm.v1test.ExecuteEntry;
+import build.buildfarm.v1test.QueueEntry;
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.protobuf.util.JsonFormat;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisCluster;
+
+/**
+ * Round trips of entries through a BalancedRedisQueue and through the ExecutionQueue of the
+ * backplane: offer, dequeue and removal from the dequeue, as an operation passes from a server to a
+ * worker. Redis is served in process by jedis-mock in cluster mode, so that the benchmark runs
+ * offline and measures the client side of the queues, including the connection per queue
+ * operation, rather than the latency of a real cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExecutionQueueBenchmark {
+  @Param({"1", "8"})
+  public int hashtagCount;
+
+  private RedisServer redisServer;
+  private JedisCluster jedis;
+  private ExecutorService service;
+  private BalancedRedisQueue balancedQueue;
+  private ExecutionQueue executionQueue;
+  private String queueEntryJson;
+
+  @Setup
+  public void setUp() throws IOException {
+    redisServer =
+        RedisServer.newRedisServer(0, InetAddress.getByName("localhost"))
+            .setOptions(ServiceOptions.defaultOptions().withClusterModeEnabled())
+            .start();
+    jedis =
+        new JedisCluster(
+            Collections.singleton(
+                new HostAndPort(redisServer.getHost(), redisServer.getBindPort())));
+    service = Executors.newCachedThreadPool();
+
+    ImmutableList.Builder<String> hashtags = ImmutableList.builder();
+    for (int i = 0; i < hashtagCount; i++) {
+      hashtags.add("queue" + i);
+    }
+    balancedQueue = new BalancedRedisQueue("balanced", hashtags.build(), RedisQueue::decorate);
+    SetMultimap<String, String> provisions = LinkedHashMultimap.create();
+    provisions.put(ProvisionedRedisQueue.WILDCARD_VALUE, ProvisionedRedisQueue.WILDCARD_VALUE);
+    executionQueue =
+        new ExecutionQueue(
+            ImmutableList.of(
+                new ProvisionedRedisQueue(
+                    "{Execution}:QueuedOperations",
+                    RedisQueue::decorate,
+                    hashtags.build(),
+                    provisions)));
+    queueEntryJson =
+        JsonFormat.printer()
+            .print(
+                QueueEntry.newBuilder()
+                    .setExecuteEntry(
+                        ExecuteEntry.newBuilder()
+                            .setOperationName("shard/operations/benchmark")
+                            .setStdoutStreamName("stdout")
+                            .setStderrStreamName("stderr"))
+                    .build());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    service.shutdownNow();
+    jedis.close();
+    redisServer.stop();
+  }
+
+  @Benchmark
+  public BalancedQueueEntry balancedQueueRoundTrip() throws InterruptedException {
+    balancedQueue.offer(jedis, queueEntryJson);
+    BalancedQueueEntry entry = balancedQueue.pollAny(jedis);
+    balancedQueue.removeFromDequeue(jedis, entry);
+    return entry;
+  }
+
+  @Benchmark
+  public ExecutionQueueEntry executionQueueRoundTrip() throws InterruptedException {
+    List<Platform.Property> platform = ImmutableList.of();
+    executionQueue.push(jedis, platform, queueEntryJson, /* priority= */ 0);
+    ExecutionQueueEntry entry = executionQueue.dequeue(jedis, platform, service);
+    ExecutionQueue.removeFromDequeue(jedis, entry);
+    return entry;
+  }
+}
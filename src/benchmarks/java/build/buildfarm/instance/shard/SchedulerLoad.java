@@ -0,0 +1,611 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.util.concurrent.Futures.addCallback;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import build.bazel.remote.execution.v2.Action;
+import build.bazel.remote.execution.v2.ActionResult;
+import build.bazel.remote.execution.v2.Command;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.ExecuteOperationMetadata;
+import build.bazel.remote.execution.v2.ExecuteResponse;
+import build.bazel.remote.execution.v2.ExecutedActionMetadata;
+import build.bazel.remote.execution.v2.ExecutionPolicy;
+import build.bazel.remote.execution.v2.ExecutionStage;
+import build.bazel.remote.execution.v2.FileNode;
+import build.bazel.remote.execution.v2.OutputFile;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import build.bazel.remote.execution.v2.ResultsCachePolicy;
+import build.buildfarm.actioncache.ShardActionCache;
+import build.buildfarm.cas.ContentAddressableStorage.Blob;
+import build.buildfarm.cas.MemoryCAS;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.ActionKey;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.common.config.BuildfarmConfigs;
+import build.buildfarm.common.redis.Cluster;
+import build.buildfarm.common.services.ByteStreamService;
+import build.buildfarm.common.services.ContentAddressableStorageService;
+import build.buildfarm.instance.stub.StubInstance;
+import build.buildfarm.v1test.Digest;
+import build.buildfarm.v1test.ExecuteEntry;
+import build.buildfarm.v1test.QueueEntry;
+import build.buildfarm.v1test.QueuedOperationMetadata;
+import build.buildfarm.v1test.ShardWorker;
+import build.buildfarm.v1test.WorkerType;
+import build.buildfarm.worker.LatencyHistogram;
+import build.buildfarm.worker.shard.WorkerInstance;
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.operations.server.MockExecutor;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.devtools.common.options.OptionsParser;
+import com.google.longrunning.Operation;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.Timestamps;
+import com.google.rpc.Code;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.UnifiedJedis;
+
+/**
+ * An in-process load generator for the scheduling path of a shard cluster: Execute, prequeue,
+ * transform and queue on a ServerInstance, dispatch on a worker, and the report of the completed
+ * execution back to the server's watcher.
+ *
+ * <p>Redis is served in process by jedis-mock in cluster mode, with every command counted. Workers
+ * are simulated with a MemoryCAS each, served to the server over in-process channels, and with an
+ * executor that does nothing but record the action's output and result, so that the measurements
+ * reflect only the server, the backplane and the queue. Actions form layered graphs, in which each
+ * action consumes the outputs of actions in the previous level, and are submitted at a fixed rate
+ * as soon as their inputs are available.
+ *
+ * <p>Run with:
+ *
+ * <pre>
+ * bazel run //src/benchmarks/java/build/buildfarm:scheduler-load -- --workers=8 --rate=200
+ * </pre>
+ */
+@Log
+public final class SchedulerLoad {
+  private static BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
+
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+  private static final String INSTANCE_NAME = "scheduler-load";
+  private static final String OUTPUT_PATH = "out";
+  private static final long WORKER_CAS_SIZE = 1L << 30;
+  private static final int TOP_COMMANDS = 10;
+
+  /** An action of a graph, which is submitted once all of the actions it depends upon complete. */
+  private static final class GraphAction {
+    final Digest actionDigest;
+    final AtomicInteger remainingDependencies;
+    final List<GraphAction> dependents = new ArrayList<>();
+
+    GraphAction(Digest actionDigest, int dependencies) {
+      this.actionDigest = actionDigest;
+      remainingDependencies = new AtomicInteger(dependencies);
+    }
+  }
+
+  private final SchedulerLoadOptions options;
+  private final Random random = new Random();
+  private final Map<String, LongAdder> redisCommands = new ConcurrentHashMap<>();
+  private final LatencyHistogram queueLatency = new LatencyHistogram();
+  private final LatencyHistogram completionLatency = new LatencyHistogram();
+  private final LongAdder failed = new LongAdder();
+  private final BlockingQueue<GraphAction> ready = new LinkedBlockingQueue<>();
+  private final List<MemoryCAS> storages = new ArrayList<>();
+  private final List<Server> workerServers = new ArrayList<>();
+  private final List<Thread> workerSlots = new ArrayList<>();
+  private RedisServer redisServer;
+  private RedisShardBackplane workerBackplane;
+  private ServerInstance instance;
+  private CountDownLatch remaining;
+  private volatile boolean stopped = false;
+
+  private SchedulerLoad(SchedulerLoadOptions options) {
+    this.options = options;
+  }
+
+  private void countCommand(String name) {
+    redisCommands.computeIfAbsent(name.toLowerCase(), k -> new LongAdder()).increment();
+  }
+
+  private long redisCommandCount() {
+    return redisCommands.values().stream().mapToLong(LongAdder::sum).sum();
+  }
+
+  private Supplier<UnifiedJedis> startRedis() throws IOException {
+    redisServer =
+        RedisServer.newRedisServer(0, InetAddress.getByName("localhost"))
+            .setOptions(
+                ServiceOptions.withInterceptor(
+                        (state, roName, params) -> {
+                          countCommand(roName);
+                          return MockExecutor.proceed(state, roName, params);
+                        })
+                    .withClusterModeEnabled())
+            .start();
+    HostAndPort hostAndPort = new HostAndPort(redisServer.getHost(), redisServer.getBindPort());
+    ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+    poolConfig.setMaxTotal(configs.getBackplane().getJedisPoolMaxTotal());
+    return () ->
+        new Cluster(
+            ImmutableSet.of(hostAndPort),
+            DefaultJedisClientConfig.builder().build(),
+            /* maxAttempts= */ 5,
+            poolConfig);
+  }
+
+  private static String workerName(int index) {
+    return "worker-" + index;
+  }
+
+  private void startWorkers() throws IOException {
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < options.workers; i++) {
+      String name = workerName(i);
+      MemoryCAS storage =
+          new MemoryCAS(
+              WORKER_CAS_SIZE,
+              digest -> {
+                try {
+                  workerBackplane.addBlobLocation(digest, name);
+                } catch (IOException e) {
+                  throw new RuntimeException(e);
+                }
+              },
+              /* delegate= */ null);
+      storages.add(storage);
+      WorkerInstance workerInstance = new WorkerInstance(name, workerBackplane, storage);
+      workerServers.add(
+          InProcessServerBuilder.forName(name)
+              .directExecutor()
+              .addService(new ContentAddressableStorageService(workerInstance))
+              .addService(new ByteStreamService(workerInstance))
+              .build()
+              .start());
+      workerBackplane.addWorker(
+          ShardWorker.newBuilder()
+              .setEndpoint(name)
+              .setWorkerType(WorkerType.EXECUTE.getNumber() | WorkerType.STORAGE.getNumber())
+              .setFirstRegisteredAt(now)
+              .setExpireAt(now + DAYS.toMillis(1))
+              .setCapacity(WORKER_CAS_SIZE)
+              .build());
+      for (int slot = 0; slot < options.workerSlots; slot++) {
+        Thread thread = new Thread(() -> runSlot(name, storage), name + "-slot-" + slot);
+        workerSlots.add(thread);
+      }
+    }
+  }
+
+  private static LoadingCache<String, StubInstance> createWorkerStubs() {
+    return CacheBuilder.newBuilder()
+        .build(
+            new CacheLoader<>() {
+              @SuppressWarnings("NullableProblems")
+              @Override
+              public StubInstance load(String worker) {
+                return new StubInstance(
+                    "",
+                    worker,
+                    InProcessChannelBuilder.forName(worker).directExecutor().build(),
+                    Durations.fromSeconds(60));
+              }
+            });
+  }
+
+  private void startServer(Supplier<UnifiedJedis> jedisClusterFactory) throws IOException {
+    RedisShardBackplane backplane =
+        new RedisShardBackplane(
+            INSTANCE_NAME,
+            /* subscribeToBackplane= */ true,
+            /* runFailsafeOperation= */ false,
+            o -> o,
+            jedisClusterFactory);
+    instance =
+        new ServerInstance(
+            INSTANCE_NAME,
+            backplane,
+            new ShardActionCache(
+                /* maxLocalCacheSize= */ 1000000,
+                backplane,
+                listeningDecorator(newFixedThreadPool(4))),
+            /* runDispatchedMonitor= */ false,
+            /* dispatchedMonitorIntervalSeconds= */ 0,
+            /* runOperationQueuer= */ true,
+            /* maxEntrySizeBytes= */ WORKER_CAS_SIZE,
+            /* maxCpu= */ 0,
+            /* maxRequeueAttempts= */ 5,
+            /* maxActionTimeout= */ Durations.fromHours(1),
+            /* useDenyList= */ false,
+            /* mergeExecutions= */ false,
+            /* onStop= */ () -> {},
+            createWorkerStubs(),
+            /* actionCacheFetchService= */ listeningDecorator(newFixedThreadPool(4)),
+            /* ensureOutputsPresent= */ false);
+    instance.start(INSTANCE_NAME);
+  }
+
+  /** Put a blob in a random worker, as a client upload would. */
+  private Digest putBlob(ByteString content) {
+    Blob blob = new Blob(content, DIGEST_UTIL);
+    if (content.isEmpty()) {
+      return blob.getDigest();
+    }
+    storages.get(random.nextInt(storages.size())).put(blob, /* onExpiration= */ null);
+    return blob.getDigest();
+  }
+
+  private Digest putMessage(Message message) {
+    return putBlob(message.toByteString());
+  }
+
+  private static ByteString outputOf(Digest actionDigest) {
+    return ByteString.copyFromUtf8("output of " + DigestUtil.toString(actionDigest));
+  }
+
+  private List<GraphAction> createGraph(int graph) {
+    Directory.Builder sources = Directory.newBuilder();
+    for (int i = 0; i < options.sourceFiles; i++) {
+      String name = String.format("file%06d", i);
+      sources.addFiles(
+          FileNode.newBuilder()
+              .setName(name)
+              .setDigest(
+                  DigestUtil.toDigest(
+                      putBlob(ByteString.copyFromUtf8("graph " + graph + " " + name)))));
+    }
+    DirectoryNode sourcesNode =
+        DirectoryNode.newBuilder()
+            .setName("src")
+            .setDigest(DigestUtil.toDigest(putMessage(sources.build())))
+            .build();
+
+    List<GraphAction> actions = new ArrayList<>();
+    List<GraphAction> previous = ImmutableList.of();
+    for (int level = 0; level < options.graphDepth; level++) {
+      List<GraphAction> current = new ArrayList<>();
+      for (int i = 0; i < options.graphWidth; i++) {
+        List<GraphAction> dependencies = new ArrayList<>(previous);
+        Collections.shuffle(dependencies, random);
+        dependencies = dependencies.subList(0, Math.min(options.graphFanin, dependencies.size()));
+        Directory.Builder inputRoot = Directory.newBuilder().addDirectories(sourcesNode);
+        for (int j = 0; j < dependencies.size(); j++) {
+          inputRoot.addFiles(
+              FileNode.newBuilder()
+                  .setName(String.format("dep%04d", j))
+                  .setDigest(
+                      DigestUtil.toDigest(
+                          DIGEST_UTIL.compute(outputOf(dependencies.get(j).actionDigest)))));
+        }
+        Command command =
+            Command.newBuilder()
+                .addArguments("true")
+                .addArguments(String.format("%d/%d/%d", graph, level, i))
+                .addOutputPaths(OUTPUT_PATH)
+                .build();
+        Action action =
+            Action.newBuilder()
+                .setCommandDigest(DigestUtil.toDigest(putMessage(command)))
+                .setInputRootDigest(DigestUtil.toDigest(putMessage(inputRoot.build())))
+                .build();
+        GraphAction graphAction = new GraphAction(putMessage(action), dependencies.size());
+        for (GraphAction dependency : dependencies) {
+          dependency.dependents.add(graphAction);
+        }
+        current.add(graphAction);
+      }
+      actions.addAll(current);
+      previous = current;
+    }
+    return actions;
+  }
+
+  private void runSlot(String name, MemoryCAS storage) {
+    while (!stopped) {
+      try {
+        QueueEntry queueEntry = workerBackplane.dispatchOperation(ImmutableList.of());
+        if (queueEntry != null) {
+          execute(name, storage, queueEntry);
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (IOException | RuntimeException e) {
+        if (!stopped) {
+          log.log(Level.SEVERE, name + " could not dispatch or report an execution", e);
+        }
+      }
+    }
+  }
+
+  private void execute(String name, MemoryCAS storage, QueueEntry queueEntry) throws IOException {
+    ExecuteEntry executeEntry = queueEntry.getExecuteEntry();
+    Timestamp workerStart = Timestamps.now();
+    queueLatency.record(
+        Durations.toMicros(Timestamps.between(executeEntry.getQueuedTimestamp(), workerStart)));
+
+    Digest actionDigest = executeEntry.getActionDigest();
+    Blob output = new Blob(outputOf(actionDigest), DIGEST_UTIL);
+    storage.put(output, /* onExpiration= */ null);
+    ActionResult result =
+        ActionResult.newBuilder()
+            .addOutputFiles(
+                OutputFile.newBuilder()
+                    .setPath(OUTPUT_PATH)
+                    .setDigest(DigestUtil.toDigest(output.getDigest())))
+            .setExecutionMetadata(
+                ExecutedActionMetadata.newBuilder()
+                    .setWorker(name)
+                    .setQueuedTimestamp(executeEntry.getQueuedTimestamp())
+                    .setWorkerStartTimestamp(workerStart)
+                    .setWorkerCompletedTimestamp(Timestamps.now()))
+            .build();
+    ActionKey actionKey = DigestUtil.asActionKey(actionDigest);
+    workerBackplane.putActionResult(actionKey, result);
+
+    QueuedOperationMetadata metadata =
+        QueuedOperationMetadata.newBuilder()
+            .setExecuteOperationMetadata(
+                ExecuteOperationMetadata.newBuilder()
+                    .setActionDigest(DigestUtil.toDigest(actionDigest))
+                    .setDigestFunction(actionDigest.getDigestFunction())
+                    .setStage(ExecutionStage.Value.COMPLETED)
+                    .setStdoutStreamName(executeEntry.getStdoutStreamName())
+                    .setStderrStreamName(executeEntry.getStderrStreamName()))
+            .setQueuedOperationDigest(queueEntry.getQueuedOperationDigest())
+            .setRequestMetadata(executeEntry.getRequestMetadata())
+            .build();
+    Operation operation =
+        Operation.newBuilder()
+            .setName(executeEntry.getOperationName())
+            .setDone(true)
+            .setMetadata(Any.pack(metadata))
+            .setResponse(Any.pack(ExecuteResponse.newBuilder().setResult(result).build()))
+            .build();
+    workerBackplane.unmergeExecution(actionKey);
+    workerBackplane.putOperation(operation, ExecutionStage.Value.COMPLETED);
+  }
+
+  private static boolean succeeded(Operation operation) {
+    if (operation == null || !operation.getResponse().is(ExecuteResponse.class)) {
+      return false;
+    }
+    try {
+      ExecuteResponse response = operation.getResponse().unpack(ExecuteResponse.class);
+      return response.getStatus().getCode() == Code.OK.getNumber();
+    } catch (InvalidProtocolBufferException e) {
+      return false;
+    }
+  }
+
+  private void complete(GraphAction action, long startedAt, boolean success) {
+    completionLatency.record(NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+    if (!success) {
+      failed.increment();
+    }
+    // dependents of a failed action are submitted anyway, to keep the load steady
+    for (GraphAction dependent : action.dependents) {
+      if (dependent.remainingDependencies.decrementAndGet() == 0) {
+        ready.add(dependent);
+      }
+    }
+    remaining.countDown();
+  }
+
+  private void submit(GraphAction action) {
+    long startedAt = System.nanoTime();
+    AtomicReference<Operation> last = new AtomicReference<>();
+    RequestMetadata requestMetadata =
+        RequestMetadata.newBuilder()
+            .setToolName(INSTANCE_NAME)
+            .setToolInvocationId(INSTANCE_NAME)
+            .setActionId(action.actionDigest.getHash())
+            .build();
+    addCallback(
+        instance.execute(
+            action.actionDigest,
+            /* skipCacheLookup= */ true,
+            ExecutionPolicy.getDefaultInstance(),
+            ResultsCachePolicy.getDefaultInstance(),
+            requestMetadata,
+            last::set),
+        new FutureCallback<Void>() {
+          @Override
+          public void onSuccess(Void result) {
+            complete(action, startedAt, succeeded(last.get()));
+          }
+
+          @SuppressWarnings("NullableProblems")
+          @Override
+          public void onFailure(Throwable t) {
+            log.log(Level.WARNING, "execution of " + action.actionDigest.getHash() + " failed", t);
+            complete(action, startedAt, /* success= */ false);
+          }
+        },
+        directExecutor());
+  }
+
+  private static String formatLatency(LatencyHistogram histogram) {
+    long[] values = histogram.percentiles(50, 90, 99, 100);
+    return String.format(
+        "p50 %.1fms p90 %.1fms p99 %.1fms max %.1fms",
+        values[0] / 1000.0, values[1] / 1000.0, values[2] / 1000.0, values[3] / 1000.0);
+  }
+
+  private void run() throws Exception {
+    Supplier<UnifiedJedis> jedisClusterFactory = startRedis();
+    workerBackplane =
+        new RedisShardBackplane(
+            INSTANCE_NAME + "-workers",
+            /* subscribeToBackplane= */ false,
+            /* runFailsafeOperation= */ false,
+            o -> o,
+            jedisClusterFactory);
+    workerBackplane.start(INSTANCE_NAME + "-workers");
+    startWorkers();
+    startServer(jedisClusterFactory);
+
+    List<GraphAction> actions = new ArrayList<>();
+    for (int graph = 0; graph < options.graphs; graph++) {
+      actions.addAll(createGraph(graph));
+    }
+    for (GraphAction action : actions) {
+      if (action.remainingDependencies.get() == 0) {
+        ready.add(action);
+      }
+    }
+    System.out.printf(
+        "%d actions in %d graphs uploaded to %d workers with %d slots each%n",
+        actions.size(), options.graphs, options.workers, options.workerSlots);
+
+    remaining = new CountDownLatch(actions.size());
+    workerSlots.forEach(Thread::start);
+    // uploads and registrations are not part of the load
+    redisCommands.clear();
+    RateLimiter rateLimiter = RateLimiter.create(options.rate);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    long deadline = System.nanoTime() + SECONDS.toNanos(options.timeout);
+    while (remaining.getCount() != 0 && System.nanoTime() < deadline) {
+      GraphAction action = ready.poll(100, MILLISECONDS);
+      if (action != null) {
+        rateLimiter.acquire();
+        submit(action);
+      }
+    }
+    long elapsedMicros = stopwatch.elapsed(MICROSECONDS);
+    report(actions.size(), elapsedMicros);
+  }
+
+  private void report(int actionCount, long elapsedMicros) {
+    long completed = actionCount - remaining.getCount();
+    double seconds = elapsedMicros / 1e6;
+    System.out.printf(
+        "completed %d of %d actions (%d failed) in %.1fs: %.1f actions/s%n",
+        completed, actionCount, failed.sum(), seconds, completed / seconds);
+    System.out.println("queue latency: " + formatLatency(queueLatency));
+    System.out.println("completion latency: " + formatLatency(completionLatency));
+    long commands = redisCommandCount();
+    double perAction = completed == 0 ? 0 : (double) commands / completed;
+    System.out.printf("redis commands: %d, %.1f per action%n", commands, perAction);
+    redisCommands.entrySet().stream()
+        .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+        .limit(TOP_COMMANDS)
+        .forEach(
+            entry ->
+                System.out.printf(
+                    "  %-16s %10d %8.1f per action%n",
+                    entry.getKey(),
+                    entry.getValue(),
+                    completed == 0 ? 0 : (double) entry.getValue() / completed));
+  }
+
+  private void stop() throws InterruptedException {
+    stopped = true;
+    for (Thread thread : workerSlots) {
+      thread.interrupt();
+    }
+    for (Thread thread : workerSlots) {
+      thread.join();
+    }
+    if (instance != null) {
+      instance.stop();
+    }
+    if (workerBackplane != null) {
+      workerBackplane.stop();
+    }
+    for (Server server : workerServers) {
+      server.shutdownNow();
+    }
+    if (redisServer != null) {
+      try {
+        redisServer.stop();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "could not stop redis", e);
+      }
+    }
+  }
+
+  private static void printUsage(OptionsParser parser) {
+    System.out.println("Usage: [OPTIONS]");
+    System.out.println(
+        parser.describeOptions(Collections.emptyMap(), OptionsParser.HelpVerbosity.LONG));
+  }
+
+  public static void main(String[] args) throws Exception {
+    OptionsParser parser = OptionsParser.newOptionsParser(SchedulerLoadOptions.class);
+    parser.parseAndExitUponError(args);
+    SchedulerLoadOptions options = parser.getOptions(SchedulerLoadOptions.class);
+    if (options.help || !parser.getResidue().isEmpty()) {
+      printUsage(parser);
+      System.exit(options.help ? 0 : 1);
+    }
+
+    SchedulerLoad load = new SchedulerLoad(options);
+    try {
+      load.run();
+    } finally {
+      load.stop();
+    }
+    System.exit(0);
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import com.google.devtools.common.options.Option;
+import com.google.devtools.common.options.OptionsBase;
+
+/** Command-line options definition for the scheduler load generator. */
+public class SchedulerLoadOptions extends OptionsBase {
+  @Option(name = "help", abbrev = 'h', help = "Prints usage info.", defaultValue = "false")
+  public boolean help;
+
+  @Option(name = "workers", defaultValue = "8", help = "The number of simulated workers.")
+  public int workers;
+
+  @Option(
+      name = "worker_slots",
+      defaultValue = "4",
+      help = "The number of executions that each simulated worker runs at once.")
+  public int workerSlots;
+
+  @Option(
+      name = "rate",
+      defaultValue = "200",
+      help = "The maximum number of actions per second submitted to the server.")
+  public double rate;
+
+  @Option(name = "graphs", defaultValue = "10", help = "The number of action graphs submitted.")
+  public int graphs;
+
+  @Option(
+      name = "graph_width",
+      defaultValue = "20",
+      help = "The number of actions in each level of a graph.")
+  public int graphWidth;
+
+  @Option(name = "graph_depth", defaultValue = "5", help = "The number of levels in a graph.")
+  public int graphDepth;
+
+  @Option(
+      name = "graph_fanin",
+      defaultValue = "3",
+      help = "The number of actions in the previous level whose outputs are inputs of an action.")
+  public int graphFanin;
+
+  @Option(
+      name = "source_files",
+      defaultValue = "100",
+      help = "The number of source files in the input tree shared by the actions of a graph.")
+  public int sourceFiles;
+
+  @Option(
+      name = "timeout",
+      defaultValue = "600",
+      help = "The maximum number of seconds to wait for all actions to complete.")
+  public int timeout;
+}
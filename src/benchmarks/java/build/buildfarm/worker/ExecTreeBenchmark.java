@@ -0,0 +1,123 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Walks of an input tree from its directory index, as done to link the inputs of an execution.
+ * The tree has a uniform fanout of directories at each level, and a fixed number of files in each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExecTreeBenchmark {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  @Param({"4"})
+  public int depth;
+
+  @Param({"6"})
+  public int fanout;
+
+  @Param({"20"})
+  public int filesPerDirectory;
+
+  private final Map<Digest, Directory> index = new HashMap<>();
+  private build.buildfarm.v1test.Digest rootDigest;
+  private ExecTree execTree;
+
+  private Digest putDirectory(int level, String prefix) {
+    Directory.Builder directory = Directory.newBuilder();
+    if (level < depth) {
+      for (int i = 0; i < fanout; i++) {
+        String name = "dir" + i;
+        directory.addDirectories(
+            DirectoryNode.newBuilder()
+                .setName(name)
+                .setDigest(putDirectory(level + 1, prefix + "/" + name)));
+      }
+    }
+    for (int i = 0; i < filesPerDirectory; i++) {
+      String name = "file" + i;
+      directory.addFiles(
+          FileNode.newBuilder()
+              .setName(name)
+              .setDigest(
+                  DigestUtil.toDigest(
+                      DIGEST_UTIL.compute(ByteString.copyFromUtf8(prefix + "/" + name)))));
+    }
+    Directory built = directory.build();
+    Digest digest = DigestUtil.toDigest(DIGEST_UTIL.compute(built));
+    index.put(digest, built);
+    return digest;
+  }
+
+  @Setup
+  public void setUp() {
+    rootDigest = DigestUtil.fromDigest(putDirectory(0, ""), DIGEST_UTIL.getDigestFunction());
+    execTree = new ExecTree(index);
+  }
+
+  @Benchmark
+  public int walk() throws IOException {
+    int[] entries = new int[1];
+    execTree.walk(
+        Path.of("/exec"),
+        rootDigest,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            entries[0]++;
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            entries[0]++;
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return entries[0];
+  }
+}
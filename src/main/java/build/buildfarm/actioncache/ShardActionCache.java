@@ -16,7 +16,6 @@ package build.buildfarm.actioncache;
 
 import static com.google.common.util.concurrent.Futures.catching;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
-import static net.javacrumbs.futureconverter.java8guava.FutureConverter.toCompletableFuture;
 import static net.javacrumbs.futureconverter.java8guava.FutureConverter.toListenableFuture;
 
 import build.bazel.remote.execution.v2.ActionResult;
@@ -26,32 +25,110 @@ import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.grpc.Status;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ShardActionCache implements ActionCache {
+  // the most action results loaded from the backplane in a single request
+  private static final int MAX_BATCH_LOAD_SIZE = 100;
+
   private final Backplane backplane;
+  private final ListeningExecutorService service;
   private final AsyncLoadingCache<ActionKey, ActionResult> actionResultCache;
+  private final Queue<PendingLoad> pendingLoads = new ConcurrentLinkedQueue<>();
+
+  private static class PendingLoad {
+    final ActionKey actionKey;
+    final CompletableFuture<ActionResult> future = new CompletableFuture<>();
+
+    PendingLoad(ActionKey actionKey) {
+      this.actionKey = actionKey;
+    }
+  }
 
   public ShardActionCache(
       int maxLocalCacheSize, Backplane backplane, ListeningExecutorService service) {
+    this(maxLocalCacheSize, backplane, service, /* refreshAfterWrite= */ Duration.ZERO);
+  }
+
+  /**
+   * Local entries are reloaded from the backplane when they are read after refreshAfterWrite, while
+   * the current entry continues to be served. Entries are never refreshed if it is zero.
+   */
+  public ShardActionCache(
+      int maxLocalCacheSize,
+      Backplane backplane,
+      ListeningExecutorService service,
+      Duration refreshAfterWrite) {
     this.backplane = backplane;
+    this.service = service;
+
+    AsyncCacheLoader<ActionKey, ActionResult> loader = (actionKey, executor) -> load(actionKey);
 
-    AsyncCacheLoader<ActionKey, ActionResult> loader =
-        (actionKey, executor) ->
-            toCompletableFuture(
-                catching(
-                    service.submit(() -> backplane.getActionResult(actionKey)),
-                    IOException.class,
-                    e -> {
-                      throw Status.fromThrowable(e).asRuntimeException();
-                    },
-                    executor));
-
-    actionResultCache = Caffeine.newBuilder().maximumSize(maxLocalCacheSize).buildAsync(loader);
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maxLocalCacheSize);
+    if (!refreshAfterWrite.isZero()) {
+      builder.refreshAfterWrite(refreshAfterWrite);
+    }
+    actionResultCache = builder.buildAsync(loader);
+  }
+
+  // Misses are queued and loaded by the service in batches of whatever has accumulated when a
+  // thread is available, so concurrent misses share a single backplane request.
+  private CompletableFuture<ActionResult> load(ActionKey actionKey) {
+    PendingLoad pendingLoad = new PendingLoad(actionKey);
+    pendingLoads.add(pendingLoad);
+    try {
+      service.execute(this::loadPending);
+    } catch (RejectedExecutionException e) {
+      if (pendingLoads.remove(pendingLoad)) {
+        pendingLoad.future.completeExceptionally(e);
+      }
+    }
+    return pendingLoad.future;
+  }
+
+  private void loadPending() {
+    List<PendingLoad> batch = new ArrayList<>();
+    PendingLoad pendingLoad;
+    while (batch.size() < MAX_BATCH_LOAD_SIZE && (pendingLoad = pendingLoads.poll()) != null) {
+      batch.add(pendingLoad);
+    }
+    if (batch.isEmpty()) {
+      // loaded with an earlier batch
+      return;
+    }
+    try {
+      if (batch.size() == 1) {
+        pendingLoad = batch.getFirst();
+        pendingLoad.future.complete(backplane.getActionResult(pendingLoad.actionKey));
+        return;
+      }
+      Map<ActionKey, ActionResult> actionResults =
+          backplane.getActionResults(Lists.transform(batch, load -> load.actionKey));
+      for (PendingLoad load : batch) {
+        load.future.complete(actionResults.get(load.actionKey));
+      }
+    } catch (IOException e) {
+      RuntimeException status = Status.fromThrowable(e).asRuntimeException();
+      for (PendingLoad load : batch) {
+        load.future.completeExceptionally(status);
+      }
+    } catch (RuntimeException e) {
+      for (PendingLoad load : batch) {
+        load.future.completeExceptionally(e);
+      }
+    }
   }
 
   @Override
@@ -120,6 +120,9 @@ public interface Backplane {
   /** Returns a set of the names of all active storage workers. */
   Set<String> getStorageWorkers() throws IOException;
 
+  /** Returns the advertised capacity of each active storage worker, 0 if unknown. */
+  Map<String, Long> getStorageWorkerCapacities() throws IOException;
+
   // TODO this is just a namespace, but kind of jank for just digest function as a string...
   /**
    * The AC stores full ActionResult objects in a hash map where the key is the digest of the action
@@ -129,6 +132,9 @@ public interface Backplane {
    */
   ActionResult getActionResult(ActionKey actionKey) throws IOException;
 
+  /** Bulk retrieve action results, omitting those that are not present. */
+  Map<ActionKey, ActionResult> getActionResults(Iterable<ActionKey> actionKeys) throws IOException;
+
   /**
    * The AC stores full ActionResult objects in a hash map where the key is the digest of the action
    * result and the value is the actual ActionResult object.
@@ -111,9 +111,12 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.AbstractMap;
@@ -121,6 +124,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
 import java.util.UUID;
@@ -322,6 +326,42 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       Consumer<Iterable<Digest>> onExpire,
       @Nullable ContentAddressableStorage delegate,
       boolean delegateSkipLoad) {
+    this(
+        root,
+        maxSizeInBytes,
+        maxEntrySizeInBytes,
+        hexBucketLevels,
+        storeFileDirsIndexInMemory,
+        /* compactFileDirsIndex= */ false,
+        execRootFallback,
+        expireService,
+        accessRecorder,
+        storage,
+        directoriesIndexDbName,
+        zstdBufferPool,
+        onPut,
+        onExpire,
+        delegate,
+        delegateSkipLoad);
+  }
+
+  public CASFileCache(
+      Path root,
+      long maxSizeInBytes,
+      long maxEntrySizeInBytes,
+      int hexBucketLevels,
+      boolean storeFileDirsIndexInMemory,
+      boolean compactFileDirsIndex,
+      boolean execRootFallback,
+      ExecutorService expireService,
+      Executor accessRecorder,
+      ConcurrentMap<String, Entry> storage,
+      String directoriesIndexDbName,
+      FixedBufferPool zstdBufferPool,
+      Consumer<Digest> onPut,
+      Consumer<Iterable<Digest>> onExpire,
+      @Nullable ContentAddressableStorage delegate,
+      boolean delegateSkipLoad) {
     this.root = root;
     this.maxSizeInBytes = maxSizeInBytes;
     this.maxEntrySizeInBytes = maxEntrySizeInBytes;
@@ -354,10 +394,14 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       }
       directoriesIndexUrl += path.toString();
     }
-    this.directoriesIndex =
-        storeFileDirsIndexInMemory
-            ? new MemoryFileDirectoriesIndex(entryPathStrategy)
-            : new SqliteFileDirectoriesIndex(directoriesIndexUrl, entryPathStrategy);
+    if (compactFileDirsIndex) {
+      this.directoriesIndex = new CompactFileDirectoriesIndex(entryPathStrategy);
+    } else if (storeFileDirsIndexInMemory) {
+      this.directoriesIndex = new MemoryFileDirectoriesIndex(entryPathStrategy);
+    } else {
+      this.directoriesIndex =
+          new SqliteFileDirectoriesIndex(directoriesIndexUrl, entryPathStrategy);
+    }
     header.before = header.after = header;
   }
 
@@ -635,7 +679,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       ServerCallStreamObserver<ByteString> blobObserver,
       RequestMetadata requestMetadata) {
     boolean readThrough = shouldReadThrough(requestMetadata);
-    InputStream in;
+    InputStream blobInput;
     try {
       if (readThrough && !contains(digest, /* result= */ null)) {
         // really need to be able to reuse/restart the same write over
@@ -646,7 +690,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
         // if possible.
         Write write = getWrite(compressor, digest, UUID.randomUUID(), requestMetadata);
         blobObserver.setOnCancelHandler(write::reset);
-        in =
+        blobInput =
             new ReadThroughInputStream(
                 newExternalInput(compressor, digest, 0),
                 localOffset -> newTransparentInput(compressor, digest, localOffset),
@@ -654,12 +698,17 @@ public abstract class CASFileCache implements ContentAddressableStorage {
                 offset,
                 write);
       } else {
-        in = newInput(compressor, digest, offset);
+        blobInput = newInput(compressor, digest, offset);
       }
     } catch (IOException e) {
       blobObserver.onError(e);
       return;
     }
+    // compressed lengths are unknown, so only uncompressed reads may be limited
+    InputStream in =
+        compressor == Compressor.Value.IDENTITY && count > 0 && count < digest.getSize() - offset
+            ? ByteStreams.limit(blobInput, count)
+            : blobInput;
 
     blobObserver.setOnCancelHandler(
         () -> {
@@ -2300,6 +2349,41 @@ public abstract class CASFileCache implements ContentAddressableStorage {
     return true;
   }
 
+  /**
+   * The generation of an exec directory tree, combining the identity and modification time of each
+   * of its directories. Every directory in the tree is made read-only once it is populated, so any
+   * entry added to, removed from, or renamed within the tree changes the generation. Validating a
+   * tree by its generation requires a stat of each directory, rather than of each file, so it is
+   * still O(directories) rather than O(1).
+   *
+   * <p>Files are hard links to CAS entries and are not visited. A change to a file's content in
+   * place, through a writer that bypassed the read-only permissions, leaves every directory's
+   * modification time alone and is not detected.
+   */
+  private static long directoryGeneration(
+      Path path,
+      Directory directory,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex)
+      throws IOException {
+    BasicFileAttributes attributes =
+        Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    if (!attributes.isDirectory()) {
+      throw new NoSuchFileException(path.toString());
+    }
+    long generation = Objects.hashCode(attributes.fileKey());
+    generation = generation * 31 + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    for (DirectoryNode directoryNode : directory.getDirectoriesList()) {
+      Directory child = directoriesIndex.get(directoryNode.getDigest());
+      generation =
+          generation * 31
+              + directoryGeneration(
+                  path.resolve(directoryNode.getName()),
+                  child == null ? Directory.getDefaultInstance() : child,
+                  directoriesIndex);
+    }
+    return generation;
+  }
+
   private boolean directoryEntryExists(
       DigestFunction.Value digestFunction,
       Path path,
@@ -2309,11 +2393,32 @@ public abstract class CASFileCache implements ContentAddressableStorage {
       return true;
     }
 
-    if (directoryExists(digestFunction, path, dirEntry.directory, directoriesIndex)) {
-      dirEntry.existsDeadline = Deadline.after(10, SECONDS);
-      return true;
+    if (dirEntry.generation == null) {
+      // the tree was loaded rather than created here, check its contents once
+      if (!directoryExists(digestFunction, path, dirEntry.directory, directoriesIndex)) {
+        return false;
+      }
+    } else {
+      try {
+        if (directoryGeneration(path, dirEntry.directory, directoriesIndex)
+            != dirEntry.generation) {
+          log.log(Level.SEVERE, format("directory %s has been modified", path));
+          return false;
+        }
+      } catch (IOException e) {
+        log.log(Level.SEVERE, format("directory %s could not be validated", path), e);
+        return false;
+      }
     }
-    return false;
+    dirEntry.recordGeneration(path, directoriesIndex);
+    dirEntry.existsDeadline = Deadline.after(10, SECONDS);
+    return true;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  DirectoryEntry getDirectoryEntry(Digest digest) {
+    return directoryStorage.get(digest);
   }
 
   public record PathResult(Path path, boolean isMissed) {}
@@ -2490,6 +2595,7 @@ public abstract class CASFileCache implements ContentAddressableStorage {
                       ? Directory.getDefaultInstance()
                       : directoriesByDigest.get(DigestUtil.toDigest(digest)),
                   Deadline.after(10, SECONDS));
+          e.recordGeneration(path, directoriesByDigest);
           directoryStorage.put(digest, e);
           return new PathResult(path, /* missed= */ true);
         },
@@ -3016,58 +3122,166 @@ public abstract class CASFileCache implements ContentAddressableStorage {
           throw e;
         }
 
-        Entry entry = new Entry(key, blobSizeInBytes, Deadline.after(10, SECONDS));
+        insertWritePath(key, writePath, blobSizeInBytes, writeWinner, onInsert);
+      }
+    };
+  }
+
+  /**
+   * Inserts a complete, read-only file at writePath into storage under key, or references the
+   * existing entry if it lost a race to insert. Discharges the size of the blob if not inserted.
+   */
+  private void insertWritePath(
+      String key,
+      Path writePath,
+      long blobSizeInBytes,
+      Supplier<Boolean> writeWinner,
+      Runnable onInsert)
+      throws IOException {
+    Entry entry = new Entry(key, blobSizeInBytes, Deadline.after(10, SECONDS));
+
+    Entry existingEntry = null;
+    boolean inserted = false;
+    try {
+      // acquire the key lock
+      Files.createLink(getPath(key), writePath);
+      existingEntry = safeStorageInsertion(key, entry);
+      inserted = existingEntry == null;
+    } catch (FileAlreadyExistsException e) {
+      log.log(Level.FINER, "file already exists for " + key + ", nonexistent entry will fail");
+    } finally {
+      Files.delete(writePath);
+      if (!inserted) {
+        dischargeAndNotify(blobSizeInBytes);
+      }
+    }
 
-        Entry existingEntry = null;
-        boolean inserted = false;
+    int attempts = 10;
+    if (!inserted) {
+      while (existingEntry == null && attempts-- != 0) {
+        existingEntry = storage.get(key);
         try {
-          // acquire the key lock
-          Files.createLink(CASFileCache.this.getPath(key), writePath);
-          existingEntry = safeStorageInsertion(key, entry);
-          inserted = existingEntry == null;
-        } catch (FileAlreadyExistsException e) {
-          log.log(Level.FINER, "file already exists for " + key + ", nonexistent entry will fail");
-        } finally {
-          Files.delete(writePath);
-          if (!inserted) {
-            dischargeAndNotify(blobSizeInBytes);
-          }
+          MILLISECONDS.sleep(10);
+        } catch (InterruptedException intEx) {
+          throw new IOException(intEx);
         }
+      }
 
-        int attempts = 10;
-        if (!inserted) {
-          while (existingEntry == null && attempts-- != 0) {
-            existingEntry = storage.get(key);
-            try {
-              MILLISECONDS.sleep(10);
-            } catch (InterruptedException intEx) {
-              throw new IOException(intEx);
-            }
-          }
+      if (existingEntry == null) {
+        throw new IOException("existing entry did not appear for " + key);
+      }
+    }
 
-          if (existingEntry == null) {
-            throw new IOException("existing entry did not appear for " + key);
-          }
-        }
+    if (existingEntry != null) {
+      log.log(Level.FINER, "lost the race to insert " + key);
+      if (!referenceIfExists(key)) {
+        // we would lose our accountability and have a presumed reference if we returned
+        throw new IllegalStateException("storage conflict with existing key for " + key);
+      }
+    } else if (writeWinner.get()) {
+      log.log(Level.FINER, "won the race to insert " + key);
+      try {
+        onInsert.run();
+      } catch (RuntimeException e) {
+        throw new IOException(e);
+      }
+    } else {
+      log.log(Level.FINER, "did not win the race to insert " + key);
+    }
+  }
 
-        if (existingEntry != null) {
-          log.log(Level.FINER, "lost the race to insert " + key);
-          if (!referenceIfExists(key)) {
-            // we would lose our accountability and have a presumed reference if we returned
-            throw new IllegalStateException("storage conflict with existing key for " + key);
-          }
-        } else if (writeWinner.get()) {
-          log.log(Level.FINER, "won the race to insert " + key);
-          try {
-            onInsert.run();
-          } catch (RuntimeException e) {
-            throw new IOException(e);
-          }
-        } else {
-          log.log(Level.FINER, "did not win the race to insert " + key);
+  /**
+   * Inserts a file with a known digest by linking it into the cache, instead of copying it through
+   * a write, which would read and hash its content again. The file is made read-only and must not
+   * be modified afterwards. Returns false, with nothing inserted, if the file cannot be linked into
+   * the cache, as across file systems or when it is owned by another user. Files with other links,
+   * such as inputs linked from the cache, are never linked, since their permissions are shared.
+   *
+   * <p>The content is not hashed again, so the file must still have the size, modification time and
+   * file key of the hashed attributes, read before the digest was computed, once it is linked and
+   * read-only. Otherwise it may have been changed by a writer still holding it open, and false is
+   * returned so that it is copied and verified instead. A change that preserves all of these, as
+   * within the resolution of the file system's timestamps, is not detected. Neither is a write
+   * after the check through a descriptor opened earlier, as by a descendant of the action that
+   * outlived it, which modifies the inserted blob in place.
+   *
+   * <p>The link shares the file's inode, so the file also becomes read-only and not executable
+   * where it was linked from. Its permissions are restored if it is not inserted.
+   */
+  public boolean putLink(Digest digest, Path file, BasicFileAttributes hashedAttributes)
+      throws IOException, InterruptedException {
+    String key = getKey(digest, /* isExecutable= */ false);
+    long blobSizeInBytes = digest.getSize();
+    if (blobSizeInBytes > maxEntrySizeInBytes) {
+      throw new EntryLimitException(blobSizeInBytes, maxEntrySizeInBytes);
+    }
+    if (!isSingleLink(file)) {
+      return false;
+    }
+    AtomicBoolean requiresDischarge = new AtomicBoolean(false);
+    try {
+      if (charge(key, blobSizeInBytes, requiresDischarge)) {
+        Path writePath = getPath(key).resolveSibling(key + "." + UUID.randomUUID());
+        try {
+          Files.createLink(writePath, file);
+        } catch (IOException e) {
+          log.log(Level.FINER, format("could not link %s into the cache", file), e);
+          return false;
+        }
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(writePath);
+        try {
+          setReadOnlyPerms(writePath, /* isExecutable= */ false, fileStore);
+        } catch (IOException e) {
+          log.log(Level.FINER, format("could not make %s read-only", file), e);
+          unlinkShared(writePath, permissions);
+          return false;
         }
+        if (!isUnchanged(writePath, hashedAttributes)) {
+          log.log(Level.WARNING, format("%s changed since it was hashed", file));
+          unlinkShared(writePath, permissions);
+          return false;
+        }
+        requiresDischarge.set(false); // insertion now owns discharge
+        insertWritePath(
+            key,
+            writePath,
+            blobSizeInBytes,
+            () -> completeWrite(digest),
+            () -> invalidateWrite(digest));
       }
-    };
+      decrementReference(key);
+      return true;
+    } finally {
+      if (requiresDischarge.get()) {
+        dischargeAndNotify(blobSizeInBytes);
+      }
+    }
+  }
+
+  // removes a link that will not be inserted, restoring the permissions of the inode it shares
+  private static void unlinkShared(Path link, Set<PosixFilePermission> permissions)
+      throws IOException {
+    try {
+      Files.setPosixFilePermissions(link, permissions);
+    } finally {
+      Files.delete(link);
+    }
+  }
+
+  private static boolean isUnchanged(Path file, BasicFileAttributes hashedAttributes)
+      throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    return attributes.size() == hashedAttributes.size()
+        && attributes.lastModifiedTime().equals(hashedAttributes.lastModifiedTime())
+        && Objects.equals(attributes.fileKey(), hashedAttributes.fileKey());
+  }
+
+  private static boolean isSingleLink(Path file) {
+    try {
+      return (Integer) Files.getAttribute(file, "unix:nlink") == 1;
+    } catch (IOException | IllegalArgumentException | UnsupportedOperationException e) {
+      return false;
+    }
   }
 
   @VisibleForTesting
@@ -3194,11 +3408,25 @@ public abstract class CASFileCache implements ContentAddressableStorage {
   protected static class DirectoryEntry {
     public final Directory directory;
     Deadline existsDeadline;
+    // generation of the tree when it was last known to be valid, null if not yet recorded
+    @Nullable Long generation = null;
 
     public DirectoryEntry(Directory directory, Deadline existsDeadline) {
       this.directory = directory;
       this.existsDeadline = existsDeadline;
     }
+
+    void recordGeneration(
+        Path path, Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
+      if (generation != null) {
+        return;
+      }
+      try {
+        generation = directoryGeneration(path, directory, directoriesIndex);
+      } catch (IOException e) {
+        log.log(Level.WARNING, format("could not record generation of directory %s", path), e);
+      }
+    }
   }
 
   protected abstract InputStream newExternalInput(
@@ -0,0 +1,385 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Entry/directory mappings held in primitive arrays. Directory entries are stored in files, as with
+ * the other file indexes.
+ *
+ * <p>Entries are interned to int ids in open addressed tables, and each entry and directory holds
+ * the ids of its counterparts in an int array, so that the membership of an entry in a directory
+ * costs a few bytes in each direction rather than a row or a pair of set nodes. The entry tables
+ * are striped, and no operation holds more than one lock at a time, so that puts and removals of
+ * unrelated entries proceed in parallel.
+ */
+class CompactFileDirectoriesIndex extends FileDirectoriesIndex {
+  private static final int SEGMENT_BITS = 4;
+  private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+  private static final int[] NO_IDS = new int[0];
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+  private final Directories directories = new Directories();
+
+  CompactFileDirectoriesIndex(EntryPathStrategy entryPathStrategy) {
+    super(entryPathStrategy);
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(i);
+    }
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private Segment segmentFor(String entry) {
+    return segments[spread(entry.hashCode()) >>> (Integer.SIZE - SEGMENT_BITS)];
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void close() {}
+
+  @Override
+  public void put(Digest directory, Iterable<String> entries) throws IOException {
+    super.put(directory, entries);
+
+    int directoryId = directories.add(directory);
+    if (directoryId < 0) {
+      // already indexed, with the same entries
+      return;
+    }
+    Set<String> uniqueEntries = ImmutableSet.copyOf(entries);
+    int[] entryIds = new int[uniqueEntries.size()];
+    int index = 0;
+    for (String entry : uniqueEntries) {
+      Segment segment = segmentFor(entry);
+      synchronized (segment) {
+        entryIds[index++] = segment.add(entry, directoryId);
+      }
+    }
+    if (!directories.setEntries(directoryId, directory, entryIds)) {
+      // an entry was removed while we were indexing, and took the directory with it
+      unlink(directoryId, entryIds);
+    }
+  }
+
+  @Override
+  public Set<Digest> removeEntry(String entry) throws IOException {
+    int[] directoryIds;
+    Segment segment = segmentFor(entry);
+    synchronized (segment) {
+      directoryIds = segment.remove(entry);
+    }
+    if (directoryIds.length == 0) {
+      return ImmutableSet.of();
+    }
+    Set<Digest> removed = new HashSet<>();
+    for (int directoryId : directoryIds) {
+      Digest directory = removeDirectory(directoryId);
+      if (directory != null) {
+        removed.add(directory);
+      }
+    }
+    super.removeDirectories(removed);
+    return removed;
+  }
+
+  @Override
+  public void remove(Digest directory) throws IOException {
+    super.remove(directory);
+    int directoryId = directories.idOf(directory);
+    if (directoryId >= 0) {
+      removeDirectory(directoryId);
+    }
+  }
+
+  private Digest removeDirectory(int directoryId) {
+    Directories.Removal removal = directories.remove(directoryId);
+    if (removal == null) {
+      return null;
+    }
+    if (removal.entryIds != null) {
+      unlink(directoryId, removal.entryIds);
+    }
+    // otherwise the put of the directory is in progress, and will unlink it
+    return removal.directory;
+  }
+
+  /** Remove the directory from each of its entries, then release its id for reuse. */
+  private void unlink(int directoryId, int[] entryIds) {
+    for (int entryId : entryIds) {
+      Segment segment = segments[entryId & SEGMENT_MASK];
+      synchronized (segment) {
+        segment.removeDirectory(entryId >>> SEGMENT_BITS, directoryId);
+      }
+    }
+    directories.release(directoryId);
+  }
+
+  private static int[] append(int[] ids, int count, int id) {
+    if (count == ids.length) {
+      ids = Arrays.copyOf(ids, Math.max(2, count * 2));
+    }
+    ids[count] = id;
+    return ids;
+  }
+
+  /**
+   * A stripe of entries, interned in an open addressed table with linear probing, along with the
+   * directory ids of each entry. Ids are local to the segment until qualified with its index.
+   */
+  private static final class Segment {
+    private final int index;
+    private String[] slots = new String[16];
+    private int[] slotIds = new int[16];
+    private int size = 0;
+
+    private String[] keys = new String[8];
+    private int[][] directoryIds = new int[8][];
+    private int[] directoryCounts = new int[8];
+    private int nextId = 0;
+    private int[] freeIds = new int[8];
+    private int freeCount = 0;
+
+    Segment(int index) {
+      this.index = index;
+    }
+
+    private int find(String key) {
+      int mask = slots.length - 1;
+      int slot = spread(key.hashCode()) & mask;
+      while (slots[slot] != null) {
+        if (slots[slot].equals(key)) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    private void insert(String key, int id) {
+      int mask = slots.length - 1;
+      int slot = spread(key.hashCode()) & mask;
+      while (slots[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = key;
+      slotIds[slot] = id;
+    }
+
+    private void grow() {
+      String[] oldSlots = slots;
+      int[] oldSlotIds = slotIds;
+      slots = new String[oldSlots.length * 2];
+      slotIds = new int[oldSlots.length * 2];
+      for (int i = 0; i < oldSlots.length; i++) {
+        if (oldSlots[i] != null) {
+          insert(oldSlots[i], oldSlotIds[i]);
+        }
+      }
+    }
+
+    /** Clear the slot, shifting back any keys whose probe sequence passed through it. */
+    private void clear(int slot) {
+      int mask = slots.length - 1;
+      int hole = slot;
+      int next = (hole + 1) & mask;
+      while (slots[next] != null) {
+        int home = spread(slots[next].hashCode()) & mask;
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          slots[hole] = slots[next];
+          slotIds[hole] = slotIds[next];
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      slots[hole] = null;
+      size--;
+    }
+
+    private int allocate(String key) {
+      int id;
+      if (freeCount > 0) {
+        id = freeIds[--freeCount];
+      } else {
+        id = nextId++;
+        if (id == keys.length) {
+          keys = Arrays.copyOf(keys, id * 2);
+          directoryIds = Arrays.copyOf(directoryIds, id * 2);
+          directoryCounts = Arrays.copyOf(directoryCounts, id * 2);
+        }
+      }
+      keys[id] = key;
+      directoryIds[id] = NO_IDS;
+      directoryCounts[id] = 0;
+      return id;
+    }
+
+    private void release(int id) {
+      keys[id] = null;
+      directoryIds[id] = null;
+      freeIds = append(freeIds, freeCount, id);
+      freeCount++;
+    }
+
+    /** Add the directory to the entry, returning the qualified id of the entry. */
+    @GuardedBy("this")
+    int add(String key, int directoryId) {
+      int id;
+      int slot = find(key);
+      if (slot >= 0) {
+        id = slotIds[slot];
+      } else {
+        if ((size + 1) * 2 > slots.length) {
+          grow();
+        }
+        id = allocate(key);
+        insert(key, id);
+        size++;
+      }
+      directoryIds[id] = append(directoryIds[id], directoryCounts[id], directoryId);
+      directoryCounts[id]++;
+      return (id << SEGMENT_BITS) | index;
+    }
+
+    /** Remove the entry, returning the ids of its directories. */
+    @GuardedBy("this")
+    int[] remove(String key) {
+      int slot = find(key);
+      if (slot < 0) {
+        return NO_IDS;
+      }
+      int id = slotIds[slot];
+      clear(slot);
+      int[] ids = Arrays.copyOf(directoryIds[id], directoryCounts[id]);
+      release(id);
+      return ids;
+    }
+
+    /** Remove the directory from the entry, removing the entry when it has no directories. */
+    @GuardedBy("this")
+    void removeDirectory(int id, int directoryId) {
+      String key = keys[id];
+      if (key == null) {
+        return;
+      }
+      int[] ids = directoryIds[id];
+      int count = directoryCounts[id];
+      for (int i = 0; i < count; i++) {
+        if (ids[i] == directoryId) {
+          ids[i] = ids[--count];
+          directoryCounts[id] = count;
+          if (count == 0) {
+            clear(find(key));
+            release(id);
+          }
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Directory ids and the entry ids of each directory. An id is not released until its directory
+   * has been unlinked from all of its entries, so a stale id never refers to another directory.
+   */
+  private static final class Directories {
+    static final class Removal {
+      final Digest directory;
+      final int[] entryIds;
+
+      Removal(Digest directory, int[] entryIds) {
+        this.directory = directory;
+        this.entryIds = entryIds;
+      }
+    }
+
+    private final Map<Digest, Integer> ids = new HashMap<>();
+    private Digest[] digests = new Digest[16];
+    private int[][] entryIds = new int[16][];
+    private int nextId = 0;
+    private int[] freeIds = new int[16];
+    private int freeCount = 0;
+
+    /** Allocate an id for the directory, or return -1 if it is already indexed. */
+    synchronized int add(Digest directory) {
+      if (ids.containsKey(directory)) {
+        return -1;
+      }
+      int id;
+      if (freeCount > 0) {
+        id = freeIds[--freeCount];
+      } else {
+        id = nextId++;
+        if (id == digests.length) {
+          digests = Arrays.copyOf(digests, id * 2);
+          entryIds = Arrays.copyOf(entryIds, id * 2);
+        }
+      }
+      ids.put(directory, id);
+      digests[id] = directory;
+      entryIds[id] = null;
+      return id;
+    }
+
+    synchronized int idOf(Digest directory) {
+      Integer id = ids.get(directory);
+      return id == null ? -1 : id;
+    }
+
+    /** Complete the put of a directory, returning false if it was removed in the meantime. */
+    synchronized boolean setEntries(int id, Digest directory, int[] entries) {
+      if (digests[id] != directory) {
+        return false;
+      }
+      entryIds[id] = entries;
+      return true;
+    }
+
+    /**
+     * Remove the directory, returning its digest and entries, or null if it was already removed.
+     * The entries are null if the directory is still being put.
+     */
+    synchronized Removal remove(int id) {
+      Digest directory = digests[id];
+      if (directory == null) {
+        return null;
+      }
+      ids.remove(directory);
+      Removal removal = new Removal(directory, entryIds[id]);
+      digests[id] = null;
+      entryIds[id] = null;
+      return removal;
+    }
+
+    synchronized void release(int id) {
+      freeIds = append(freeIds, freeCount, id);
+      freeCount++;
+    }
+  }
+}
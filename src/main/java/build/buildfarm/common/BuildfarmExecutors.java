@@ -90,6 +90,39 @@ public class BuildfarmExecutors {
     return listeningDecorator(pool);
   }
 
+  public static ListeningExecutorService getBatchUpdateServicePool() {
+    int nThreads = 16;
+    String threadNameFormat = "batch-update-pool-%d";
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            nThreads, new ThreadFactoryBuilder().setNameFormat(threadNameFormat).build());
+    return listeningDecorator(pool);
+  }
+
+  public static ExecutorService getReplicationServicePool() {
+    int nThreads = 4;
+    String threadNameFormat = "replication-pool-%d";
+    return Executors.newFixedThreadPool(
+        nThreads,
+        new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build());
+  }
+
+  public static ListeningExecutorService getRangedFetchPool() {
+    String threadNameFormat = "ranged-fetch-pool-%d";
+    return listeningDecorator(
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build()));
+  }
+
+  public static ListeningExecutorService getOutputHashingPool() {
+    int nThreads = SystemProcessors.get();
+    String threadNameFormat = "output-hashing-pool-%d";
+    return listeningDecorator(
+        Executors.newFixedThreadPool(
+            nThreads,
+            new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build()));
+  }
+
   public static ExecutorService getFetchServicePool() {
     int nThreads = 128;
     return Executors.newWorkStealingPool(nThreads);
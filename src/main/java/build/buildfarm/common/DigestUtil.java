@@ -31,8 +31,11 @@ import com.google.protobuf.Message;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.Set;
 import lombok.Getter;
@@ -67,6 +70,15 @@ public class DigestUtil {
           DigestFunction.Value.BLAKE3,
               DigestUtil.forHash("BLAKE3").computeImpl(ByteString.empty()));
 
+  /** Files of at least this size are hashed from a direct buffer. */
+  public static final long DIRECT_HASH_THRESHOLD = 16 * 1024 * 1024;
+
+  private static final int DIRECT_HASH_BUFFER_SIZE = 1024 * 1024;
+
+  // reused by each hashing thread, rather than allocated per file
+  private static final ThreadLocal<ByteBuffer> directHashBuffer =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_HASH_BUFFER_SIZE));
+
   /** Type of hash function to use for digesting blobs. */
   // The underlying HashFunctions are immutable and thread safe.
   @SuppressWarnings("ImmutableEnumChecker")
@@ -185,7 +197,19 @@ public class DigestUtil {
   }
 
   public Digest compute(Path file) throws IOException {
-    return buildDigest(computeHash(file), Files.size(file), getDigestFunction());
+    return compute(file, DIRECT_HASH_THRESHOLD);
+  }
+
+  /**
+   * Computes the digest of a file, reading it through a direct buffer if it is at least
+   * directThreshold bytes, which a native hash function reads in place rather than through a copy
+   * on the heap. Files are read rather than mapped, so that no mapping outlives the digest and
+   * keeps a removed file's space allocated, or prevents its removal on Windows.
+   */
+  public Digest compute(Path file, long directThreshold) throws IOException {
+    long size = Files.size(file);
+    String hash = size >= directThreshold ? computeDirectHash(file) : computeHash(file);
+    return buildDigest(hash, size, getDigestFunction());
   }
 
   private String computeHash(Path file) throws IOException {
@@ -197,6 +221,20 @@ public class DigestUtil {
     }.hash(hashFn.getHash()).toString();
   }
 
+  private String computeDirectHash(Path file) throws IOException {
+    Hasher hasher = hashFn.getHash().newHasher();
+    ByteBuffer buffer = directHashBuffer.get();
+    buffer.clear();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        hasher.putBytes(buffer);
+        buffer.clear();
+      }
+    }
+    return hasher.hash().toString();
+  }
+
   public HashCode computeHash(ByteString blob) {
     Hasher hasher = hashFn.getHash().newHasher();
     try {
@@ -26,6 +26,7 @@ import com.google.protobuf.MessageLite;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Stack;
 import javax.annotation.Nullable;
@@ -33,6 +34,8 @@ import lombok.Getter;
 
 public class TreeIterator implements TokenizableIterator<TreeIterator.DirectoryEntry> {
   private final DirectoryFetcher directoryFetcher;
+  private final DirectoryPrefetcher directoryPrefetcher;
+  private final int prefetchWindow;
   private final DigestFunction.Value digestFunction;
   private Deque<Digest> path;
   private final ArrayDeque<Digest> parentPath;
@@ -43,11 +46,31 @@ public class TreeIterator implements TokenizableIterator<TreeIterator.DirectoryE
     Directory fetch(build.buildfarm.v1test.Digest digest);
   }
 
+  @FunctionalInterface
+  public interface DirectoryPrefetcher {
+    void prefetch(build.buildfarm.v1test.Digest digest);
+  }
+
   public TreeIterator(
       DirectoryFetcher directoryFetcher,
       build.buildfarm.v1test.Digest rootDigest,
       String pageToken) {
+    this(directoryFetcher, digest -> {}, /* prefetchWindow= */ 0, rootDigest, pageToken);
+  }
+
+  /**
+   * Iterate over the tree, requesting up to prefetchWindow of the upcoming subdirectories of each
+   * directory in advance, so that their fetches overlap with the traversal.
+   */
+  public TreeIterator(
+      DirectoryFetcher directoryFetcher,
+      DirectoryPrefetcher directoryPrefetcher,
+      int prefetchWindow,
+      build.buildfarm.v1test.Digest rootDigest,
+      String pageToken) {
     this.directoryFetcher = directoryFetcher;
+    this.directoryPrefetcher = directoryPrefetcher;
+    this.prefetchWindow = prefetchWindow;
     digestFunction = rootDigest.getDigestFunction();
     parentPath = new ArrayDeque<>();
     pointers = new Stack<>();
@@ -76,9 +99,7 @@ public class TreeIterator implements TokenizableIterator<TreeIterator.DirectoryE
           // is correct and will be next directory fetched
           break;
         }
-        iter =
-            Iterators.transform(
-                directory.getDirectoriesList().iterator(), DirectoryNode::getDigest);
+        iter = children(directory);
       }
     }
     pointers.push(iter);
@@ -132,13 +153,56 @@ public class TreeIterator implements TokenizableIterator<TreeIterator.DirectoryE
       /* the path to a new iter set is the path to its parent */
       parentPath.addLast(digest);
       path = parentPath.clone();
-      pointers.push(
-          Iterators.transform(directory.getDirectoriesList().iterator(), DirectoryNode::getDigest));
+      pointers.push(children(directory));
     }
     advanceIterator();
     return new DirectoryEntry(digest, directory);
   }
 
+  private Iterator<Digest> children(Directory directory) {
+    if (prefetchWindow <= 0) {
+      return Iterators.transform(
+          directory.getDirectoriesList().iterator(), DirectoryNode::getDigest);
+    }
+    return new PrefetchingIterator(directory.getDirectoriesList());
+  }
+
+  // iterates over subdirectory digests, keeping the following window of them prefetched
+  private class PrefetchingIterator implements Iterator<Digest> {
+    private final List<DirectoryNode> nodes;
+    private int index = 0;
+
+    PrefetchingIterator(List<DirectoryNode> nodes) {
+      this.nodes = nodes;
+      for (int i = 0; i < Math.min(prefetchWindow, nodes.size()); i++) {
+        prefetch(nodes.get(i).getDigest());
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < nodes.size();
+    }
+
+    @Override
+    public Digest next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int ahead = index + prefetchWindow;
+      if (ahead < nodes.size()) {
+        prefetch(nodes.get(ahead).getDigest());
+      }
+      return nodes.get(index++).getDigest();
+    }
+
+    private void prefetch(Digest digest) {
+      if (digest.getSizeBytes() != 0) {
+        directoryPrefetcher.prefetch(DigestUtil.fromDigest(digest, digestFunction));
+      }
+    }
+  }
+
   private @Nullable Directory getDirectory(Digest digest) {
     if (digest.getSizeBytes() == 0) {
       return Directory.getDefaultInstance();
@@ -19,8 +19,14 @@ import static com.google.common.collect.Iterables.transform;
 
 import build.bazel.remote.execution.v2.Digest;
 import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
 import build.bazel.remote.execution.v2.FileNode;
 import build.bazel.remote.execution.v2.Tree;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 // Convenience methods for interacting with Trees
 public final class Trees {
@@ -37,4 +43,26 @@ public final class Trees {
     }
     return digests;
   }
+
+  /** Whether every non-empty directory reachable from the root of the tree is included in it. */
+  public static boolean isComplete(build.buildfarm.v1test.Tree tree) {
+    Map<String, Directory> directories = tree.getDirectoriesMap();
+    Deque<Digest> pending = new ArrayDeque<>();
+    pending.push(DigestUtil.toDigest(tree.getRootDigest()));
+    Set<String> visited = new HashSet<>();
+    while (!pending.isEmpty()) {
+      Digest digest = pending.pop();
+      if (digest.getSizeBytes() == 0 || !visited.add(digest.getHash())) {
+        continue;
+      }
+      Directory directory = directories.get(digest.getHash());
+      if (directory == null) {
+        return false;
+      }
+      for (DirectoryNode child : directory.getDirectoriesList()) {
+        pending.push(child.getDigest());
+      }
+    }
+    return true;
+  }
 }
@@ -28,6 +28,7 @@ public final class Blake3MessageDigest extends MessageDigest {
     JniLoader.loadJni();
   }
 
+  private static final int DIRECT_UPDATE_SIZE = 1024 * 1024;
   private static final int STATE_SIZE = hasher_size();
   private static final byte[] INITIAL_STATE = new byte[STATE_SIZE];
 
@@ -54,10 +55,20 @@ public final class Blake3MessageDigest extends MessageDigest {
     engineUpdate(oneByteArray, 0, 1);
   }
 
-  @SuppressWarnings("UselessOverridingMethod")
   @Override
   public void engineUpdate(ByteBuffer input) {
-    super.engineUpdate(input);
+    if (!input.isDirect()) {
+      super.engineUpdate(input);
+      return;
+    }
+    // hash direct buffers in place, in bounded updates since the hasher state is pinned for the
+    // duration of each
+    while (input.hasRemaining()) {
+      int position = input.position();
+      int length = Math.min(input.remaining(), DIRECT_UPDATE_SIZE);
+      blake3_hasher_update_direct(hasher, input, position, length);
+      input.position(position + length);
+    }
   }
 
   private byte[] getOutput(int outputLength) {
@@ -109,5 +120,8 @@ public final class Blake3MessageDigest extends MessageDigest {
   public static native void blake3_hasher_update(
       byte[] hasher, byte[] input, int offset, int inputLen);
 
+  public static native void blake3_hasher_update_direct(
+      byte[] hasher, ByteBuffer input, int offset, int inputLen);
+
   public static native void blake3_hasher_finalize(byte[] hasher, byte[] out, int outLen);
 }
@@ -54,6 +54,8 @@ public class Backplane {
   @Getter(AccessLevel.NONE)
   private boolean runFailsafeOperation = true; // deprecated
 
+  private int subscriptionShards = 1;
+  private boolean compactOperationChanges = false;
   private int maxQueueDepth = 100000;
   private int maxPreQueueDepth = 1000000;
   private boolean priorityQueue = false;
@@ -82,7 +84,8 @@ public class Backplane {
   private int timeout = 10000; // Milliseconds
   private String[] redisNodes = {};
   private int maxAttempts = 20;
-  private long priorityPollIntervalMillis = 100;
+  // unused, priority queue takes block until an offer signals them
+  @Deprecated private long priorityPollIntervalMillis = 100;
 
   /**
    * This function is used to print the URI in logs.
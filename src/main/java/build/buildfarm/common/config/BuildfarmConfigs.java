@@ -36,6 +36,14 @@ public final class BuildfarmConfigs {
   private long maxEntrySizeBytes = 2147483648L; // 2 * 1024 * 1024 * 1024
   private int prometheusPort = 9090;
   private boolean allowSymlinkTargetAbsolute = false;
+  private int hotBlobReplicas = 0;
+  private int hotBlobReadThreshold = 100;
+  private long internalZstdMinSizeBytes = 0;
+  private long rangedFetchMinSizeBytes = 0;
+  private long rangedFetchRangeSizeBytes = 16 * 1024 * 1024;
+  private int rangedFetchParallelism = 4;
+  private long rangedFetchMaxBytes = 256 * 1024 * 1024;
+  private Profiling profiling = new Profiling();
   private Server server = new Server();
   private Backplane backplane = new Backplane();
   private Worker worker = new Worker();
@@ -23,6 +23,10 @@ public class Cas {
   private int hexBucketLevels = 0;
   private long maxSizeBytes = 0;
   private boolean fileDirectoriesIndexInMemory = false;
+
+  // hold the file directories index in interned primitive arrays, instead of sqlite or maps
+  private boolean fileDirectoriesIndexCompact = false;
+
   private boolean skipLoad = false;
 
   // if creating a hardlink fails, copy the file instead
@@ -46,6 +46,8 @@ public class Server {
   private int maxInboundMetadataSize = 0;
   private ServerCacheConfigs caches = new ServerCacheConfigs();
   private boolean findMissingBlobsViaBackplane = false;
+  private boolean rendezvousBlobPlacement = false;
+  private boolean referenceQueuedDirectories = false;
   private int gracefulShutdownSeconds = 0;
   private Set<String> correlatedInvocationsIndexScopes = ImmutableSet.of("host", "username");
 
@@ -52,4 +52,41 @@ public class ServerCacheConfigs {
    * @details This will not dictate the max memory used.
    */
   private long recentServedExecutionsCacheMaxEntries = 64 * 1024;
+
+  /**
+   * @field validatedDirectoryCacheMaxInputs
+   * @brief The max number of directory entries that the validated directory cache will hold.
+   * @details Each validated directory holds the digests of its files and subdirectories.
+   */
+  private long validatedDirectoryCacheMaxInputs = 1024 * 1024;
+
+  /**
+   * @field missingBlobCacheExpireAfterMillis
+   * @brief The time that blobs found missing on all workers are remembered.
+   * @details A remembered miss is answered without querying workers while the blob has no
+   *     registered location. Disabled when zero.
+   */
+  private long missingBlobCacheExpireAfterMillis = 0;
+
+  /**
+   * @field missingBlobCacheMaxEntries
+   * @brief The max number of entries that the missing blob cache will hold.
+   */
+  private long missingBlobCacheMaxEntries = 64 * 1024;
+
+  /**
+   * @field actionResultRefreshAfterWriteSeconds
+   * @brief The age at which a locally cached action result is reloaded from the backplane.
+   * @details The cached action result continues to be served while it is reloaded. Disabled when
+   *     zero.
+   */
+  private long actionResultRefreshAfterWriteSeconds = 0;
+
+  /**
+   * @field actionResultOutputsVerifiedSeconds
+   * @brief The time that an action result's outputs are trusted to be present after a check.
+   * @details Repeated hits on the action result within this time skip the check for its outputs
+   *     when outputs are ensured to be present. Disabled when zero.
+   */
+  private long actionResultOutputsVerifiedSeconds = 0;
 }
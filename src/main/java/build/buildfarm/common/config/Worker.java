@@ -33,6 +33,7 @@ public class Worker {
   private boolean linkExecFileSystem = true;
   private boolean linkInputDirectories = true;
   private List<String> linkedInputDirectories = Arrays.asList("(?!external/)[^/]+");
+  private boolean linkOutputFiles = false;
   private String execOwner;
   private List<String> execOwners = new ArrayList<>();
   private int defaultMaxCores = 0;
@@ -46,6 +47,7 @@ public class Worker {
   private boolean createSymlinkOutputs = false;
   private int zstdBufferPoolSize = 2048; /* * ZSTD_DStreamInSize (current is 128k) == 256MiB */
   private Set<String> persistentWorkerActionMnemonicAllowlist = Set.of("*");
+  private long directoryCacheMaxSizeBytes = 64 * 1024 * 1024;
   // These limited resources are only for the individual worker.
   // An example would be hardware resources such as GPUs.
   // If you want GPU actions to run exclusively, define a single GPU resource.
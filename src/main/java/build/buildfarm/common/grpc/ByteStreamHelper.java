@@ -52,8 +52,36 @@ public final class ByteStreamHelper {
       Predicate<Status> isRetriable,
       @Nullable ListeningScheduledExecutorService retryService)
       throws IOException {
+    return newInput(
+        resourceName,
+        offset,
+        /* limit= */ 0,
+        bsStubSupplier,
+        backoffSupplier,
+        isRetriable,
+        retryService);
+  }
+
+  /**
+   * Read a resource from the offset, up to limit bytes, or to its end if the limit is 0. Retries
+   * resume from the last offset received, with the limit reduced accordingly.
+   */
+  @SuppressWarnings("Guava")
+  public static InputStream newInput(
+      String resourceName,
+      long offset,
+      long limit,
+      Supplier<ByteStreamStub> bsStubSupplier,
+      Supplier<Backoff> backoffSupplier,
+      Predicate<Status> isRetriable,
+      @Nullable ListeningScheduledExecutorService retryService)
+      throws IOException {
     ReadRequest request =
-        ReadRequest.newBuilder().setResourceName(resourceName).setReadOffset(offset).build();
+        ReadRequest.newBuilder()
+            .setResourceName(resourceName)
+            .setReadOffset(offset)
+            .setReadLimit(limit)
+            .build();
     BlockingQueue<ByteString> queue = new ArrayBlockingQueue<>(1);
     ByteStringQueueInputStream inputStream = new ByteStringQueueInputStream(queue);
     // this interface needs to operate similar to open, where it
@@ -82,9 +110,19 @@ public final class ByteStreamHelper {
 
           private void retryRequest() {
             requestOffset = currentOffset;
+            long remaining = limit - (requestOffset - offset);
+            if (limit > 0 && remaining <= 0) {
+              onCompleted();
+              return;
+            }
             bsStubSupplier
                 .get()
-                .read(request.toBuilder().setReadOffset(requestOffset).build(), this);
+                .read(
+                    request.toBuilder()
+                        .setReadOffset(requestOffset)
+                        .setReadLimit(limit > 0 ? remaining : 0)
+                        .build(),
+                    this);
           }
 
           @Override
@@ -122,6 +160,8 @@ public final class ByteStreamHelper {
 
           @Override
           public void onCompleted() {
+            // an empty range completes without a response
+            streamReadyFuture.set(inputStream);
             inputStream.setCompleted();
           }
         };
@@ -32,11 +32,12 @@ import redis.clients.jedis.Jedis;
  *     to store and distribute the data. Its important to know that the lifetime of the queue
  *     persists before and after the queue data structure is created (since it exists in redis).
  *     Therefore, two redis queues with the same name, would in fact be the same underlying redis
- *     queue.
+ *     queue. Sorted sets have no blocking pop that can move an entry into a list atomically, so
+ *     offers also push a token onto a signal list, on which empty takes block until woken.
  */
 public class RedisPriorityQueue implements Queue<String> {
   private static final Clock defaultClock = Clock.systemUTC();
-  private static final long defaultPollIntervalMillis = 100;
+  private static final int maxSignals = 10000;
 
   public static Queue<String> decorate(Jedis jedis, String name) {
     return new RedisPriorityQueue(jedis, name);
@@ -54,8 +55,8 @@ public class RedisPriorityQueue implements Queue<String> {
   @Getter private final String name;
 
   private final String script;
+  private final String signalScript;
   private final Clock clock;
-  private final long pollIntervalMillis;
 
   /**
    * @brief Constructor.
@@ -63,7 +64,7 @@ public class RedisPriorityQueue implements Queue<String> {
    * @param name The global name of the queue.
    */
   public RedisPriorityQueue(Jedis jedis, String name) {
-    this(jedis, name, defaultPollIntervalMillis);
+    this(jedis, name, defaultClock);
   }
 
   /**
@@ -71,36 +72,14 @@ public class RedisPriorityQueue implements Queue<String> {
    * @details Construct a named redis queue with an established redis cluster. Used to ease the
    *     testing of the order of the queued actions
    * @param name The global name of the queue.
+   * @param clock Clock used to timestamp queued actions.
    */
   public RedisPriorityQueue(Jedis jedis, String name, Clock clock) {
-    this(jedis, name, clock, defaultPollIntervalMillis);
-  }
-
-  /**
-   * @brief Constructor.
-   * @details Construct a named redis queue with an established redis cluster. Used to ease the
-   *     testing of the order of the queued actions
-   * @param name The global name of the queue.
-   * @param pollIntervalMillis pollInterval to use when dqueuing from redis.
-   */
-  public RedisPriorityQueue(Jedis jedis, String name, long pollIntervalMillis) {
-    this(jedis, name, defaultClock, pollIntervalMillis);
-  }
-
-  /**
-   * @brief Constructor.
-   * @details Construct a named redis queue with an established redis cluster. Used to ease the
-   *     testing of the order of the queued actions
-   * @param name The global name of the queue.
-   * @param time Timestamp of the operation.
-   * @param pollIntervalMillis pollInterval to use when dqueuing from redis.
-   */
-  public RedisPriorityQueue(Jedis jedis, String name, Clock clock, long pollIntervalMillis) {
     this.jedis = jedis;
     this.name = name;
     this.clock = clock;
     this.script = getLuaScript();
-    this.pollIntervalMillis = pollIntervalMillis;
+    this.signalScript = getSignalLuaScript();
   }
 
   /**
@@ -123,9 +102,23 @@ public class RedisPriorityQueue implements Queue<String> {
   @Override
   public boolean offer(String val, double priority) {
     jedis.zadd(name, priority, clock.millis() + ":" + val);
+    signal();
     return true;
   }
 
+  /**
+   * @brief Wake a blocked taker.
+   * @details Pushes a token onto the signal list so that a single take blocked on it will retry its
+   *     dequeue. Polls consume the token of each element they dequeue, and the list is trimmed as a
+   *     backstop against tokens outliving their elements.
+   */
+  private void signal() {
+    jedis.eval(
+        signalScript,
+        ImmutableList.of(getSignalName()),
+        ImmutableList.of(Integer.toString(maxSignals - 1)));
+  }
+
   /**
    * @brief Remove element from dequeue.
    * @details Removes an element from the dequeue and specifies whether it was removed.
@@ -157,8 +150,8 @@ public class RedisPriorityQueue implements Queue<String> {
   /**
    * @brief Pop element into internal dequeue and return value.
    * @details This pops the element from one queue atomically into an internal list called the
-   *     dequeue. It will wait until the timeout has expired. Null is returned if the timeout has
-   *     expired.
+   *     dequeue. While the queue is empty it blocks on the signal list until an offer wakes it or
+   *     the timeout has expired. Null is returned if the timeout has expired.
    * @param timeout Timeout to wait if there is no item to dequeue.
    * @return The value of the transfered element. null if the thread was interrupted.
    * @note Overloaded.
@@ -166,18 +159,25 @@ public class RedisPriorityQueue implements Queue<String> {
    */
   @Override
   public String take(Duration timeout) throws InterruptedException {
-    int maxAttempts = Math.max(1, (int) (timeout.toMillis() / pollIntervalMillis));
-    List<String> args = ImmutableList.of(name, getDequeueName(), "true");
-    String val;
-    for (int i = 0; i < maxAttempts; ++i) {
-      Object obj_val = jedis.eval(script, ImmutableList.of(name), args);
-      val = String.valueOf(obj_val);
-      if (!isEmpty(val)) {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    // a take woken by a token has already consumed the token for the element it dequeues
+    boolean signalled = false;
+    for (; ; ) {
+      String val = poll(/* consumeSignal= */ !signalled);
+      if (val != null) {
         return val;
       }
-      Thread.sleep(pollIntervalMillis);
+      long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return null;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      // round up to whole milliseconds, a zero timeout blocks indefinitely in redis
+      long remainingMillis = (remainingNanos + 999_999) / 1_000_000;
+      signalled = jedis.blpop(remainingMillis / 1000.0, getSignalName()) != null;
     }
-    return null;
   }
 
   /**
@@ -189,7 +189,20 @@ public class RedisPriorityQueue implements Queue<String> {
    */
   @Override
   public String poll() {
-    List<String> args = ImmutableList.of(name, getDequeueName());
+    return poll(/* consumeSignal= */ true);
+  }
+
+  /**
+   * @brief Pop element into internal dequeue and return value.
+   * @details Dequeues as poll does, and maintains the signal list in the same script: the token of
+   *     a dequeued element is consumed unless the caller already popped it while blocked, and an
+   *     empty queue clears any tokens left behind, so that takers do not wake for stale tokens.
+   * @param consumeSignal Whether to consume a token for a dequeued element.
+   * @return The value of the transfered element. null if nothing was dequeued.
+   */
+  private String poll(boolean consumeSignal) {
+    List<String> args =
+        ImmutableList.of(name, getDequeueName(), getSignalName(), consumeSignal ? "1" : "0");
     Object obj_val = jedis.eval(script, ImmutableList.of(name), args);
     String val = String.valueOf(obj_val);
     if (!isEmpty(val)) {
@@ -209,6 +222,17 @@ public class RedisPriorityQueue implements Queue<String> {
     return name + "_dequeue";
   }
 
+  /**
+   * @brief Get signal name.
+   * @details Get the name of the list used to wake takers blocked on an empty queue. Offers push a
+   *     token here, and blocked takes pop one before retrying their dequeue.
+   * @return The name of the signal list.
+   * @note Suggested return identifier: name.
+   */
+  public String getSignalName() {
+    return name + "_signal";
+  }
+
   /**
    * @brief Get size.
    * @details Checks the current length of the queue.
@@ -291,6 +315,8 @@ public class RedisPriorityQueue implements Queue<String> {
         "\n",
         "local zset = ARGV[1]",
         "local deqName = ARGV[2]",
+        "local signalName = ARGV[3]",
+        "local consumeSignal = ARGV[4] == '1'",
         "local val = ''",
         "local function isempty(s)",
         "   return s == nil or s == ''",
@@ -304,10 +330,26 @@ public class RedisPriorityQueue implements Queue<String> {
         "    redis.call('ZREM', zset, item)",
         "    redis.call('LPUSH', deqName, val)",
         "  end",
+        "  if consumeSignal then",
+        "    redis.call('LPOP', signalName)",
+        "  end",
+        "else",
+        "  redis.call('DEL', signalName)",
         "end",
         "return val");
   }
 
+  /**
+   * @brief Lua code for waking takers.
+   * @details Pushes a token onto the signal list and bounds its length in a single round trip.
+   */
+  private String getSignalLuaScript() {
+    return String.join(
+        "\n",
+        "redis.call('LPUSH', KEYS[1], '1')",
+        "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[1]))");
+  }
+
   /**
    * @brief Implement handy isEmpty method.
    * @details Compare the value for null, (empty string) or "null" string. For some reason
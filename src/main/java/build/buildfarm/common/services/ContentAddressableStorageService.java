@@ -14,10 +14,7 @@
 
 package build.buildfarm.common.services;
 
-import static build.buildfarm.instance.Utils.putBlobFuture;
 import static com.google.common.util.concurrent.Futures.addCallback;
-import static com.google.common.util.concurrent.Futures.allAsList;
-import static com.google.common.util.concurrent.Futures.catching;
 import static com.google.common.util.concurrent.Futures.transform;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.lang.String.format;
@@ -26,11 +23,8 @@ import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import build.bazel.remote.execution.v2.BatchReadBlobsRequest;
 import build.bazel.remote.execution.v2.BatchReadBlobsResponse;
 import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
-import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest.Request;
 import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
-import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse.Response;
 import build.bazel.remote.execution.v2.ContentAddressableStorageGrpc;
-import build.bazel.remote.execution.v2.Digest;
 import build.bazel.remote.execution.v2.DigestFunction;
 import build.bazel.remote.execution.v2.FindMissingBlobsRequest;
 import build.bazel.remote.execution.v2.FindMissingBlobsResponse;
@@ -42,17 +36,15 @@ import build.buildfarm.common.grpc.TracingMetadataUtils;
 import build.buildfarm.instance.Instance;
 import build.buildfarm.v1test.Tree;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Context;
 import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.stub.StreamObserver;
 import io.prometheus.client.Histogram;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import lombok.extern.java.Log;
 
 @Log
@@ -137,69 +129,19 @@ public class ContentAddressableStorageService
         directExecutor());
   }
 
-  private static com.google.rpc.Status statusForCode(Code code) {
-    return com.google.rpc.Status.newBuilder().setCode(code.value()).build();
-  }
-
-  private static ListenableFuture<Response> toResponseFuture(
-      ListenableFuture<Code> codeFuture, Digest digest) {
-    return transform(
-        codeFuture,
-        code -> Response.newBuilder().setDigest(digest).setStatus(statusForCode(code)).build(),
-        directExecutor());
-  }
-
-  private static Iterable<ListenableFuture<Response>> putAllBlobs(
-      Instance instance,
-      Iterable<Request> requests,
-      DigestFunction.Value digestFunction,
-      long writeDeadlineAfter,
-      TimeUnit writeDeadlineAfterUnits) {
-    ImmutableList.Builder<ListenableFuture<Response>> responses = new ImmutableList.Builder<>();
-    for (Request request : requests) {
-      build.buildfarm.v1test.Digest digest =
-          DigestUtil.fromDigest(request.getDigest(), digestFunction);
-      ListenableFuture<build.buildfarm.v1test.Digest> future =
-          putBlobFuture(
-              instance,
-              request.getCompressor(),
-              digest,
-              request.getData(),
-              writeDeadlineAfter,
-              writeDeadlineAfterUnits,
-              TracingMetadataUtils.fromCurrentContext());
-      responses.add(
-          toResponseFuture(
-              catching(
-                  transform(future, d -> Code.OK, directExecutor()),
-                  Throwable.class,
-                  (e) -> Status.fromThrowable(e).getCode(),
-                  directExecutor()),
-              DigestUtil.toDigest(digest)));
-    }
-    return responses.build();
-  }
-
   @Override
   public void batchUpdateBlobs(
       BatchUpdateBlobsRequest batchRequest,
       StreamObserver<BatchUpdateBlobsResponse> responseObserver) {
-    BatchUpdateBlobsResponse.Builder response = BatchUpdateBlobsResponse.newBuilder();
     ListenableFuture<BatchUpdateBlobsResponse> responseFuture =
         transform(
-            allAsList(
-                StreamSupport.stream(
-                        putAllBlobs(
-                                instance,
-                                batchRequest.getRequestsList(),
-                                batchRequest.getDigestFunction(),
-                                writeDeadlineAfter,
-                                TimeUnit.SECONDS)
-                            .spliterator(),
-                        false)
-                    .map((future) -> transform(future, response::addResponses, directExecutor()))
-                    .collect(Collectors.toList())),
-            (result) -> response.build(),
+            instance.putAllBlobsFuture(
+                batchRequest.getRequestsList(),
+                batchRequest.getDigestFunction(),
+                writeDeadlineAfter,
+                TimeUnit.SECONDS,
+                TracingMetadataUtils.fromCurrentContext()),
+            (responses) -> BatchUpdateBlobsResponse.newBuilder().addAllResponses(responses).build(),
             directExecutor());
 
     addCallback(
@@ -227,6 +169,10 @@ public class ContentAddressableStorageService
       int pageSize,
       StreamObserver<GetTreeResponse> responseObserver) {
     do {
+      // pages are sent as they are filled, and stop with the client
+      if (Context.current().isCancelled()) {
+        return;
+      }
       Tree.Builder builder = Tree.newBuilder().setRootDigest(rootDigest);
       String nextPageToken = instance.getTree(rootDigest, pageSize, pageToken, builder);
       Tree tree = builder.build();
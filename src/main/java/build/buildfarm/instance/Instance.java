@@ -112,6 +112,13 @@ public interface Instance {
       RequestMetadata requestMetadata)
       throws IOException, IllegalArgumentException, InterruptedException;
 
+  ListenableFuture<List<BatchUpdateBlobsResponse.Response>> putAllBlobsFuture(
+      Iterable<BatchUpdateBlobsRequest.Request> blobs,
+      DigestFunction.Value digestFunction,
+      long writeDeadlineAfter,
+      TimeUnit writeDeadlineAfterUnits,
+      RequestMetadata requestMetadata);
+
   ListenableFuture<build.buildfarm.v1test.Digest> fetchBlob(
       Iterable<String> uris,
       Map<String, String> headers,
@@ -1,6 +1,24 @@
 package build.buildfarm.instance;
 
+import static build.buildfarm.instance.Utils.putBlobFuture;
+import static com.google.common.util.concurrent.Futures.allAsList;
+import static com.google.common.util.concurrent.Futures.catching;
+import static com.google.common.util.concurrent.Futures.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest.Request;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse.Response;
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public abstract class InstanceBase implements Instance {
   private final String name;
@@ -55,4 +73,56 @@ public abstract class InstanceBase implements Instance {
     }
     return UUID.fromString(operationName.substring(1));
   }
+
+  // each blob is written independently through getBlobWrite
+  @Override
+  public ListenableFuture<List<Response>> putAllBlobsFuture(
+      Iterable<Request> requests,
+      DigestFunction.Value digestFunction,
+      long writeDeadlineAfter,
+      TimeUnit writeDeadlineAfterUnits,
+      RequestMetadata requestMetadata) {
+    ImmutableList.Builder<ListenableFuture<Response>> responses = ImmutableList.builder();
+    for (Request request : requests) {
+      responses.add(
+          putBlobResponseFuture(
+              request,
+              digestFunction,
+              writeDeadlineAfter,
+              writeDeadlineAfterUnits,
+              requestMetadata));
+    }
+    return allAsList(responses.build());
+  }
+
+  protected ListenableFuture<Response> putBlobResponseFuture(
+      Request request,
+      DigestFunction.Value digestFunction,
+      long writeDeadlineAfter,
+      TimeUnit writeDeadlineAfterUnits,
+      RequestMetadata requestMetadata) {
+    Digest digest = DigestUtil.fromDigest(request.getDigest(), digestFunction);
+    ListenableFuture<Digest> future =
+        putBlobFuture(
+            this,
+            request.getCompressor(),
+            digest,
+            request.getData(),
+            writeDeadlineAfter,
+            writeDeadlineAfterUnits,
+            requestMetadata);
+    return catching(
+        transform(future, d -> putBlobResponse(request.getDigest(), Code.OK), directExecutor()),
+        Throwable.class,
+        e -> putBlobResponse(request.getDigest(), Status.fromThrowable(e).getCode()),
+        directExecutor());
+  }
+
+  protected static Response putBlobResponse(
+      build.bazel.remote.execution.v2.Digest digest, Code code) {
+    return Response.newBuilder()
+        .setDigest(digest)
+        .setStatus(com.google.rpc.Status.newBuilder().setCode(code.value()))
+        .build();
+  }
 }
@@ -94,6 +94,8 @@ import build.buildfarm.v1test.WorkerListMessage;
 import build.buildfarm.v1test.WorkerProfileMessage;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -139,6 +141,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -158,6 +161,13 @@ public abstract class NodeInstance extends InstanceBase {
   protected final OperationsMap completedOperations;
   protected final Map<Digest, ByteString> activeBlobWrites;
   protected final boolean ensureOutputsPresent;
+  private final Cache<Digest, ValidatedDirectories.Entry> validatedDirectories =
+      ValidatedDirectories.newCache(
+          configs.getServer().getCaches().getValidatedDirectoryCacheMaxInputs());
+  // action results whose outputs were recently found to be present
+  private final @Nullable Cache<ActionKey, ActionResult> verifiedActionResults =
+      newVerifiedActionResultsCache(
+          configs.getServer().getCaches().getActionResultOutputsVerifiedSeconds());
 
   public static final String ACTION_INPUT_ROOT_DIRECTORY_PATH = "";
 
@@ -338,6 +348,46 @@ public abstract class NodeInstance extends InstanceBase {
             directExecutor()));
   }
 
+  private static @Nullable Cache<ActionKey, ActionResult> newVerifiedActionResultsCache(
+      long expireAfterSeconds) {
+    if (expireAfterSeconds <= 0) {
+      return null;
+    }
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(expireAfterSeconds, SECONDS)
+        .maximumSize(64 * 1024)
+        .build();
+  }
+
+  // skips the outputs check for an action result that has recently passed it
+  private ListenableFuture<ActionResult> ensureOutputsPresent(
+      ActionKey actionKey,
+      ListenableFuture<ActionResult> resultFuture,
+      RequestMetadata requestMetadata) {
+    DigestFunction.Value digestFunction = actionKey.getDigest().getDigestFunction();
+    if (verifiedActionResults == null) {
+      return ensureOutputsPresent(resultFuture, digestFunction, requestMetadata);
+    }
+    return notFoundNullActionResult(
+        transformAsync(
+            resultFuture,
+            result -> {
+              if (result != null && result.equals(verifiedActionResults.getIfPresent(actionKey))) {
+                return immediateFuture(result);
+              }
+              return transform(
+                  ensureOutputsPresent(immediateFuture(result), digestFunction, requestMetadata),
+                  presentResult -> {
+                    if (presentResult != null) {
+                      verifiedActionResults.put(actionKey, presentResult);
+                    }
+                    return presentResult;
+                  },
+                  directExecutor());
+            },
+            directExecutor()));
+  }
+
   private static boolean requestFlag(
       RequestMetadata requestMetadata, String name, boolean flagDefault) {
     try {
@@ -378,10 +428,7 @@ public abstract class NodeInstance extends InstanceBase {
       ActionKey actionKey, RequestMetadata requestMetadata) {
     ListenableFuture<ActionResult> result = checkNotNull(actionCache.get(actionKey));
     if (shouldEnsureOutputsPresent(ensureOutputsPresent, requestMetadata)) {
-      result =
-          checkNotNull(
-              ensureOutputsPresent(
-                  result, actionKey.getDigest().getDigestFunction(), requestMetadata));
+      result = checkNotNull(ensureOutputsPresent(actionKey, result, requestMetadata));
     }
     return result;
   }
@@ -613,6 +660,11 @@ public abstract class NodeInstance extends InstanceBase {
 
   protected abstract int getTreeMaxPageSize();
 
+  // leaves headroom under the default 4MB message limit for the last directory added to a page
+  protected long getTreeMaxPageBytes() {
+    return Size.mbToBytes(2);
+  }
+
   protected abstract TokenizableIterator<DirectoryEntry> createTreeIterator(
       String reason, build.buildfarm.v1test.Digest rootDigest, String pageToken);
 
@@ -630,13 +682,15 @@ public abstract class NodeInstance extends InstanceBase {
 
     TokenizableIterator<DirectoryEntry> iter = createTreeIterator("getTree", rootDigest, pageToken);
 
-    while (iter.hasNext() && pageSize != 0) {
+    long pageBytes = 0;
+    while (iter.hasNext() && pageSize != 0 && pageBytes < getTreeMaxPageBytes()) {
       DirectoryEntry entry = iter.next();
       Directory directory = entry.getDirectory();
       // If part of the tree is missing from the CAS, the server will return the
       // portion present and omit the rest.
       if (directory != null) {
         tree.putDirectories(entry.getDigest().getHash(), directory);
+        pageBytes += directory.getSerializedSize();
         if (pageSize > 0) {
           pageSize--;
         }
@@ -878,6 +932,40 @@ public abstract class NodeInstance extends InstanceBase {
       Consumer<String> onInputDirectory,
       Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
       PreconditionFailure.Builder preconditionFailure) {
+    validateActionInputDirectory(
+        digestFunction,
+        directoryPath,
+        directory,
+        pathDigests,
+        visited,
+        directoriesIndex,
+        allowSymlinkTargetAbsolute,
+        onInputFile,
+        onInputDirectory,
+        onInputDigest,
+        /* validated= */ null,
+        preconditionFailure);
+  }
+
+  /**
+   * When validated directories are supplied, subtrees which have already passed validation are
+   * skipped and only report their input digests, and repeated subtrees within the tree are
+   * validated in full rather than enumerated so that any violation in them is attributed to each
+   * parent.
+   */
+  private static void validateActionInputDirectory(
+      DigestFunction.Value digestFunction,
+      String directoryPath,
+      Directory directory,
+      Stack<build.bazel.remote.execution.v2.Digest> pathDigests,
+      Set<build.bazel.remote.execution.v2.Digest> visited,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
+      boolean allowSymlinkTargetAbsolute,
+      Consumer<String> onInputFile,
+      Consumer<String> onInputDirectory,
+      Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
+      @Nullable ValidatedDirectories validated,
+      PreconditionFailure.Builder preconditionFailure) {
     Set<String> entryNames = new HashSet<>();
 
     String lastFileName = "";
@@ -978,7 +1066,7 @@ public abstract class NodeInstance extends InstanceBase {
         String subDirectoryPath =
             directoryPath.isEmpty() ? directoryName : (directoryPath + "/" + directoryName);
         onInputDirectory.accept(subDirectoryPath);
-        if (visited.contains(directoryDigest)) {
+        if (validated == null && visited.contains(directoryDigest)) {
           Directory subDirectory;
           if (directoryDigest.getSizeBytes() == 0) {
             subDirectory = Directory.getDefaultInstance();
@@ -1004,6 +1092,7 @@ public abstract class NodeInstance extends InstanceBase {
               onInputFile,
               onInputDirectory,
               onInputDigest,
+              validated,
               preconditionFailure);
         }
       }
@@ -1021,8 +1110,36 @@ public abstract class NodeInstance extends InstanceBase {
       Consumer<String> onInputFile,
       Consumer<String> onInputDirectory,
       Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
+      @Nullable ValidatedDirectories validated,
       PreconditionFailure.Builder preconditionFailure) {
     build.bazel.remote.execution.v2.Digest digest = DigestUtil.toDigest(directoryDigest);
+    if (validated != null) {
+      ValidatedDirectories.Entry entry = validated.get(directoryDigest);
+      if (entry != null) {
+        // the inputs of a validated subtree are reported once per validation
+        if (visited.add(digest)) {
+          DigestFunction.Value digestFunction = directoryDigest.getDigestFunction();
+          entry.fileDigests().forEach(onInputDigest);
+          for (DirectoryNode directoryNode : entry.directories()) {
+            String name = directoryNode.getName();
+            validateActionInputDirectoryDigest(
+                directoryPath.isEmpty() ? name : (directoryPath + "/" + name),
+                DigestUtil.fromDigest(directoryNode.getDigest(), digestFunction),
+                pathDigests,
+                visited,
+                directoriesIndex,
+                allowSymlinkTargetAbsolute,
+                onInputFile,
+                onInputDirectory,
+                onInputDigest,
+                validated,
+                preconditionFailure);
+          }
+        }
+        return;
+      }
+    }
+    int violationsCount = preconditionFailure.getViolationsCount();
     pathDigests.push(digest);
     final Directory directory;
     if (digest.getSizeBytes() == 0) {
@@ -1048,15 +1165,92 @@ public abstract class NodeInstance extends InstanceBase {
           onInputFile,
           onInputDirectory,
           onInputDigest,
+          validated,
           preconditionFailure);
     }
     pathDigests.pop();
     if (directory != null) {
       // missing directories are not visited and will appear in violations list each time
       visited.add(digest);
+      if (validated != null && preconditionFailure.getViolationsCount() == violationsCount) {
+        validated.put(directoryDigest, directory);
+      }
     }
   }
 
+  // resolves a path relative to the input root to its parent directory, or null if any ancestor
+  // is not an input directory
+  private static @Nullable Directory inputParentDirectory(
+      String[] segments,
+      build.bazel.remote.execution.v2.Digest inputRootDigest,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
+    Directory directory = inputDirectory(inputRootDigest, directoriesIndex);
+    for (int i = 0; directory != null && i < segments.length - 1; i++) {
+      directory = inputSubdirectory(directory, segments[i], directoriesIndex);
+    }
+    return directory;
+  }
+
+  private static @Nullable Directory inputDirectory(
+      build.bazel.remote.execution.v2.Digest digest,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
+    if (digest.getSizeBytes() == 0) {
+      return Directory.getDefaultInstance();
+    }
+    return directoriesIndex.get(digest);
+  }
+
+  private static @Nullable Directory inputSubdirectory(
+      Directory directory,
+      String name,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
+    for (DirectoryNode directoryNode : directory.getDirectoriesList()) {
+      if (directoryNode.getName().equals(name)) {
+        return inputDirectory(directoryNode.getDigest(), directoriesIndex);
+      }
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  static boolean isInputFile(
+      String path,
+      build.bazel.remote.execution.v2.Digest inputRootDigest,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
+    String[] segments = path.split("/", -1);
+    Directory parent = inputParentDirectory(segments, inputRootDigest, directoriesIndex);
+    if (parent != null) {
+      String name = segments[segments.length - 1];
+      for (FileNode fileNode : parent.getFilesList()) {
+        if (fileNode.getName().equals(name)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @VisibleForTesting
+  static boolean isInputDirectory(
+      String path,
+      build.bazel.remote.execution.v2.Digest inputRootDigest,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex) {
+    if (path.equals(ACTION_INPUT_ROOT_DIRECTORY_PATH)) {
+      return true;
+    }
+    String[] segments = path.split("/", -1);
+    Directory parent = inputParentDirectory(segments, inputRootDigest, directoriesIndex);
+    if (parent != null) {
+      String name = segments[segments.length - 1];
+      for (DirectoryNode directoryNode : parent.getDirectoriesList()) {
+        if (directoryNode.getName().equals(name)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   protected ListenableFuture<Tree> getTreeFuture(
       String reason, Digest inputRoot, ExecutorService service, RequestMetadata requestMetadata) {
     return listeningDecorator(service)
@@ -1262,6 +1456,22 @@ public abstract class NodeInstance extends InstanceBase {
       Set<String> inputDirectories,
       Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
       PreconditionFailure.Builder preconditionFailure) {
+    validateCommand(
+        command,
+        inputRootDigest,
+        inputFiles::contains,
+        inputDirectories::contains,
+        directoriesIndex,
+        preconditionFailure);
+  }
+
+  private void validateCommand(
+      Command command,
+      build.bazel.remote.execution.v2.Digest inputRootDigest,
+      Predicate<String> isInputFile,
+      Predicate<String> isInputDirectory,
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
+      PreconditionFailure.Builder preconditionFailure) {
     validatePlatform(command.getPlatform(), preconditionFailure);
 
     // FIXME should input/output collisions (through directories) be another
@@ -1270,8 +1480,8 @@ public abstract class NodeInstance extends InstanceBase {
     filesUniqueAndSortedPrecondition(command.getOutputDirectoriesList(), preconditionFailure);
 
     validateOutputs(
-        inputFiles,
-        inputDirectories,
+        isInputFile,
+        isInputDirectory,
         Sets.newHashSet(command.getOutputFilesList()),
         Sets.newHashSet(command.getOutputDirectoriesList()),
         preconditionFailure);
@@ -1329,13 +1539,10 @@ public abstract class NodeInstance extends InstanceBase {
       Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex,
       Consumer<build.bazel.remote.execution.v2.Digest> onInputDigest,
       PreconditionFailure.Builder preconditionFailure) {
-    ImmutableSet.Builder<String> inputDirectoriesBuilder = ImmutableSet.builder();
-    ImmutableSet.Builder<String> inputFilesBuilder = ImmutableSet.builder();
-
-    inputDirectoriesBuilder.add(ACTION_INPUT_ROOT_DIRECTORY_PATH);
     boolean allowSymlinkTargetAbsolute =
         getCacheCapabilities().getSymlinkAbsolutePathStrategy()
             == SymlinkAbsolutePathStrategy.Value.ALLOWED;
+    // input paths are resolved against the tree only for the declared outputs
     validateActionInputDirectoryDigest(
         ACTION_INPUT_ROOT_DIRECTORY_PATH,
         DigestUtil.fromDigest(action.getInputRootDigest(), digestFunction),
@@ -1343,9 +1550,12 @@ public abstract class NodeInstance extends InstanceBase {
         new HashSet<>(),
         directoriesIndex,
         allowSymlinkTargetAbsolute,
-        inputFilesBuilder::add,
-        inputDirectoriesBuilder::add,
+        /* onInputFile= */ file -> {},
+        /* onInputDirectory= */ directory -> {},
         onInputDigest,
+        new ValidatedDirectories(
+            validatedDirectories,
+            DigestUtil.fromDigest(action.getInputRootDigest(), digestFunction)),
         preconditionFailure);
 
     if (command == null) {
@@ -1358,11 +1568,12 @@ public abstract class NodeInstance extends InstanceBase {
                       DigestUtil.fromDigest(action.getCommandDigest(), digestFunction)))
           .setDescription(MISSING_COMMAND);
     } else {
+      build.bazel.remote.execution.v2.Digest inputRootDigest = action.getInputRootDigest();
       validateCommand(
           command,
-          action.getInputRootDigest(),
-          inputFilesBuilder.build(),
-          inputDirectoriesBuilder.build(),
+          inputRootDigest,
+          path -> isInputFile(path, inputRootDigest, directoriesIndex),
+          path -> isInputDirectory(path, inputRootDigest, directoriesIndex),
           directoriesIndex,
           preconditionFailure);
     }
@@ -1375,6 +1586,20 @@ public abstract class NodeInstance extends InstanceBase {
       Set<String> outputFiles,
       Set<String> outputDirectories,
       PreconditionFailure.Builder preconditionFailure) {
+    validateOutputs(
+        inputFiles::contains,
+        inputDirectories::contains,
+        outputFiles,
+        outputDirectories,
+        preconditionFailure);
+  }
+
+  private static void validateOutputs(
+      Predicate<String> isInputFile,
+      Predicate<String> isInputDirectory,
+      Set<String> outputFiles,
+      Set<String> outputDirectories,
+      PreconditionFailure.Builder preconditionFailure) {
     Set<String> outputFilesAndDirectories = Sets.intersection(outputFiles, outputDirectories);
     if (!outputFilesAndDirectories.isEmpty()) {
       preconditionFailure
@@ -1389,7 +1614,7 @@ public abstract class NodeInstance extends InstanceBase {
     // An output file cannot be a parent of another output file, be a child of a listed output
     // directory, or have the same path as any of the listed output directories.
     for (String outputFile : outputFiles) {
-      if (inputDirectories.contains(outputFile)) {
+      if (isInputDirectory.test(outputFile)) {
         preconditionFailure
             .addViolationsBuilder()
             .setType(VIOLATION_TYPE_INVALID)
@@ -1412,7 +1637,7 @@ public abstract class NodeInstance extends InstanceBase {
     // An output directory cannot be a parent of another output directory, be a parent of a listed
     // output file, or have the same path as any of the listed output files.
     for (String outputDir : outputDirectories) {
-      if (inputFiles.contains(outputDir)) {
+      if (isInputFile.test(outputDir)) {
         preconditionFailure
             .addViolationsBuilder()
             .setType(VIOLATION_TYPE_INVALID)
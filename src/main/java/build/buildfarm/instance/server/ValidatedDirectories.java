@@ -0,0 +1,98 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.server;
+
+import build.bazel.remote.execution.v2.Digest;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Input directories whose subtrees have passed validation, keyed by directory digest.
+ *
+ * <p>Each entry holds only the direct children of a directory: its file digests and its
+ * subdirectory nodes. A validated subtree is enumerated by walking its children through the cache,
+ * so that a digest shared by many directories is held once per parent rather than once per
+ * ancestor. Entries are shared between validations through a cache bounded by the total number of
+ * children held, and are retained for the duration of a single validation so that eviction cannot
+ * hide a subtree that was already validated in the same tree.
+ *
+ * <p>An input root is usually unique to its action. A root is only marked as seen on its first
+ * validation, and its children are cached when it is validated again, so that unique roots do not
+ * evict the shared subtrees the cache exists for.
+ */
+class ValidatedDirectories {
+  record Entry(
+      ImmutableList<Digest> fileDigests,
+      ImmutableList<DirectoryNode> directories,
+      boolean validated) {}
+
+  private static final Entry SEEN = new Entry(ImmutableList.of(), ImmutableList.of(), false);
+
+  private final Cache<build.buildfarm.v1test.Digest, Entry> shared;
+  private final build.buildfarm.v1test.Digest rootDigest;
+  private final Map<build.buildfarm.v1test.Digest, Entry> local = new HashMap<>();
+
+  ValidatedDirectories(
+      Cache<build.buildfarm.v1test.Digest, Entry> shared,
+      build.buildfarm.v1test.Digest rootDigest) {
+    this.shared = shared;
+    this.rootDigest = rootDigest;
+  }
+
+  static Cache<build.buildfarm.v1test.Digest, Entry> newCache(long maxInputs) {
+    return CacheBuilder.newBuilder()
+        .maximumWeight(maxInputs)
+        .weigher(
+            (build.buildfarm.v1test.Digest directoryDigest, Entry entry) ->
+                entry.fileDigests().size() + entry.directories().size() + 1)
+        .build();
+  }
+
+  /** The children of the validated directory, or null if it has not been validated. */
+  @Nullable
+  Entry get(build.buildfarm.v1test.Digest directoryDigest) {
+    Entry entry = local.get(directoryDigest);
+    if (entry == null) {
+      entry = shared.getIfPresent(directoryDigest);
+      if (entry == null || !entry.validated()) {
+        return null;
+      }
+      local.put(directoryDigest, entry);
+    }
+    return entry;
+  }
+
+  void put(build.buildfarm.v1test.Digest directoryDigest, Directory directory) {
+    ImmutableList.Builder<Digest> fileDigests = ImmutableList.builder();
+    for (FileNode fileNode : directory.getFilesList()) {
+      fileDigests.add(fileNode.getDigest());
+    }
+    Entry entry =
+        new Entry(fileDigests.build(), ImmutableList.copyOf(directory.getDirectoriesList()), true);
+    local.put(directoryDigest, entry);
+    if (directoryDigest.equals(rootDigest) && shared.getIfPresent(directoryDigest) == null) {
+      shared.put(directoryDigest, SEEN);
+    } else {
+      shared.put(directoryDigest, entry);
+    }
+  }
+}
@@ -27,7 +27,6 @@ import build.buildfarm.v1test.QueueStatus;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.google.protobuf.InvalidProtocolBufferException;
-import com.google.protobuf.util.JsonFormat;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -117,7 +116,7 @@ public class ExecutionQueue {
         String entry = balancedQueueEntry.getValue();
         QueueEntry.Builder queueEntry = QueueEntry.newBuilder();
         try {
-          JsonFormat.parser().merge(entry, queueEntry);
+          RedisShardBackplane.jsonParser.merge(entry, queueEntry);
           visitor.visit(new ExecutionQueueEntry(queue, balancedQueueEntry, queueEntry.build()));
         } catch (InvalidProtocolBufferException e) {
           log.log(Level.SEVERE, "invalid QueueEntry json: " + entry, e);
@@ -282,7 +281,7 @@ public class ExecutionQueue {
       if (balancedQueueEntry != null) {
         try {
           QueueEntry.Builder queueEntryBuilder = QueueEntry.newBuilder();
-          JsonFormat.parser().merge(balancedQueueEntry.getValue(), queueEntryBuilder);
+          RedisShardBackplane.jsonParser.merge(balancedQueueEntry.getValue(), queueEntryBuilder);
           QueueEntry queueEntry = queueEntryBuilder.build();
 
           return new ExecutionQueueEntry(queue, balancedQueueEntry, queueEntry);
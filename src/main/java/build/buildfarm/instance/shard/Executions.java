@@ -14,7 +14,6 @@
 
 package build.buildfarm.instance.shard;
 
-import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
 
 import build.bazel.remote.execution.v2.ExecuteOperationMetadata;
@@ -25,7 +24,10 @@ import com.google.longrunning.Operation;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import com.google.rpc.PreconditionFailure;
+import java.util.List;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import lombok.extern.java.Log;
 import redis.clients.jedis.UnifiedJedis;
@@ -51,6 +53,12 @@ public class Executions {
                   .build())
           .ignoringUnknownFields();
 
+  // keys per MGET for bulk fetches
+  private static final int FETCH_BATCH_SIZE = 500;
+
+  // below this many executions, parsing is cheaper than forking
+  private static final int PARALLEL_PARSE_THRESHOLD = 64;
+
   static JsonFormat.Parser getParser() {
     return operationParser;
   }
@@ -112,8 +120,8 @@ public class Executions {
    * @note Overloaded.
    * @note Suggested return identifier: operations.
    */
-  public Iterable<Operation> get(UnifiedJedis jedis, Iterable<String> names) {
-    return transform(executions.get(jedis, names), entry -> Executions.parse(entry.getValue()));
+  public List<Operation> get(UnifiedJedis jedis, Iterable<String> names) {
+    return parseAll(executions.mget(jedis, newArrayList(names), FETCH_BATCH_SIZE));
   }
 
   private static Operation parse(String operationJson) {
@@ -129,12 +137,17 @@ public class Executions {
     return null;
   }
 
+  // preserves order and nulls for missing executions
+  private static List<Operation> parseAll(List<String> operationJsons) {
+    Stream<String> stream =
+        operationJsons.size() >= PARALLEL_PARSE_THRESHOLD
+            ? operationJsons.parallelStream()
+            : operationJsons.stream();
+    return stream.map(Executions::parse).collect(Collectors.toList());
+  }
+
   private ScanResult<Operation> parseScanResult(UnifiedJedis jedis, ScanResult<String> scanResult) {
-    return new ScanResult<>(
-        scanResult.getCursor(),
-        newArrayList(
-            transform(
-                executions.get(jedis, scanResult.getResult()), entry -> parse(entry.getValue()))));
+    return new ScanResult<>(scanResult.getCursor(), get(jedis, scanResult.getResult()));
   }
 
   public ScanResult<Operation> scan(UnifiedJedis jedis, String cursor, int count) {
@@ -0,0 +1,233 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.Write;
+import build.buildfarm.instance.Instance;
+import build.buildfarm.v1test.Digest;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+/**
+ * Copies frequently read blobs to additional workers and tracks per-worker read load.
+ *
+ * <p>Reads are counted per digest over a one minute window. When a blob crosses the read threshold
+ * and has fewer than {@code 1 + replicas} locations, it is copied in the background from its least
+ * loaded holder to the least loaded workers without it, and each copy is registered as a location.
+ * Replication is disabled when {@code replicas} is zero, but read load is always tracked so that
+ * readers can prefer idle holders.
+ */
+@Log
+class HotBlobReplicator {
+  private static final long REPLICATION_TIMEOUT_SECONDS = 60;
+  private static final long MAX_TRACKED_DIGESTS = 100_000;
+
+  private static final Counter replicationsCounter =
+      Counter.build()
+          .name("cas_hot_blob_replications")
+          .help("Number of hot blob replicas created.")
+          .register();
+  private static final Counter replicationBytesCounter =
+      Counter.build()
+          .name("cas_hot_blob_replication_bytes")
+          .help("Bytes copied to replicate hot blobs.")
+          .register();
+  private static final Counter replicationFailuresCounter =
+      Counter.build()
+          .name("cas_hot_blob_replication_failures")
+          .help("Number of hot blob replicas that could not be created.")
+          .register();
+  private static final Gauge workerReadsGauge =
+      Gauge.build()
+          .name("cas_worker_reads_inflight")
+          .labelNames("worker")
+          .help("Blob reads in progress per worker.")
+          .register();
+
+  private final Backplane backplane;
+  private final Function<String, Instance> workerStub;
+  private final int replicas;
+  private final int readThreshold;
+  private final Executor executor;
+  private final Random rand;
+  private final Cache<Digest, AtomicLong> reads =
+      CacheBuilder.newBuilder()
+          .expireAfterWrite(1, MINUTES)
+          .maximumSize(MAX_TRACKED_DIGESTS)
+          .build();
+  private final Set<Digest> replicating = ConcurrentHashMap.newKeySet();
+  private final Map<String, Long> inflightReads = new ConcurrentHashMap<>();
+
+  HotBlobReplicator(
+      Backplane backplane,
+      Function<String, Instance> workerStub,
+      int replicas,
+      int readThreshold,
+      Executor executor,
+      Random rand) {
+    this.backplane = backplane;
+    this.workerStub = workerStub;
+    this.replicas = replicas;
+    this.readThreshold = readThreshold;
+    this.executor = executor;
+    this.rand = rand;
+  }
+
+  /** The number of reads in progress on the worker. */
+  long load(String worker) {
+    return inflightReads.getOrDefault(worker, 0L);
+  }
+
+  void readStarted(String worker) {
+    inflightReads.compute(
+        worker,
+        (w, count) -> {
+          long next = count == null ? 1 : count + 1;
+          workerReadsGauge.labels(w).set(next);
+          return next;
+        });
+  }
+
+  // idle workers are dropped, so workers that leave the cluster do not linger in the gauge
+  void readFinished(String worker) {
+    inflightReads.computeIfPresent(
+        worker,
+        (w, count) -> {
+          if (count <= 1) {
+            workerReadsGauge.remove(w);
+            return null;
+          }
+          workerReadsGauge.labels(w).set(count - 1);
+          return count - 1;
+        });
+  }
+
+  /**
+   * Count a read of the blob, and replicate it if it is hot and underreplicated.
+   *
+   * @param locations the available workers holding the blob
+   * @param workers all available storage workers
+   */
+  void onRead(Digest digest, Set<String> locations, Set<String> workers) {
+    if (replicas <= 0) {
+      return;
+    }
+    long count = reads.asMap().computeIfAbsent(digest, d -> new AtomicLong()).incrementAndGet();
+    int needed = 1 + replicas - locations.size();
+    if (count < readThreshold || locations.isEmpty() || needed <= 0) {
+      return;
+    }
+    if (!replicating.add(digest)) {
+      return;
+    }
+    List<String> sources = new ArrayList<>(locations);
+    List<String> targets = new ArrayList<>(workers);
+    targets.removeAll(locations);
+    try {
+      executor.execute(
+          () -> {
+            try {
+              replicate(digest, leastLoaded(sources, 1).getFirst(), leastLoaded(targets, needed));
+            } finally {
+              replicating.remove(digest);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      replicating.remove(digest);
+    }
+  }
+
+  /** The workers ordered by increasing load, with ties in random order, limited to count. */
+  List<String> leastLoaded(List<String> workers, int count) {
+    List<String> ordered = new ArrayList<>(workers);
+    Collections.shuffle(ordered, rand);
+    ordered.sort(Comparator.comparingLong(this::load));
+    return ordered.subList(0, Math.min(count, ordered.size()));
+  }
+
+  private void replicate(Digest digest, String source, List<String> targets) {
+    for (String target : targets) {
+      try {
+        copy(digest, source, target);
+        backplane.addBlobLocation(digest, target);
+        replicationsCounter.inc();
+        replicationBytesCounter.inc(digest.getSize());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        replicationFailuresCounter.inc();
+        log.log(
+            Level.WARNING,
+            String.format(
+                "could not replicate %s from %s to %s",
+                DigestUtil.toString(digest), source, target),
+            e);
+      }
+    }
+  }
+
+  private void copy(Digest digest, String source, String target) throws Exception {
+    RequestMetadata requestMetadata = RequestMetadata.getDefaultInstance();
+    Write write =
+        workerStub
+            .apply(target)
+            .getBlobWrite(Compressor.Value.IDENTITY, digest, UUID.randomUUID(), requestMetadata);
+    readStarted(source);
+    try (InputStream in =
+            workerStub
+                .apply(source)
+                .newBlobInput(
+                    Compressor.Value.IDENTITY,
+                    digest,
+                    /* offset= */ 0,
+                    REPLICATION_TIMEOUT_SECONDS,
+                    SECONDS,
+                    requestMetadata);
+        OutputStream out = write.getOutput(REPLICATION_TIMEOUT_SECONDS, SECONDS, () -> {})) {
+      ByteStreams.copy(in, out);
+    } finally {
+      readFinished(source);
+    }
+    write.getFuture().get(REPLICATION_TIMEOUT_SECONDS, SECONDS);
+  }
+}
@@ -0,0 +1,194 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.buildfarm.v1test.Digest;
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.google.protobuf.ByteString;
+import io.prometheus.client.Counter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Compression of blobs fetched from workers for callers that requested them uncompressed.
+ *
+ * <p>Blobs at or above the size threshold are requested from workers with zstd and decompressed
+ * on receipt, so that the transfer between nodes is compressed while the caller sees the blob as
+ * requested. Only reads of a whole blob are compressed, since an offset into a compressed stream
+ * does not correspond to an offset into the blob, and a limit on a compressed stream would not
+ * bound the bytes of the blob. Bytes on the wire and after decompression are
+ * counted for uncompressed requests, to tune the threshold.
+ */
+class InternalCompression {
+  private static final Counter wireBytesCounter =
+      Counter.build()
+          .name("internal_fetch_wire_bytes")
+          .labelNames("compressor")
+          .help("Bytes of blobs fetched from workers, as transferred.")
+          .register();
+  private static final Counter logicalBytesCounter =
+      Counter.build()
+          .name("internal_fetch_logical_bytes")
+          .labelNames("compressor")
+          .help("Bytes of blobs fetched from workers, after decompression.")
+          .register();
+
+  private final long minSizeBytes;
+
+  /**
+   * @param minSizeBytes the smallest blob to fetch compressed, or 0 to never compress
+   */
+  InternalCompression(long minSizeBytes) {
+    this.minSizeBytes = minSizeBytes;
+  }
+
+  /**
+   * The compressor to fetch a blob with, for a read requested with the compressor.
+   *
+   * @param count the limit of the read, or 0 for the remainder of the blob
+   */
+  Compressor.Value fetchCompressor(
+      Compressor.Value compressor, Digest digest, long offset, long count) {
+    if (minSizeBytes > 0
+        && compressor == Compressor.Value.IDENTITY
+        && offset == 0
+        && (count == 0 || count >= digest.getSize())
+        && digest.getSize() >= minSizeBytes) {
+      return Compressor.Value.ZSTD;
+    }
+    return compressor;
+  }
+
+  /** Provide an input fetched with the fetch compressor as the requested compressor. */
+  InputStream newInput(
+      Compressor.Value compressor, Compressor.Value fetchCompressor, InputStream input)
+      throws IOException {
+    if (compressor != Compressor.Value.IDENTITY) {
+      return input;
+    }
+    InputStream wire =
+        new CountingInputStream(input, wireBytesCounter.labels(fetchCompressor.name()));
+    if (fetchCompressor != compressor) {
+      wire = new ZstdInputStreamNoFinalizer(wire, RecyclingBufferPool.INSTANCE);
+    }
+    return new CountingInputStream(wire, logicalBytesCounter.labels(fetchCompressor.name()));
+  }
+
+  /** Create a decoder of chunks fetched with the fetch compressor into the requested compressor. */
+  ChunkDecoder newChunkDecoder(Compressor.Value compressor, Compressor.Value fetchCompressor)
+      throws IOException {
+    return new ChunkDecoder(compressor, fetchCompressor);
+  }
+
+  static final class ChunkDecoder {
+    private final boolean counted;
+    private final Counter.Child wireBytes;
+    private final Counter.Child logicalBytes;
+    private final @Nullable ZstdInputStreamNoFinalizer decompressor;
+    private InputStream chunkInput = InputStream.nullInputStream();
+
+    private ChunkDecoder(Compressor.Value compressor, Compressor.Value fetchCompressor)
+        throws IOException {
+      counted = compressor == Compressor.Value.IDENTITY;
+      wireBytes = wireBytesCounter.labels(fetchCompressor.name());
+      logicalBytes = logicalBytesCounter.labels(fetchCompressor.name());
+      if (fetchCompressor != compressor) {
+        decompressor =
+            new ZstdInputStreamNoFinalizer(
+                    new InputStream() {
+                      @Override
+                      public int read() throws IOException {
+                        return chunkInput.read();
+                      }
+
+                      @Override
+                      public int read(byte[] b, int off, int len) throws IOException {
+                        return chunkInput.read(b, off, len);
+                      }
+                    },
+                    RecyclingBufferPool.INSTANCE)
+                .setContinuous(true);
+      } else {
+        decompressor = null;
+      }
+    }
+
+    boolean isDecompressing() {
+      return decompressor != null;
+    }
+
+    ByteString decode(ByteString chunk) throws IOException {
+      ByteString decoded = chunk;
+      if (decompressor != null) {
+        chunkInput = chunk.newInput();
+        decoded = ByteString.readFrom(decompressor);
+      }
+      if (counted) {
+        wireBytes.inc(chunk.size());
+        logicalBytes.inc(decoded.size());
+      }
+      return decoded;
+    }
+
+    /** Release the decompressor, which must be done once the fetch has finished. */
+    void close() {
+      if (decompressor != null) {
+        try {
+          decompressor.close();
+        } catch (IOException e) {
+          // the source is in memory, nothing to report
+        }
+      }
+    }
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    private final Counter.Child counter;
+
+    CountingInputStream(InputStream in, Counter.Child counter) {
+      super(in);
+      this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        counter.inc();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        counter.inc(n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      counter.inc(skipped);
+      return skipped;
+    }
+  }
+}
@@ -19,9 +19,13 @@ import build.buildfarm.common.redis.ScanCount;
 import build.buildfarm.v1test.Digest;
 import com.google.common.collect.ImmutableMap;
 import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.UnifiedJedis;
 
 /**
@@ -192,15 +196,23 @@ public class JedisCasWorkerMap implements CasWorkerMap {
    */
   @Override
   public Map<Digest, Set<String>> getMap(Iterable<Digest> blobDigests) {
+    List<Map.Entry<Digest, Response<Set<String>>>> responses = new ArrayList<>();
+    try (AbstractPipeline p = jedis.pipelined()) {
+      for (Digest blobDigest : blobDigests) {
+        String key = redisCasKey(blobDigest);
+        responses.add(new AbstractMap.SimpleEntry<>(blobDigest, p.smembers(key)));
+      }
+      p.sync();
+    }
+
     ImmutableMap.Builder<Digest, Set<String>> blobDigestsWorkers = new ImmutableMap.Builder<>();
-    for (Digest blobDigest : blobDigests) {
-      String key = redisCasKey(blobDigest);
-      Set<String> workers = jedis.smembers(key);
+    for (Map.Entry<Digest, Response<Set<String>>> response : responses) {
+      Set<String> workers = response.getValue().get();
 
       if (workers.isEmpty()) {
         continue;
       }
-      blobDigestsWorkers.put(blobDigest, workers);
+      blobDigestsWorkers.put(response.getKey(), workers);
     }
     return blobDigestsWorkers.build();
   }
@@ -0,0 +1,121 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.v1test.Digest;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.prometheus.client.Counter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Blobs that no worker could provide in a recent lookup.
+ *
+ * <p>Clients often probe for the same missing blobs repeatedly, and each miss would otherwise
+ * query every worker. A recorded miss is trusted only while the backplane holds no location for the
+ * blob, so a worker registering the blob invalidates it, as does a write through this server.
+ * Misses are remembered for a short time only, and not at all when the time is zero.
+ */
+class MissingBlobs {
+  private static final Counter avoidedQueriesCounter =
+      Counter.build()
+          .name("cas_missing_blob_cache_hits")
+          .help("Number of missing blob lookups answered without querying workers.")
+          .register();
+
+  private final @Nullable Cache<Digest, Boolean> missing;
+
+  MissingBlobs(long expireAfterMillis, long maxEntries) {
+    if (expireAfterMillis > 0) {
+      missing =
+          CacheBuilder.newBuilder()
+              .expireAfterWrite(expireAfterMillis, MILLISECONDS)
+              .maximumSize(maxEntries)
+              .build();
+    } else {
+      missing = null;
+    }
+  }
+
+  boolean isEnabled() {
+    return missing != null;
+  }
+
+  /** Remember that no worker could provide the blob. */
+  void add(Digest digest) {
+    if (missing != null) {
+      missing.put(digest, true);
+    }
+  }
+
+  /** Forget a recorded miss, because the blob has been written or located. */
+  void invalidate(Digest digest) {
+    if (missing != null) {
+      missing.invalidate(digest);
+    }
+  }
+
+  /**
+   * Answer whether the blob is known to be missing, given its current locations.
+   *
+   * @param locations the workers registered as holding the blob
+   */
+  boolean isMissing(Digest digest, Set<String> locations) {
+    if (missing == null || missing.getIfPresent(digest) == null) {
+      return false;
+    }
+    if (!locations.isEmpty()) {
+      missing.invalidate(digest);
+      return false;
+    }
+    avoidedQueriesCounter.inc();
+    return true;
+  }
+
+  /** The digests known to be missing, checked against their locations in the backplane. */
+  List<Digest> recentlyMissing(Iterable<Digest> digests, Backplane backplane) throws IOException {
+    if (missing == null) {
+      return ImmutableList.of();
+    }
+    Set<Digest> candidates = new LinkedHashSet<>();
+    for (Digest digest : digests) {
+      if (missing.getIfPresent(digest) != null) {
+        candidates.add(digest);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return ImmutableList.of();
+    }
+    Map<Digest, Set<String>> locations = backplane.getBlobDigestsWorkers(candidates);
+    List<Digest> knownMissing = new ArrayList<>();
+    for (Digest digest : candidates) {
+      if (isMissing(digest, locations.getOrDefault(digest, ImmutableSet.of()))) {
+        knownMissing.add(digest);
+      }
+    }
+    return knownMissing;
+  }
+}
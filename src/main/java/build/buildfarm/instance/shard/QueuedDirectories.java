@@ -0,0 +1,63 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import build.bazel.remote.execution.v2.Directory;
+import build.buildfarm.v1test.Tree;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Map;
+
+/**
+ * Directories recently included in queued operations.
+ *
+ * <p>A directory that was shipped in a recent queued operation is likely to be held by the workers
+ * already, so later queued operations only reference it from its parent, and workers resolve it
+ * from their own caches or the CAS. The root directory of a tree is always included.
+ *
+ * <p>This is only a probabilistic hint. The record is shared by all workers and does not know which
+ * worker will receive an operation, so a worker that never saw a directory fetches it, one round of
+ * fetches per level of the tree. Entries expire shortly after the directory was last shipped, so
+ * that directories are shipped again as workers churn or evict them.
+ */
+class QueuedDirectories {
+  private static final long EXPIRE_AFTER_SECONDS = 60;
+
+  private final Cache<String, Boolean> shipped;
+
+  QueuedDirectories(long maxEntries) {
+    shipped =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(EXPIRE_AFTER_SECONDS, SECONDS)
+            .build();
+  }
+
+  /** The tree without the directories that were included in a recent queued operation. */
+  Tree compact(Tree tree) {
+    String rootHash = tree.getRootDigest().getHash();
+    Tree.Builder compact = tree.toBuilder().clearDirectories();
+    for (Map.Entry<String, Directory> entry : tree.getDirectoriesMap().entrySet()) {
+      String hash = entry.getKey();
+      if (hash.equals(rootHash) || shipped.getIfPresent(hash) == null) {
+        compact.putDirectories(hash, entry.getValue());
+        shipped.put(hash, true);
+      }
+    }
+    return compact.build();
+  }
+}
@@ -87,9 +87,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -117,6 +118,9 @@ public class RedisShardBackplane implements Backplane {
                   .add(PreconditionFailure.getDescriptor())
                   .build());
 
+  // tolerates fields published by newer servers and workers during a rolling upgrade
+  static final JsonFormat.Parser jsonParser = JsonFormat.parser().ignoringUnknownFields();
+
   private final String source; // used in operation change publication
   private final boolean subscribeToBackplane;
   private final boolean runFailsafeOperation;
@@ -124,17 +128,20 @@ public class RedisShardBackplane implements Backplane {
   private final Supplier<UnifiedJedis> jedisClusterFactory;
 
   private @Nullable InterruptingRunnable onUnsubscribe = null;
-  private Thread subscriptionThread = null;
+  private final List<Thread> subscriptionThreads = new ArrayList<>();
   private Thread failsafeOperationThread = null;
-  private RedisShardSubscriber subscriber = null;
-  private RedisShardSubscription operationSubscription = null;
+  private RedisShardSubscriberGroup subscriber = null;
+  private final List<RedisShardSubscription> operationSubscriptions = new ArrayList<>();
   private ExecutorService subscriberService = null;
   private ExecutorService dequeueService = null;
   private ExecutorService pipelineExecutor = null;
   private @Nullable RedisClient client = null;
 
-  private Deadline storageWorkersDeadline = null;
-  private final Map<String, ShardWorker> storageWorkers = new ConcurrentHashMap<>();
+  private volatile Deadline storageWorkersDeadline = null;
+  private final WorkerSnapshot storageWorkers = new WorkerSnapshot();
+  // serializes the first scan, apart from the snapshot's lock taken by worker changes
+  private final Object storageWorkersInitialization = new Object();
+  private final AtomicBoolean storageWorkersRefreshing = new AtomicBoolean(false);
   private final Supplier<Set<String>> recentExecuteWorkers;
 
   private DistributedState state = new DistributedState();
@@ -190,7 +197,7 @@ public class RedisShardBackplane implements Backplane {
       String entry = balancedQueueEntry.getValue();
       ExecuteEntry.Builder executeEntry = ExecuteEntry.newBuilder();
       try {
-        JsonFormat.parser().merge(entry, executeEntry);
+        jsonParser.merge(entry, executeEntry);
         visit(executeEntry.build(), balancedQueueEntry);
       } catch (InvalidProtocolBufferException e) {
         log.log(Level.FINER, "invalid ExecuteEntry json: " + entry, e);
@@ -408,6 +415,35 @@ public class RedisShardBackplane implements Backplane {
     publishReset(message -> jedis.publish(channel, message), operation);
   }
 
+  void publishNotify(Consumer<String> onMessage, Operation operation) {
+    Instant effectiveAt = Instant.now();
+    Instant expiresAt = nextExpiresAt(effectiveAt);
+    publish(
+        onMessage,
+        effectiveAt,
+        OperationChange.newBuilder()
+            .setNotify(
+                OperationChange.Notify.newBuilder()
+                    .setExpiresAt(toTimestamp(expiresAt))
+                    .setName(operation.getName())
+                    .build()));
+  }
+
+  void publishNotify(UnifiedJedis jedis, Operation operation) {
+    String channel = executionChannel(operation.getName());
+    publishNotify(message -> jedis.publish(channel, message), operation);
+  }
+
+  // publish a change for an operation whose current state has just been stored, letting
+  // subscribers fetch it only if it is watched when compact changes are enabled
+  private void publishStored(UnifiedJedis jedis, Operation operation) {
+    if (configs.getBackplane().isCompactOperationChanges()) {
+      publishNotify(jedis, operation);
+    } else {
+      publishReset(jedis, operation);
+    }
+  }
+
   static Timestamp toTimestamp(Instant instant) {
     return Timestamp.newBuilder()
         .setSeconds(instant.getEpochSecond())
@@ -423,9 +459,12 @@ public class RedisShardBackplane implements Backplane {
             .setExpire(OperationChange.Expire.newBuilder().setForce(false).build()));
   }
 
-  @SuppressWarnings({"unchecked", "rawtypes"})
   public void updateWatchedIfDone(UnifiedJedis jedis) {
-    List<String> operationChannels = subscriber.watchedOperationChannels();
+    updateWatchedIfDone(jedis, subscriber.watchedOperationChannels());
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void updateWatchedIfDone(UnifiedJedis jedis, List<String> operationChannels) {
     if (operationChannels.isEmpty()) {
       return;
     }
@@ -436,18 +475,19 @@ public class RedisShardBackplane implements Backplane {
             .map(RedisShardBackplane::parseExecutionChannel)
             .collect(Collectors.toList());
 
-    for (Operation operation : state.executions.get(jedis, operationChannelNames)) {
+    List<Operation> operations = state.executions.get(jedis, operationChannelNames);
+    for (int i = 0; i < operations.size(); i++) {
+      Operation operation = operations.get(i);
       if (operation == null || operation.getDone()) {
         if (operation != null) {
           operation = onPublish.apply(operation);
         }
-        subscriber.onOperation(
-            executionChannel(operation.getName()), operation, nextExpiresAt(now));
+        subscriber.onOperation(operationChannels.get(i), operation, nextExpiresAt(now));
         log.log(
             Level.FINER,
             format(
                 "operation %s done due to %s",
-                operation.getName(), operation == null ? "null" : "completed"));
+                operationChannelNames.get(i), operation == null ? "null" : "completed"));
       }
     }
   }
@@ -456,36 +496,49 @@ public class RedisShardBackplane implements Backplane {
     return from.plusSeconds(10);
   }
 
-  private void startSubscriptionThread() {
-    ListMultimap<String, TimedWatchFuture> watchers =
-        Multimaps.synchronizedListMultimap(
-            MultimapBuilder.linkedHashKeys().arrayListValues().build());
+  private void startSubscriptionThreads() {
+    int shards = Math.max(1, configs.getBackplane().getSubscriptionShards());
     subscriberService = BuildfarmExecutors.getSubscriberPool();
-    subscriber =
-        new RedisShardSubscriber(
-            watchers,
-            storageWorkers,
-            WorkerType.STORAGE.getNumber(),
-            configs.getBackplane().getWorkerChannel(),
-            subscriberService);
-
-    operationSubscription =
-        new RedisShardSubscription(
-            subscriber,
-            /* onUnsubscribe= */ () -> {
-              subscriptionThread = null;
-              if (onUnsubscribe != null) {
-                onUnsubscribe.runInterruptibly();
-              }
-            },
-            /* onReset= */ this::updateWatchedIfDone,
-            /* subscriptions= */ subscriber::subscribedChannels,
-            client);
-
-    // use Executors...
-    subscriptionThread = new Thread(operationSubscription, "Operation Subscription");
-
-    subscriptionThread.start();
+    ImmutableList.Builder<RedisShardSubscriber> subscribers = ImmutableList.builder();
+    for (int i = 0; i < shards; i++) {
+      ListMultimap<String, TimedWatchFuture> watchers =
+          Multimaps.synchronizedListMultimap(
+              MultimapBuilder.linkedHashKeys().arrayListValues().build());
+      // only the first shard follows worker changes
+      boolean first = i == 0;
+      subscribers.add(
+          new RedisShardSubscriber(
+              watchers,
+              first ? storageWorkers : null,
+              WorkerType.STORAGE.getNumber(),
+              first ? configs.getBackplane().getWorkerChannel() : null,
+              this::fetchPublishedExecution,
+              subscriberService));
+    }
+    subscriber = new RedisShardSubscriberGroup(subscribers.build());
+
+    int index = 0;
+    for (RedisShardSubscriber shardSubscriber : subscriber.getSubscribers()) {
+      RedisShardSubscription operationSubscription =
+          new RedisShardSubscription(
+              shardSubscriber,
+              /* onUnsubscribe= */ () -> {
+                if (onUnsubscribe != null) {
+                  onUnsubscribe.runInterruptibly();
+                }
+              },
+              /* onReset= */ jedis ->
+                  updateWatchedIfDone(jedis, shardSubscriber.watchedOperationChannels()),
+              /* subscriptions= */ shardSubscriber::subscribedChannels,
+              client);
+      operationSubscriptions.add(operationSubscription);
+
+      // use Executors...
+      Thread subscriptionThread =
+          new Thread(operationSubscription, "Operation Subscription " + index++);
+      subscriptionThreads.add(subscriptionThread);
+      subscriptionThread.start();
+    }
   }
 
   @SuppressWarnings("ConstantConditions")
@@ -529,7 +582,7 @@ public class RedisShardBackplane implements Backplane {
     this.client = client;
     this.state = state;
     if (subscribeToBackplane) {
-      startSubscriptionThread();
+      startSubscriptionThreads();
     }
     dequeueService = BuildfarmExecutors.getDequeuePool();
     if (runFailsafeOperation) {
@@ -550,12 +603,17 @@ public class RedisShardBackplane implements Backplane {
       failsafeOperationThread.join();
       log.log(Level.FINER, "failsafeOperationThread has been stopped");
     }
-    if (operationSubscription != null) {
-      operationSubscription.stop();
-      if (subscriptionThread != null) {
-        subscriptionThread.join();
+    if (!operationSubscriptions.isEmpty()) {
+      for (RedisShardSubscription operationSubscription : operationSubscriptions) {
+        operationSubscription.stop();
       }
-      log.log(Level.FINER, "subscriptionThread has been stopped");
+      for (Thread subscriptionThread : subscriptionThreads) {
+        // onUnsubscribe may stop the backplane from a subscription thread
+        if (subscriptionThread != Thread.currentThread()) {
+          subscriptionThread.join();
+        }
+      }
+      log.log(Level.FINER, "subscriptionThreads have been stopped");
     }
     if (pipelineExecutor != null) {
       pipelineExecutor.shutdown();
@@ -615,6 +673,7 @@ public class RedisShardBackplane implements Backplane {
         WorkerChange.Add.newBuilder()
             .setEffectiveAt(effectiveAt)
             .setWorkerType(shardWorker.getWorkerType())
+            .setCapacity(shardWorker.getCapacity())
             .build();
     String workerChangeJson =
         JsonFormat.printer()
@@ -670,7 +729,7 @@ public class RedisShardBackplane implements Backplane {
             .setRemove(WorkerChange.Remove.newBuilder().setSource(source).setReason(reason).build())
             .build();
     String workerChangeJson = JsonFormat.printer().print(workerChange);
-    return storageWorkers.remove(name) != null
+    return storageWorkers.remove(name)
         && client.call(
             jedis -> removeWorkerAndPublish(jedis, name, workerChangeJson, /* storage= */ true));
   }
@@ -742,17 +801,24 @@ public class RedisShardBackplane implements Backplane {
   @Override
   public Set<String> getStorageWorkers() throws IOException {
     refreshStorageWorkersIfExpired();
-    return new HashSet<>(storageWorkers.keySet());
+    return new HashSet<>(storageWorkers.get().keySet());
+  }
+
+  @Override
+  public Map<String, Long> getStorageWorkerCapacities() throws IOException {
+    refreshStorageWorkersIfExpired();
+    return Maps.transformValues(storageWorkers.get(), ShardWorker::getCapacity);
   }
 
   @Override
   public Map<String, Long> getWorkersStartTimeInEpochSecs(Set<String> workerNames)
       throws IOException {
     refreshStorageWorkersIfExpired();
+    Map<String, ShardWorker> workers = storageWorkers.get();
     Map<String, Long> workerAndStartTime = new HashMap<>();
     workerNames.forEach(
         worker -> {
-          ShardWorker workerInfo = storageWorkers.get(worker);
+          ShardWorker workerInfo = workers.get(worker);
           if (workerInfo != null) {
             workerAndStartTime.put(
                 worker, MILLISECONDS.toSeconds(workerInfo.getFirstRegisteredAt()));
@@ -761,15 +827,44 @@ public class RedisShardBackplane implements Backplane {
     return workerAndStartTime;
   }
 
-  private synchronized void refreshStorageWorkersIfExpired() throws IOException {
-    if (storageWorkersDeadline == null || storageWorkersDeadline.isExpired()) {
-      synchronized (storageWorkers) {
-        Map<String, ShardWorker> newWorkers = client.call(this::fetchAndExpireStorageWorkers);
-        storageWorkers.clear();
-        storageWorkers.putAll(newWorkers);
+  // Only the first request blocks on a registration scan. Once a snapshot exists, an expired
+  // snapshot continues to be served while a single scan refreshes it on the pipeline executor,
+  // and worker changes from the subscription keep it current in between.
+  private void refreshStorageWorkersIfExpired() throws IOException {
+    Deadline deadline = storageWorkersDeadline;
+    if (deadline == null) {
+      synchronized (storageWorkersInitialization) {
+        if (storageWorkersDeadline == null) {
+          refreshStorageWorkers();
+        }
       }
-      storageWorkersDeadline = Deadline.after(workerSetMaxAge, SECONDS);
+    } else if (deadline.isExpired() && storageWorkersRefreshing.compareAndSet(false, true)) {
+      try {
+        pipelineExecutor.execute(
+            () -> {
+              try {
+                refreshStorageWorkers();
+              } catch (IOException e) {
+                log.log(Level.WARNING, "error refreshing storage workers", e);
+              } finally {
+                storageWorkersRefreshing.set(false);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        storageWorkersRefreshing.set(false);
+      }
+    }
+  }
+
+  private void refreshStorageWorkers() throws IOException {
+    // changes received during the fetch are replayed onto its result
+    storageWorkers.beginRefresh();
+    try {
+      storageWorkers.replace(client.call(this::fetchAndExpireStorageWorkers));
+    } finally {
+      storageWorkers.endRefresh();
     }
+    storageWorkersDeadline = Deadline.after(workerSetMaxAge, SECONDS);
   }
 
   private CasWorkerMap createCasWorkerMap(UnifiedJedis jedis) {
@@ -862,7 +957,7 @@ public class RedisShardBackplane implements Backplane {
           invalidWorkers.add(ShardWorker.newBuilder().setEndpoint(name).build());
         } else {
           ShardWorker.Builder builder = ShardWorker.newBuilder();
-          JsonFormat.parser().merge(json, builder);
+          jsonParser.merge(json, builder);
           ShardWorker worker = builder.build();
           if (worker.getExpireAt() <= now) {
             invalidWorkers.add(worker);
@@ -881,7 +976,7 @@ public class RedisShardBackplane implements Backplane {
   private static ActionResult parseActionResult(String json) {
     try {
       ActionResult.Builder builder = ActionResult.newBuilder();
-      JsonFormat.parser().merge(json, builder);
+      jsonParser.merge(json, builder);
       return builder.build();
     } catch (InvalidProtocolBufferException e) {
       return null;
@@ -903,6 +998,35 @@ public class RedisShardBackplane implements Backplane {
     return actionResult;
   }
 
+  @SuppressWarnings("ConstantConditions")
+  @Override
+  public Map<ActionKey, ActionResult> getActionResults(Iterable<ActionKey> actionKeys)
+      throws IOException {
+    Map<String, ActionKey> keyNames = new HashMap<>();
+    actionKeys.forEach(key -> keyNames.put(key.toString(), key));
+    Iterable<Map.Entry<String, String>> jsons =
+        client.call(jedis -> state.actionCache.get(jedis, keyNames.keySet()));
+
+    Map<ActionKey, ActionResult> actionResults = new HashMap<>();
+    List<ActionKey> invalidKeys = new ArrayList<>();
+    for (Map.Entry<String, String> json : jsons) {
+      if (json.getValue() == null) {
+        continue;
+      }
+      ActionKey actionKey = keyNames.get(json.getKey());
+      ActionResult actionResult = parseActionResult(json.getValue());
+      if (actionResult == null) {
+        invalidKeys.add(actionKey);
+      } else {
+        actionResults.put(actionKey, actionResult);
+      }
+    }
+    if (!invalidKeys.isEmpty()) {
+      removeActionResults(invalidKeys);
+    }
+    return actionResults;
+  }
+
   // we do this by action hash only, so that we can use RequestMetadata to filter
   @SuppressWarnings("ConstantConditions")
   @Override
@@ -989,7 +1113,7 @@ public class RedisShardBackplane implements Backplane {
   public static WorkerChange parseWorkerChange(String workerChangeJson)
       throws InvalidProtocolBufferException {
     WorkerChange.Builder workerChange = WorkerChange.newBuilder();
-    JsonFormat.parser().merge(workerChangeJson, workerChange);
+    jsonParser.merge(workerChangeJson, workerChange);
     return workerChange.build();
   }
 
@@ -1000,6 +1124,11 @@ public class RedisShardBackplane implements Backplane {
     return operationChange.build();
   }
 
+  private @Nullable Operation fetchPublishedExecution(String executionName) throws IOException {
+    Operation operation = getExecution(executionName);
+    return operation == null ? null : onPublish.apply(operation);
+  }
+
   private Operation getExecution(UnifiedJedis jedis, String executionName) {
     return state.executions.get(jedis, executionName);
   }
@@ -1037,7 +1166,7 @@ public class RedisShardBackplane implements Backplane {
         jedis -> {
           state.executions.insert(jedis, name, json);
           if (publishOperation != null) {
-            publishReset(jedis, publishOperation);
+            publishStored(jedis, publishOperation);
           }
           if (complete) {
             completeOperation(jedis, name);
@@ -1075,7 +1204,7 @@ public class RedisShardBackplane implements Backplane {
               queueEntry.getPlatform().getPropertiesList(),
               queueEntryJson,
               priority);
-          publishReset(jedis, publishOperation);
+          publishStored(jedis, publishOperation);
         });
   }
 
@@ -1119,7 +1248,7 @@ public class RedisShardBackplane implements Backplane {
     for (Map.Entry<String, String> entry : scanResult.getResult()) {
       try {
         DispatchedOperation.Builder dispatchedOperationBuilder = DispatchedOperation.newBuilder();
-        JsonFormat.parser().merge(entry.getValue(), dispatchedOperationBuilder);
+        jsonParser.merge(entry.getValue(), dispatchedOperationBuilder);
         builder.add(dispatchedOperationBuilder.build());
       } catch (InvalidProtocolBufferException e) {
         log.log(Level.SEVERE, format("invalid dispatched operation %s", entry.getKey()), e);
@@ -1136,7 +1265,7 @@ public class RedisShardBackplane implements Backplane {
 
     ExecuteEntry.Builder executeEntryBuilder = ExecuteEntry.newBuilder();
     try {
-      JsonFormat.parser().merge(balancedQueueEntry.getValue(), executeEntryBuilder);
+      jsonParser.merge(balancedQueueEntry.getValue(), executeEntryBuilder);
       ExecuteEntry executeEntry = executeEntryBuilder.build();
       String executionName = executeEntry.getOperationName();
 
@@ -1300,7 +1429,7 @@ public class RedisShardBackplane implements Backplane {
               state.toolInvocations.add(jedis, toolInvocationId, executionName);
             }
             state.prequeue.offer(jedis, executeEntryJson, priority);
-            publishReset(jedis, publishExecution);
+            publishStored(jedis, publishExecution);
             return true;
           }
           // execution should be merged, indicates as much
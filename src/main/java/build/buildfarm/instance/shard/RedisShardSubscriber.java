@@ -18,6 +18,7 @@ import static build.buildfarm.instance.shard.RedisShardBackplane.parseOperationC
 import static build.buildfarm.instance.shard.RedisShardBackplane.parseWorkerChange;
 import static java.lang.String.format;
 
+import build.buildfarm.common.function.IOFunction;
 import build.buildfarm.instance.server.WatchFuture;
 import build.buildfarm.v1test.OperationChange;
 import build.buildfarm.v1test.ShardWorker;
@@ -30,9 +31,13 @@ import com.google.longrunning.Operation;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Timestamp;
 import com.google.protobuf.util.Timestamps;
+import io.prometheus.client.Histogram;
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +52,12 @@ import redis.clients.jedis.JedisPubSub;
 
 @Log
 class RedisShardSubscriber extends JedisPubSub {
+  private static final Histogram operationChangeLag =
+      Histogram.build()
+          .name("operation_change_lag_ms")
+          .help("Delay between publication and receipt of operation changes in ms.")
+          .register();
+
   abstract static class TimedWatchFuture extends WatchFuture {
     private final TimedWatcher watcher;
 
@@ -65,22 +76,28 @@ class RedisShardSubscriber extends JedisPubSub {
   }
 
   private final ListMultimap<String, TimedWatchFuture> watchers;
-  private final Map<String, ShardWorker> workers;
+  private final @Nullable WorkerSnapshot workers;
   private final int workerChangeTypeMask;
-  private final String workerChannel;
+  private final @Nullable String workerChannel;
+  private final IOFunction<String, Operation> fetchOperation;
   private final Executor executor;
+  // latest notification for each channel with a fetch scheduled or in progress
+  private final Map<String, OperationChange.Notify> pendingNotifications =
+      new ConcurrentHashMap<>();
   private SettableFuture<Void> subscribeFuture = null;
 
   RedisShardSubscriber(
       ListMultimap<String, TimedWatchFuture> watchers,
-      Map<String, ShardWorker> workers,
+      @Nullable WorkerSnapshot workers,
       int workerChangeTypeMask,
-      String workerChannel,
+      @Nullable String workerChannel,
+      IOFunction<String, Operation> fetchOperation,
       Executor executor) {
     this.watchers = watchers;
     this.workers = workers;
     this.workerChangeTypeMask = workerChangeTypeMask;
     this.workerChannel = workerChannel;
+    this.fetchOperation = fetchOperation;
     this.executor = executor;
   }
 
@@ -95,7 +112,10 @@ class RedisShardSubscriber extends JedisPubSub {
     synchronized (watchers) {
       channels.addAll(watchers.keySet());
     }
-    return channels.add(workerChannel).build();
+    if (workerChannel != null) {
+      channels.add(workerChannel);
+    }
+    return channels.build();
   }
 
   public List<String> expiredWatchedOperationChannels(Instant now) {
@@ -241,22 +261,18 @@ class RedisShardSubscriber extends JedisPubSub {
 
   void addWorker(WorkerChange workerChange) {
     if ((workerChange.getAdd().getWorkerType() & workerChangeTypeMask) != 0) {
-      synchronized (workers) {
-        workers.put(
-            workerChange.getName(),
-            ShardWorker.newBuilder()
-                .setEndpoint(workerChange.getName())
-                .setWorkerType(workerChange.getAdd().getWorkerType())
-                .setFirstRegisteredAt(Timestamps.toMillis(workerChange.getAdd().getEffectiveAt()))
-                .build());
-      }
+      workers.put(
+          ShardWorker.newBuilder()
+              .setEndpoint(workerChange.getName())
+              .setWorkerType(workerChange.getAdd().getWorkerType())
+              .setFirstRegisteredAt(Timestamps.toMillis(workerChange.getAdd().getEffectiveAt()))
+              .setCapacity(workerChange.getAdd().getCapacity())
+              .build());
     }
   }
 
   boolean removeWorker(WorkerChange workerChange) {
-    synchronized (workers) {
-      return workers.remove(workerChange.getName()) != null;
-    }
+    return workers.remove(workerChange.getName());
   }
 
   void onOperationMessage(String channel, String message) {
@@ -276,8 +292,49 @@ class RedisShardSubscriber extends JedisPubSub {
     onOperation(channel, reset.getOperation(), toInstant(reset.getExpiresAt()));
   }
 
+  void notifyOperation(String channel, OperationChange.Notify notify) {
+    Instant expiresAt = toInstant(notify.getExpiresAt());
+    synchronized (watchers) {
+      if (!watchers.containsKey(channel)) {
+        return;
+      }
+    }
+    resetWatchers(channel, expiresAt);
+    // a burst of notifications awaiting a fetch is served by a single fetch
+    if (pendingNotifications.put(channel, notify) == null) {
+      executor.execute(() -> fetchNotifiedOperation(channel));
+    }
+  }
+
+  private void fetchNotifiedOperation(String channel) {
+    OperationChange.Notify notify = pendingNotifications.get(channel);
+    while (notify != null) {
+      try {
+        Operation operation = fetchOperation.apply(notify.getName());
+        onOperation(channel, operation, toInstant(notify.getExpiresAt()));
+      } catch (IOException e) {
+        log.log(
+            Level.WARNING,
+            format("error fetching operation %s for %s", notify.getName(), channel),
+            e);
+      }
+      // a notification that arrived during the fetch may describe a later change, fetch again
+      OperationChange.Notify fetched = notify;
+      notify =
+          pendingNotifications.computeIfPresent(
+              channel, (key, pending) -> pending == fetched ? null : pending);
+    }
+  }
+
   void onOperationChange(String channel, OperationChange operationChange) {
-    // FIXME indicate lag/clock skew for OOB timestamps
+    if (operationChange.hasEffectiveAt()) {
+      // includes clock skew between publisher and subscriber
+      operationChangeLag.observe(
+          Math.max(
+              0,
+              Duration.between(toInstant(operationChange.getEffectiveAt()), Instant.now())
+                  .toMillis()));
+    }
     switch (operationChange.getTypeCase()) {
       case TYPE_NOT_SET:
         // FIXME present nice timestamp
@@ -296,6 +353,9 @@ class RedisShardSubscriber extends JedisPubSub {
             toInstant(operationChange.getEffectiveAt()),
             operationChange.getExpire().getForce());
         break;
+      case NOTIFY:
+        notifyOperation(channel, operationChange.getNotify());
+        break;
     }
   }
 
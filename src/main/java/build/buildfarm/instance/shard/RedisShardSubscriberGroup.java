@@ -0,0 +1,80 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.longrunning.Operation;
+import java.time.Instant;
+import java.util.List;
+import javax.annotation.Nullable;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+/**
+ * Operation channel subscribers sharded by channel slot.
+ *
+ * <p>Each subscriber holds its own connection and listener thread, so a channel is always routed
+ * to the same subscriber and messages for different shards are delivered in parallel.
+ */
+class RedisShardSubscriberGroup {
+  private final List<RedisShardSubscriber> subscribers;
+
+  RedisShardSubscriberGroup(List<RedisShardSubscriber> subscribers) {
+    checkArgument(!subscribers.isEmpty(), "at least one subscriber is required");
+    this.subscribers = ImmutableList.copyOf(subscribers);
+  }
+
+  static int shardIndex(String channel, int shards) {
+    return JedisClusterCRC16.getSlot(channel) % shards;
+  }
+
+  List<RedisShardSubscriber> getSubscribers() {
+    return subscribers;
+  }
+
+  RedisShardSubscriber get(String channel) {
+    return subscribers.get(shardIndex(channel, subscribers.size()));
+  }
+
+  public List<String> watchedOperationChannels() {
+    ImmutableList.Builder<String> channels = ImmutableList.builder();
+    for (RedisShardSubscriber subscriber : subscribers) {
+      channels.addAll(subscriber.watchedOperationChannels());
+    }
+    return channels.build();
+  }
+
+  public List<String> expiredWatchedOperationChannels(Instant now) {
+    ImmutableList.Builder<String> channels = ImmutableList.builder();
+    for (RedisShardSubscriber subscriber : subscribers) {
+      channels.addAll(subscriber.expiredWatchedOperationChannels(now));
+    }
+    return channels.build();
+  }
+
+  public ListenableFuture<Void> watch(String channel, TimedWatcher watcher) {
+    return get(channel).watch(channel, watcher);
+  }
+
+  public void resetWatchers(String channel, Instant expiresAt) {
+    get(channel).resetWatchers(channel, expiresAt);
+  }
+
+  public void onOperation(String channel, @Nullable Operation operation, Instant expiresAt) {
+    get(channel).onOperation(channel, operation, expiresAt);
+  }
+}
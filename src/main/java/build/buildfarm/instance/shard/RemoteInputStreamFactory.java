@@ -26,8 +26,10 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import build.bazel.remote.execution.v2.Compressor;
 import build.bazel.remote.execution.v2.RequestMetadata;
 import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.BuildfarmExecutors;
 import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.InputStreamFactory;
+import build.buildfarm.common.config.BuildfarmConfigs;
 import build.buildfarm.instance.Instance;
 import build.buildfarm.instance.shard.ServerInstance.WorkersCallback;
 import build.buildfarm.instance.stub.StubInstance;
@@ -36,28 +38,47 @@ import com.google.common.base.Throwables;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.protobuf.ByteString;
+import io.grpc.Context;
 import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.StatusRuntimeException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import lombok.extern.java.Log;
 
 @Log
 public class RemoteInputStreamFactory implements InputStreamFactory {
+  private static final ExecutorService replicationService =
+      BuildfarmExecutors.getReplicationServicePool();
+  private static final ListeningExecutorService rangedFetchService =
+      BuildfarmExecutors.getRangedFetchPool();
+
   public interface UnavailableConsumer {
     void accept(String worker, Throwable t, String context);
   }
@@ -67,6 +88,13 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
   private final Random rand;
   private final LoadingCache<String, StubInstance> workerStubs;
   private final UnavailableConsumer onUnavailable;
+  private final HotBlobReplicator hotBlobReplicator;
+  private final InternalCompression internalCompression;
+  private final long rangedFetchMinSizeBytes;
+  private final long rangedFetchRangeSizeBytes;
+  private final int rangedFetchParallelism;
+  // bytes of ranges fetched ahead of their readers, which ranged fetches are bounded by
+  private final Semaphore rangedFetchBytes;
 
   RemoteInputStreamFactory(
       Backplane backplane,
@@ -88,6 +116,25 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
     this.rand = rand;
     this.workerStubs = workerStubs;
     this.onUnavailable = onUnavailable;
+    BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
+    hotBlobReplicator =
+        new HotBlobReplicator(
+            backplane,
+            this::workerStub,
+            configs.getHotBlobReplicas(),
+            configs.getHotBlobReadThreshold(),
+            replicationService,
+            rand);
+    internalCompression = new InternalCompression(configs.getInternalZstdMinSizeBytes());
+    rangedFetchMinSizeBytes = configs.getRangedFetchMinSizeBytes();
+    rangedFetchRangeSizeBytes = configs.getRangedFetchRangeSizeBytes();
+    rangedFetchParallelism = configs.getRangedFetchParallelism();
+    rangedFetchBytes =
+        new Semaphore((int) Math.min(configs.getRangedFetchMaxBytes(), Integer.MAX_VALUE));
+  }
+
+  HotBlobReplicator getHotBlobReplicator() {
+    return hotBlobReplicator;
   }
 
   private Instance workerStub(String worker) {
@@ -116,18 +163,30 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
       RequestMetadata requestMetadata)
       throws IOException, InterruptedException {
     String worker = workers.removeFirst();
+    hotBlobReplicator.readStarted(worker);
+    boolean started = false;
     try {
       Instance instance = workerStub(worker);
 
+      Compressor.Value fetchCompressor =
+          internalCompression.fetchCompressor(compressor, blobDigest, offset, /* count= */ 0);
       InputStream input =
           instance.newBlobInput(
-              compressor, blobDigest, offset, deadlineAfter, deadlineAfterUnits, requestMetadata);
+              fetchCompressor,
+              blobDigest,
+              offset,
+              deadlineAfter,
+              deadlineAfterUnits,
+              requestMetadata);
       // ensure that if the blob cannot be fetched, that we throw here
       input.available();
       if (Thread.interrupted()) {
+        input.close();
         throw new InterruptedException();
       }
-      return input;
+      started = true;
+      return new ReadTrackingInputStream(
+          internalCompression.newInput(compressor, fetchCompressor, input), worker);
     } catch (StatusRuntimeException e) {
       Status st = Status.fromThrowable(e);
       if (st.getCode() == Code.UNAVAILABLE || st.getCode() == Code.UNIMPLEMENTED) {
@@ -143,10 +202,330 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
       } else {
         throw e;
       }
+    } finally {
+      if (!started) {
+        hotBlobReplicator.readFinished(worker);
+      }
     }
     throw new NoSuchFileException(DigestUtil.toString(blobDigest));
   }
 
+  // releases the worker's read load when the stream is closed
+  private class ReadTrackingInputStream extends FilterInputStream {
+    private final String worker;
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    ReadTrackingInputStream(InputStream in, String worker) {
+      super(in);
+      this.worker = worker;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (finished.compareAndSet(false, true)) {
+          hotBlobReplicator.readFinished(worker);
+        }
+      }
+    }
+  }
+
+  private boolean isRanged(Compressor.Value compressor, Digest blobDigest, long offset) {
+    return rangedFetchMinSizeBytes > 0
+        && rangedFetchRangeSizeBytes > 0
+        && rangedFetchParallelism > 1
+        && compressor == Compressor.Value.IDENTITY
+        && blobDigest.getSize() - offset >= rangedFetchMinSizeBytes;
+  }
+
+  private record Range(long offset, int length, ListenableFuture<ByteString> content) {}
+
+  /**
+   * A blob read as consecutive ranges, fetched concurrently from its holders. Up to the fetch
+   * parallelism of ranges are held ahead of the reader, each started on the next holder in turn
+   * and retried on the others, so that one slow holder delays a single range rather than the whole
+   * blob. Ranges are only started while the bytes held by all ranged reads are within their limit.
+   * The read continues as a single stream, as an unranged read would, when no range can be started
+   * or a range cannot be fetched from any holder. The reader of the stream verifies its digest, as
+   * with any other fetch.
+   */
+  private class RangedInputStream extends InputStream {
+    private final Digest blobDigest;
+    // holders that have not failed to provide a range
+    private final List<String> holders;
+    private final long deadlineAfter;
+    private final TimeUnit deadlineAfterUnits;
+    private final RequestMetadata requestMetadata;
+    private final Deque<Range> ranges = new ArrayDeque<>();
+    private long nextOffset;
+    private int nextHolder = 0;
+    private @Nullable Range current = null;
+    private InputStream range = InputStream.nullInputStream();
+    private boolean streaming = false;
+    private boolean closed = false;
+
+    RangedInputStream(
+        Digest blobDigest,
+        List<String> holders,
+        long offset,
+        long deadlineAfter,
+        TimeUnit deadlineAfterUnits,
+        RequestMetadata requestMetadata) {
+      this.blobDigest = blobDigest;
+      this.holders = new CopyOnWriteArrayList<>(holders);
+      this.deadlineAfter = deadlineAfter;
+      this.deadlineAfterUnits = deadlineAfterUnits;
+      this.requestMetadata = requestMetadata;
+      nextOffset = offset;
+      fetchRanges();
+    }
+
+    private synchronized void fetchRanges() {
+      while (!closed
+          && !streaming
+          && ranges.size() < rangedFetchParallelism
+          && nextOffset < blobDigest.getSize()
+          && !holders.isEmpty()) {
+        long offset = nextOffset;
+        int length = (int) Math.min(rangedFetchRangeSizeBytes, blobDigest.getSize() - offset);
+        if (!rangedFetchBytes.tryAcquire(length)) {
+          break;
+        }
+        List<String> rangeHolders = new ArrayList<>(holders);
+        Collections.rotate(rangeHolders, -(nextHolder++ % rangeHolders.size()));
+        ranges.add(
+            new Range(
+                offset,
+                length,
+                rangedFetchService.submit(() -> fetchRange(rangeHolders, offset, length))));
+        nextOffset += length;
+      }
+    }
+
+    /** Fetch a range of the blob from the first of the holders that can provide it. */
+    private ByteString fetchRange(List<String> rangeHolders, long offset, long length)
+        throws IOException {
+      IOException failure = null;
+      for (String worker : rangeHolders) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new ClosedByInterruptException();
+        }
+        hotBlobReplicator.readStarted(worker);
+        Context.CancellableContext rangeContext = Context.current().withCancellation();
+        Context previousContext = rangeContext.attach();
+        ByteString content;
+        try (InputStream input =
+            workerStubs
+                .get(worker)
+                .newBlobInput(
+                    Compressor.Value.IDENTITY, blobDigest, offset, length, requestMetadata)) {
+          content = ByteString.readFrom(ByteStreams.limit(input, length + 1));
+          if (content.size() > length) {
+            // stop the holder, and take what it has already sent so that the response completes
+            rangeContext.cancel(null);
+            try {
+              ByteStreams.exhaust(input);
+            } catch (IOException e) {
+              // the cancellation is expected
+            }
+          }
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("stub instance creation must not fail", e);
+        } catch (StatusRuntimeException e) {
+          onRangeFailure(worker, e);
+          failure = new IOException(e);
+          continue;
+        } catch (IOException e) {
+          onRangeFailure(worker, e);
+          failure = e;
+          continue;
+        } finally {
+          rangeContext.detach(previousContext);
+          rangeContext.cancel(null);
+          hotBlobReplicator.readFinished(worker);
+        }
+        if (content.size() > length) {
+          // a holder that ignores the limit sends the remainder of the blob for every range
+          throw new IOException(
+              String.format(
+                  "%s: range at %d of %s exceeded its limit of %d bytes",
+                  worker, offset, DigestUtil.toString(blobDigest), length));
+        }
+        if (content.size() == length) {
+          return content;
+        }
+        failure =
+            new IOException(
+                String.format(
+                    "%s: range at %d of %s received %d of %d bytes",
+                    worker, offset, DigestUtil.toString(blobDigest), content.size(), length));
+      }
+      if (failure == null) {
+        failure = new NoSuchFileException(DigestUtil.toString(blobDigest));
+      }
+      throw failure;
+    }
+
+    // a holder that is unavailable or does not have the blob is not used for further ranges
+    private void onRangeFailure(String worker, Throwable t) {
+      Status st = Status.fromThrowable(t);
+      if (t instanceof NoSuchFileException || st.getCode() == Code.NOT_FOUND) {
+        holders.remove(worker);
+        try {
+          backplane.removeBlobLocation(blobDigest, worker);
+        } catch (IOException e) {
+          log.log(
+              Level.WARNING,
+              String.format(
+                  "error removing location %s of %s", worker, DigestUtil.toString(blobDigest)),
+              e);
+        }
+      } else if (st.getCode() == Code.UNAVAILABLE || st.getCode() == Code.UNIMPLEMENTED) {
+        holders.remove(worker);
+        onUnavailable.accept(worker, t, "getBlob(" + DigestUtil.toString(blobDigest) + ")");
+      }
+    }
+
+    private boolean nextRange() throws IOException {
+      Range next;
+      synchronized (this) {
+        releaseRange();
+        if (closed) {
+          throw new IOException("stream is closed");
+        }
+        if (streaming) {
+          return false;
+        }
+        if (ranges.isEmpty()) {
+          // the bytes of the previous range may now be held by another
+          fetchRanges();
+        }
+        next = ranges.poll();
+        current = next;
+      }
+      if (next == null) {
+        if (nextOffset >= blobDigest.getSize()) {
+          return false;
+        }
+        // the bytes held by ranged reads are at their limit, or no holder remains
+        stream(nextOffset);
+        return true;
+      }
+      ByteString content;
+      try {
+        content = next.content().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ClosedByInterruptException();
+      } catch (CancellationException e) {
+        throw new IOException("stream is closed", e);
+      } catch (ExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        log.log(
+            Level.FINER,
+            String.format(
+                "streaming %s from %d after a range failure",
+                DigestUtil.toString(blobDigest), next.offset()),
+            e.getCause());
+        stream(next.offset());
+        return true;
+      }
+      synchronized (this) {
+        if (closed) {
+          throw new IOException("stream is closed");
+        }
+        range = content.newInput();
+      }
+      fetchRanges();
+      return true;
+    }
+
+    // continue the read from the offset as a single stream, which corrects the blob's locations
+    private void stream(long offset) throws IOException {
+      InputStream input =
+          newInput(
+              Compressor.Value.IDENTITY,
+              blobDigest,
+              offset,
+              deadlineAfter,
+              deadlineAfterUnits,
+              requestMetadata,
+              /* continued= */ true);
+      synchronized (this) {
+        releaseRange();
+        cancelRanges();
+        if (closed) {
+          input.close();
+          throw new IOException("stream is closed");
+        }
+        streaming = true;
+        range = input;
+      }
+    }
+
+    @GuardedBy("this")
+    private void releaseRange() {
+      if (current != null) {
+        current.content().cancel(true);
+        rangedFetchBytes.release(current.length());
+        current = null;
+      }
+    }
+
+    @GuardedBy("this")
+    private void cancelRanges() {
+      for (Range pending : ranges) {
+        pending.content().cancel(true);
+        rangedFetchBytes.release(pending.length());
+      }
+      ranges.clear();
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b;
+      while ((b = range.read()) < 0) {
+        if (!nextRange()) {
+          return -1;
+        }
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      int n;
+      while ((n = range.read(b, off, len)) < 0) {
+        if (!nextRange()) {
+          return -1;
+        }
+      }
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return range.available();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      closed = true;
+      releaseRange();
+      cancelRanges();
+      try {
+        range.close();
+      } finally {
+        range = InputStream.nullInputStream();
+      }
+    }
+  }
+
   @Override
   public InputStream newInput(Compressor.Value compressor, Digest blobDigest, long offset)
       throws IOException {
@@ -162,6 +541,29 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
       TimeUnit deadlineAfterUnits,
       RequestMetadata requestMetadata)
       throws IOException {
+    return newInput(
+        compressor,
+        blobDigest,
+        offset,
+        deadlineAfter,
+        deadlineAfterUnits,
+        requestMetadata,
+        /* continued= */ false);
+  }
+
+  /**
+   * @param continued whether the read continues a ranged read, which is neither counted as another
+   *     read of the blob nor ranged again
+   */
+  private InputStream newInput(
+      Compressor.Value compressor,
+      Digest blobDigest,
+      long offset,
+      long deadlineAfter,
+      TimeUnit deadlineAfterUnits,
+      RequestMetadata requestMetadata,
+      boolean continued)
+      throws IOException {
     Set<String> remoteWorkers;
     Set<String> locationSet;
     try {
@@ -180,6 +582,14 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
       backplane.removeBlobLocation(blobDigest, publicName);
     }
     List<String> workersList = new ArrayList<>(locationSet);
+    if (!continued) {
+      hotBlobReplicator.onRead(blobDigest, locationSet, remoteWorkers);
+      if (!workersList.isEmpty() && isRanged(compressor, blobDigest, offset)) {
+        Collections.shuffle(workersList, rand);
+        return new RangedInputStream(
+            blobDigest, workersList, offset, deadlineAfter, deadlineAfterUnits, requestMetadata);
+      }
+    }
     boolean emptyWorkerList = workersList.isEmpty();
     final ListenableFuture<List<String>> populatedWorkerListFuture;
     if (emptyWorkerList) {
@@ -204,7 +614,7 @@ public class RemoteInputStreamFactory implements InputStreamFactory {
     SettableFuture<InputStream> inputStreamFuture = SettableFuture.create();
     addCallback(
         populatedWorkerListFuture,
-        new WorkersCallback(rand) {
+        new WorkersCallback(rand, hotBlobReplicator::load) {
           boolean triedCheck = emptyWorkerList;
 
           @Override
@@ -0,0 +1,61 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted rendezvous (highest random weight) placement of keys over a set of workers.
+ *
+ * <p>Every server computes the same owners for a key from the same worker set, and a membership
+ * change only moves the keys owned by the workers that joined or left. Workers are weighted by
+ * their advertised capacity. If any worker does not advertise a capacity, all workers are weighted
+ * equally.
+ */
+final class RendezvousHash {
+  private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+  private RendezvousHash() {}
+
+  /** The highest scoring workers for the key, in order of preference. */
+  static List<String> owners(String key, Map<String, Long> capacities, int count) {
+    boolean weighted = capacities.values().stream().allMatch(capacity -> capacity > 0);
+    Map<String, Double> scores = new HashMap<>();
+    for (Map.Entry<String, Long> entry : capacities.entrySet()) {
+      String worker = entry.getKey();
+      double weight = weighted ? entry.getValue() : 1;
+      scores.put(worker, weight / -Math.log(uniform(worker, key)));
+    }
+    List<String> workers = new ArrayList<>(scores.keySet());
+    workers.sort(Comparator.comparing(scores::get, Comparator.reverseOrder()));
+    return ImmutableList.copyOf(workers.subList(0, Math.min(count, workers.size())));
+  }
+
+  // a stable value in (0, 1) for the pair
+  private static double uniform(String worker, String key) {
+    long hash =
+        hashFunction.newHasher().putString(worker, UTF_8).putString(key, UTF_8).hash().asLong();
+    return ((hash >>> 11) + 0.5) / (1L << 53);
+  }
+}
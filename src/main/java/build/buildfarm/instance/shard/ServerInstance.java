@@ -48,6 +48,8 @@ import static net.javacrumbs.futureconverter.java8guava.FutureConverter.toListen
 import build.bazel.remote.execution.v2.Action;
 import build.bazel.remote.execution.v2.ActionResult;
 import build.bazel.remote.execution.v2.BatchReadBlobsResponse.Response;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
 import build.bazel.remote.execution.v2.CacheCapabilities;
 import build.bazel.remote.execution.v2.Command;
 import build.bazel.remote.execution.v2.Compressor;
@@ -78,9 +80,11 @@ import build.buildfarm.common.ExecutionProperties;
 import build.buildfarm.common.IterableScannable;
 import build.buildfarm.common.Poller;
 import build.buildfarm.common.Scannable;
+import build.buildfarm.common.Size;
 import build.buildfarm.common.TokenizableIterator;
 import build.buildfarm.common.TreeIterator;
 import build.buildfarm.common.TreeIterator.DirectoryEntry;
+import build.buildfarm.common.Trees;
 import build.buildfarm.common.Watcher;
 import build.buildfarm.common.Write;
 import build.buildfarm.common.config.BuildfarmConfigs;
@@ -110,7 +114,10 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -121,6 +128,7 @@ import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.longrunning.Operation;
 import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Duration;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Parser;
@@ -149,10 +157,13 @@ import java.util.AbstractMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -168,9 +179,11 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -189,6 +202,18 @@ public class ServerInstance extends NodeInstance {
 
   private static final int TRANSFORM_TOKENS = 256;
 
+  // leaves headroom under the default 4MB inbound message limit for worker responses
+  private static final long MAX_BATCH_READ_SIZE_BYTES = Size.mbToBytes(3);
+
+  // matches the batch limit enforced by worker stubs, counted here as encoded in the request
+  private static final long MAX_BATCH_UPDATE_SIZE_BYTES = Size.mbToBytes(3);
+
+  // subdirectories fetched ahead of each level of a tree traversal
+  private static final int TREE_PREFETCH_WINDOW = 16;
+
+  // owners tried for a read under rendezvous placement, tolerating one recent membership change
+  private static final int PLACEMENT_READ_OWNERS = 2;
+
   // Prometheus metrics
   private static final Counter executionSuccess =
       Counter.build().name("execution_success").help("Execution success.").register();
@@ -203,6 +228,11 @@ public class ServerInstance extends NodeInstance {
           .register();
   private static final Counter casMissCounter =
       Counter.build().name("cas_miss").help("Number of CAS misses from worker-worker.").register();
+  private static final Counter placementMissCounter =
+      Counter.build()
+          .name("cas_placement_miss")
+          .help("Number of rendezvous placement owners that did not contain a read blob.")
+          .register();
   private static final Counter requeueFailureCounter =
       Counter.build()
           .name("requeue_failure")
@@ -253,6 +283,10 @@ public class ServerInstance extends NodeInstance {
   private final Backplane backplane;
   private final ActionCache actionCache;
   private final RemoteInputStreamFactory remoteInputStreamFactory;
+  private final HotBlobReplicator hotBlobReplicator;
+  private final QueuedDirectories queuedDirectories;
+  private final MissingBlobs missingBlobs;
+  private final InternalCompression internalCompression;
   private final com.google.common.cache.LoadingCache<String, StubInstance> workerStubs;
   private final Thread dispatchedMonitor;
   private final Duration maxActionTimeout;
@@ -269,6 +303,9 @@ public class ServerInstance extends NodeInstance {
   private final ListeningExecutorService operationTransformService =
       BuildfarmExecutors.getTransformServicePool();
   private final ListeningExecutorService actionCacheFetchService;
+  // bounds the number of concurrent worker BatchUpdateBlobs calls
+  private final ListeningExecutorService batchUpdateService =
+      BuildfarmExecutors.getBatchUpdateServicePool();
   private final ScheduledExecutorService contextDeadlineScheduler =
       newSingleThreadScheduledExecutor();
   private final ExecutorService operationDeletionService = newSingleThreadExecutor();
@@ -323,7 +360,11 @@ public class ServerInstance extends NodeInstance {
         name,
         backplane,
         new ShardActionCache(
-            DEFAULT_MAX_LOCAL_ACTION_CACHE_SIZE, backplane, actionCacheFetchService),
+            DEFAULT_MAX_LOCAL_ACTION_CACHE_SIZE,
+            backplane,
+            actionCacheFetchService,
+            java.time.Duration.ofSeconds(
+                configs.getServer().getCaches().getActionResultRefreshAfterWriteSeconds())),
         configs.getServer().isRunDispatchedMonitor(),
         configs.getServer().getDispatchedMonitorIntervalSeconds(),
         configs.getServer().isRunOperationQueuer(),
@@ -483,6 +524,14 @@ public class ServerInstance extends NodeInstance {
     remoteInputStreamFactory =
         new RemoteInputStreamFactory(
             backplane, rand, workerStubs, this::removeMalfunctioningWorker);
+    hotBlobReplicator = remoteInputStreamFactory.getHotBlobReplicator();
+    queuedDirectories =
+        new QueuedDirectories(configs.getServer().getCaches().getDirectoryCacheMaxEntries());
+    missingBlobs =
+        new MissingBlobs(
+            configs.getServer().getCaches().getMissingBlobCacheExpireAfterMillis(),
+            configs.getServer().getCaches().getMissingBlobCacheMaxEntries());
+    internalCompression = new InternalCompression(configs.getInternalZstdMinSizeBytes());
 
     if (runDispatchedMonitor) {
       dispatchedMonitor =
@@ -711,6 +760,7 @@ public class ServerInstance extends NodeInstance {
     operationDeletionService.shutdown();
     operationTransformService.shutdown();
     actionCacheFetchService.shutdown();
+    batchUpdateService.shutdown();
     onStop.run();
     backplane.stop();
     if (!contextDeadlineScheduler.awaitTermination(10, SECONDS)) {
@@ -729,6 +779,10 @@ public class ServerInstance extends NodeInstance {
     if (!actionCacheFetchService.awaitTermination(10, SECONDS)) {
       log.log(Level.SEVERE, "Could not shut down action cache fetch service");
     }
+    if (!batchUpdateService.awaitTermination(10, SECONDS)) {
+      log.log(Level.SEVERE, "Could not shut down batch update service");
+    }
+    batchUpdateService.shutdownNow();
     if (transformPollerExecutor != null) {
       transformPollerExecutor.shutdownNow();
       if (!transformPollerExecutor.awaitTermination(10, SECONDS)) {
@@ -798,7 +852,39 @@ public class ServerInstance extends NodeInstance {
       return findMissingBlobsViaBackplane(nonEmptyDigests, digestFunction, requestMetadata);
     }
 
-    return findMissingBlobsQueryingEachWorker(nonEmptyDigests, digestFunction, requestMetadata);
+    if (!missingBlobs.isEnabled()) {
+      return findMissingBlobsQueryingEachWorker(nonEmptyDigests, digestFunction, requestMetadata);
+    }
+
+    // blobs recently missing from every worker are answered without querying the workers again
+    Set<Digest> knownMissing;
+    try {
+      knownMissing =
+          ImmutableSet.copyOf(
+              Iterables.transform(
+                  missingBlobs.recentlyMissing(
+                      Iterables.transform(
+                          nonEmptyDigests, digest -> DigestUtil.fromDigest(digest, digestFunction)),
+                      backplane),
+                  DigestUtil::toDigest));
+    } catch (IOException e) {
+      return immediateFailedFuture(Status.fromThrowable(e).asException());
+    }
+    Iterable<Digest> unknownDigests =
+        ImmutableList.copyOf(
+            Iterables.filter(nonEmptyDigests, digest -> !knownMissing.contains(digest)));
+    if (Iterables.isEmpty(unknownDigests)) {
+      return immediateFuture(knownMissing);
+    }
+    return transform(
+        findMissingBlobsQueryingEachWorker(unknownDigests, digestFunction, requestMetadata),
+        missingDigests -> {
+          for (Digest digest : missingDigests) {
+            missingBlobs.add(DigestUtil.fromDigest(digest, digestFunction));
+          }
+          return Iterables.concat(knownMissing, missingDigests);
+        },
+        directExecutor());
   }
 
   class FindMissingResponseEntry {
@@ -1083,127 +1169,533 @@ public class ServerInstance extends NodeInstance {
       Compressor.Value compressor,
       build.buildfarm.v1test.Digest blobDigest,
       Deque<String> workers,
+      boolean placement,
       long offset,
       long count,
       ServerCallStreamObserver<ByteString> blobObserver,
       RequestMetadata requestMetadata) {
     String worker = workers.removeFirst();
-    workerStub(worker)
-        .getBlob(
-            compressor,
-            blobDigest,
-            offset,
-            count,
-            new UniformDelegateServerCallStreamObserver<ByteString>(blobObserver) {
-              long received = 0;
+    Compressor.Value fetchCompressor =
+        internalCompression.fetchCompressor(compressor, blobDigest, offset, count);
+    InternalCompression.ChunkDecoder decoder;
+    try {
+      decoder = internalCompression.newChunkDecoder(compressor, fetchCompressor);
+    } catch (IOException e) {
+      blobObserver.onError(e);
+      return;
+    }
+    AtomicBoolean readFinished = new AtomicBoolean(false);
+    Runnable finishRead =
+        () -> {
+          if (readFinished.compareAndSet(false, true)) {
+            hotBlobReplicator.readFinished(worker);
+          }
+        };
+    // cancelled to abandon the fetch when its content cannot be decoded, and once it has ended to
+    // release its listener on the parent context, under which any retry is made
+    Context parentContext = Context.current();
+    Context.CancellableContext fetchContext = parentContext.withCancellation();
+    hotBlobReplicator.readStarted(worker);
+    Context previousContext = fetchContext.attach();
+    try {
+      workerStub(worker)
+          .getBlob(
+              fetchCompressor,
+              blobDigest,
+              offset,
+              count,
+              new UniformDelegateServerCallStreamObserver<ByteString>(blobObserver) {
+                long received = 0;
+                boolean decodeFailed = false;
 
-              @Override
-              public void onNext(ByteString nextChunk) {
-                blobObserver.onNext(nextChunk);
-                received += nextChunk.size();
-                ioMetric.observe(nextChunk.size());
-              }
+                @Override
+                public void onNext(ByteString nextChunk) {
+                  if (decodeFailed) {
+                    return;
+                  }
+                  ByteString chunk;
+                  try {
+                    chunk = decoder.decode(nextChunk);
+                  } catch (IOException e) {
+                    // the error for the cancelled fetch is ignored in favor of this one
+                    decodeFailed = true;
+                    fetchContext.cancel(e);
+                    fail(Status.DATA_LOSS.withCause(e).asException());
+                    return;
+                  }
+                  blobObserver.onNext(chunk);
+                  received += chunk.size();
+                  ioMetric.observe(nextChunk.size());
+                }
 
-              @Override
-              public void onError(Throwable t) {
-                Status status = Status.fromThrowable(t);
-                if (status.getCode() == Code.UNAVAILABLE
-                    || status.getCode() == Code.UNIMPLEMENTED) {
-                  removeMalfunctioningWorker(
-                      worker, t, "getBlob(" + DigestUtil.toString(blobDigest) + ")");
-                } else if (status.getCode() == Code.NOT_FOUND) {
-                  casMissCounter.inc();
-                  log.log(
-                      configs.getServer().isEnsureOutputsPresent() ? Level.WARNING : Level.FINER,
-                      worker + " did not contain " + DigestUtil.toString(blobDigest));
-                  // ignore this, the worker will update the backplane eventually
-                } else if (status.getCode() != Code.DEADLINE_EXCEEDED
-                    && SHARD_IS_RETRIABLE.test(status)) {
-                  // why not, always
-                  workers.addLast(worker);
-                } else {
-                  log.log(
-                      Level.WARNING,
-                      format(
-                          "%s: read(%s) on worker %s after %d bytes of content",
-                          status.getCode().name(),
-                          DigestUtil.toString(blobDigest),
-                          worker,
-                          received));
-                  blobObserver.onError(t);
-                  return;
+                @Override
+                public void onError(Throwable t) {
+                  fetchContext.cancel(null);
+                  if (!decodeFailed) {
+                    fail(t);
+                  }
                 }
 
-                if (workers.isEmpty()) {
-                  blobObserver.onError(Status.NOT_FOUND.asException());
-                } else {
-                  if (count < received) {
-                    blobObserver.onError(
-                        new IllegalArgumentException(
-                            format("count (%d) < received (%d)", count, received)));
+                private void fail(Throwable t) {
+                  decoder.close();
+                  finishRead.run();
+                  Status status = Status.fromThrowable(t);
+                  if (status.getCode() == Code.UNAVAILABLE
+                      || status.getCode() == Code.UNIMPLEMENTED) {
+                    removeMalfunctioningWorker(
+                        worker, t, "getBlob(" + DigestUtil.toString(blobDigest) + ")");
+                  } else if (status.getCode() == Code.NOT_FOUND && placement) {
+                    // placement owners need not hold a blob, which is then read from its locations
+                    placementMissCounter.inc();
+                    log.log(
+                        Level.FINE,
+                        worker + " did not contain placed " + DigestUtil.toString(blobDigest));
+                  } else if (status.getCode() == Code.NOT_FOUND) {
+                    casMissCounter.inc();
+                    log.log(
+                        configs.getServer().isEnsureOutputsPresent() ? Level.WARNING : Level.FINER,
+                        worker + " did not contain " + DigestUtil.toString(blobDigest));
+                    // ignore this, the worker will update the backplane eventually
+                  } else if (status.getCode() != Code.DEADLINE_EXCEEDED
+                      && SHARD_IS_RETRIABLE.test(status)) {
+                    // why not, always
+                    workers.addLast(worker);
                   } else {
-                    long nextCount = count - received;
-                    if (nextCount == 0) {
-                      // be gracious and terminate the blobObserver here
-                      onCompleted();
+                    log.log(
+                        Level.WARNING,
+                        format(
+                            "%s: read(%s) on worker %s after %d bytes of content",
+                            status.getCode().name(),
+                            DigestUtil.toString(blobDigest),
+                            worker,
+                            received));
+                    blobObserver.onError(t);
+                    return;
+                  }
+
+                  if (workers.isEmpty()) {
+                    blobObserver.onError(Status.NOT_FOUND.asException());
+                  } else {
+                    if (count < received) {
+                      blobObserver.onError(
+                          new IllegalArgumentException(
+                              format("count (%d) < received (%d)", count, received)));
                     } else {
-                      try {
-                        fetchBlobFromWorker(
-                            compressor,
-                            blobDigest,
-                            workers,
-                            offset + received,
-                            nextCount,
-                            blobObserver,
-                            requestMetadata);
-                      } catch (Exception e) {
-                        blobObserver.onError(e);
+                      long nextCount = count - received;
+                      if (nextCount == 0) {
+                        // be gracious and terminate the blobObserver here
+                        onCompleted();
+                      } else {
+                        try {
+                          parentContext.run(
+                              () ->
+                                  fetchBlobFromWorker(
+                                      compressor,
+                                      blobDigest,
+                                      workers,
+                                      placement,
+                                      offset + received,
+                                      nextCount,
+                                      blobObserver,
+                                      requestMetadata));
+                        } catch (Exception e) {
+                          blobObserver.onError(e);
+                        }
                       }
                     }
                   }
                 }
-              }
 
-              @Override
-              public void onCompleted() {
-                blobObserver.onCompleted();
-                casHitCounter.inc();
-              }
-            },
-            requestMetadata);
+                @Override
+                public void onCompleted() {
+                  fetchContext.cancel(null);
+                  if (decodeFailed) {
+                    return;
+                  }
+                  decoder.close();
+                  if (decoder.isDecompressing() && received != blobDigest.getSize()) {
+                    finishRead.run();
+                    blobObserver.onError(
+                        Status.DATA_LOSS
+                            .withDescription(
+                                format(
+                                    "decompressed %d of %d bytes of %s from %s",
+                                    received,
+                                    blobDigest.getSize(),
+                                    DigestUtil.toString(blobDigest),
+                                    worker))
+                            .asException());
+                    return;
+                  }
+                  finishRead.run();
+                  blobObserver.onCompleted();
+                  casHitCounter.inc();
+                }
+              },
+              requestMetadata);
+    } catch (RuntimeException e) {
+      fetchContext.cancel(null);
+      decoder.close();
+      finishRead.run();
+      throw e;
+    } finally {
+      fetchContext.detach(previousContext);
+    }
   }
 
   @Override
   public ListenableFuture<List<Response>> getAllBlobsFuture(
       Iterable<Digest> digests, DigestFunction.Value digestFunction) {
     Executor contextExecutor = Context.current().fixedContextExecutor(directExecutor());
+    Map<Digest, ListenableFuture<Response>> responses = new HashMap<>();
+    try {
+      Map<String, List<Digest>> workerDigests = groupBatchReadsByWorker(digests, digestFunction);
+      for (Map.Entry<String, List<Digest>> entry : workerDigests.entrySet()) {
+        for (List<Digest> batch : partitionBatchReads(entry.getValue())) {
+          batchReadBlobsFromWorker(
+              entry.getKey(), batch, digestFunction, responses, contextExecutor);
+        }
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "error locating blobs for batch read, reading individually", e);
+    }
+    // anything not read in a worker batch is read individually
     return allAsList(
         Iterables.transform(
             digests,
             digest ->
-                catching(
-                    transform(
-                        getBlobFuture(
-                            Compressor.Value.IDENTITY,
-                            DigestUtil.fromDigest(digest, digestFunction),
-                            RequestMetadata.getDefaultInstance()),
-                        blob -> {
-                          Response.Builder response = Response.newBuilder().setDigest(digest);
-                          if (blob == null) {
-                            response.setStatus(NOT_FOUND);
-                          } else {
-                            response.setData(blob).setStatus(OK);
-                          }
-                          return response.build();
-                        },
-                        contextExecutor),
-                    Exception.class,
-                    e ->
-                        Response.newBuilder()
-                            .setDigest(digest)
-                            .setStatus(StatusProto.fromThrowable(e))
-                            .build(),
-                    contextExecutor)));
+                responses.computeIfAbsent(
+                    digest, d -> getBlobResponseFuture(d, digestFunction, contextExecutor))));
+  }
+
+  // assigns each located blob to a single worker, preferring workers which already have a batch
+  private Map<String, List<Digest>> groupBatchReadsByWorker(
+      Iterable<Digest> digests, DigestFunction.Value digestFunction) throws IOException {
+    Set<build.buildfarm.v1test.Digest> batchable = new LinkedHashSet<>();
+    for (Digest digest : digests) {
+      if (digest.getSizeBytes() > 0 && digest.getSizeBytes() <= MAX_BATCH_READ_SIZE_BYTES) {
+        batchable.add(DigestUtil.fromDigest(digest, digestFunction));
+      }
+    }
+    if (batchable.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    Map<String, List<Digest>> workerDigests = new HashMap<>();
+    if (configs.getServer().isRendezvousBlobPlacement()) {
+      // owners are computed locally, misses are corrected by the individual read
+      Map<String, Long> capacities = backplane.getStorageWorkerCapacities();
+      for (build.buildfarm.v1test.Digest digest : batchable) {
+        String worker =
+            Iterables.getFirst(RendezvousHash.owners(digest.getHash(), capacities, 1), null);
+        if (worker != null) {
+          workerDigests
+              .computeIfAbsent(worker, w -> new ArrayList<>())
+              .add(DigestUtil.toDigest(digest));
+        }
+      }
+      return workerDigests;
+    }
+
+    Set<String> workerSet = backplane.getStorageWorkers();
+    Map<build.buildfarm.v1test.Digest, Set<String>> locations =
+        backplane.getBlobDigestsWorkers(batchable);
+    for (Map.Entry<build.buildfarm.v1test.Digest, Set<String>> entry : locations.entrySet()) {
+      List<String> candidates = new ArrayList<>(Sets.intersection(entry.getValue(), workerSet));
+      if (candidates.isEmpty()) {
+        continue;
+      }
+      String worker =
+          candidates.stream()
+              .filter(workerDigests::containsKey)
+              .findFirst()
+              .orElseGet(() -> candidates.get(rand.nextInt(candidates.size())));
+      workerDigests
+          .computeIfAbsent(worker, w -> new ArrayList<>())
+          .add(DigestUtil.toDigest(entry.getKey()));
+    }
+    return workerDigests;
+  }
+
+  private static List<List<Digest>> partitionBatchReads(List<Digest> digests) {
+    ImmutableList.Builder<List<Digest>> batches = ImmutableList.builder();
+    List<Digest> batch = new ArrayList<>();
+    long batchSize = 0;
+    for (Digest digest : digests) {
+      long size = digest.getSizeBytes() + digest.getSerializedSize();
+      if (!batch.isEmpty() && batchSize + size > MAX_BATCH_READ_SIZE_BYTES) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        batchSize = 0;
+      }
+      batch.add(digest);
+      batchSize += size;
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches.build();
+  }
+
+  private void batchReadBlobsFromWorker(
+      String worker,
+      List<Digest> batch,
+      DigestFunction.Value digestFunction,
+      Map<Digest, ListenableFuture<Response>> responses,
+      Executor executor) {
+    Map<Digest, SettableFuture<Response>> batchResponses = new HashMap<>();
+    for (Digest digest : batch) {
+      SettableFuture<Response> response = SettableFuture.create();
+      batchResponses.put(digest, response);
+      responses.put(digest, response);
+    }
+    addCallback(
+        workerStub(worker).getAllBlobsFuture(batch, digestFunction),
+        new FutureCallback<List<Response>>() {
+          @Override
+          public void onSuccess(List<Response> workerResponses) {
+            for (Response response : workerResponses) {
+              if (response.getStatus().getCode() == Code.OK.value()) {
+                SettableFuture<Response> future = batchResponses.remove(response.getDigest());
+                if (future != null) {
+                  casHitCounter.inc();
+                  future.set(response);
+                }
+              }
+            }
+            // the worker's registration was stale, let the individual read correct it
+            readIndividually();
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            Status status = Status.fromThrowable(t);
+            if (status.getCode() == Code.UNAVAILABLE || status.getCode() == Code.UNIMPLEMENTED) {
+              removeMalfunctioningWorker(
+                  worker, t, format("batchReadBlobs(%d blobs)", batch.size()));
+            }
+            readIndividually();
+          }
+
+          private void readIndividually() {
+            for (Map.Entry<Digest, SettableFuture<Response>> entry : batchResponses.entrySet()) {
+              entry
+                  .getValue()
+                  .setFuture(getBlobResponseFuture(entry.getKey(), digestFunction, executor));
+            }
+          }
+        },
+        executor);
+  }
+
+  private ListenableFuture<Response> getBlobResponseFuture(
+      Digest digest, DigestFunction.Value digestFunction, Executor executor) {
+    return catching(
+        transform(
+            getBlobFuture(
+                Compressor.Value.IDENTITY,
+                DigestUtil.fromDigest(digest, digestFunction),
+                RequestMetadata.getDefaultInstance()),
+            blob -> {
+              Response.Builder response = Response.newBuilder().setDigest(digest);
+              if (blob == null) {
+                response.setStatus(NOT_FOUND);
+              } else {
+                response.setData(blob).setStatus(OK);
+              }
+              return response.build();
+            },
+            executor),
+        Exception.class,
+        e ->
+            Response.newBuilder().setDigest(digest).setStatus(StatusProto.fromThrowable(e)).build(),
+        executor);
+  }
+
+  @Override
+  public ListenableFuture<List<BatchUpdateBlobsResponse.Response>> putAllBlobsFuture(
+      Iterable<BatchUpdateBlobsRequest.Request> requests,
+      DigestFunction.Value digestFunction,
+      long writeDeadlineAfter,
+      TimeUnit writeDeadlineAfterUnits,
+      RequestMetadata requestMetadata) {
+    boolean placement = configs.getServer().isRendezvousBlobPlacement();
+    List<String> workers;
+    Map<String, Long> capacities;
+    try {
+      workers = new ArrayList<>(backplane.getStorageWorkers());
+      capacities = placement ? backplane.getStorageWorkerCapacities() : ImmutableMap.of();
+    } catch (IOException e) {
+      return immediateFailedFuture(Status.fromThrowable(e).asException());
+    }
+    if (workers.isEmpty()) {
+      return super.putAllBlobsFuture(
+          requests, digestFunction, writeDeadlineAfter, writeDeadlineAfterUnits, requestMetadata);
+    }
+    Collections.shuffle(workers, rand);
+
+    List<BatchUpdateBlobsRequest.Request> requestList = ImmutableList.copyOf(requests);
+    for (BatchUpdateBlobsRequest.Request request : requestList) {
+      missingBlobs.invalidate(DigestUtil.fromDigest(request.getDigest(), digestFunction));
+    }
+    List<ListenableFuture<BatchUpdateBlobsResponse.Response>> responses =
+        new ArrayList<>(Collections.nCopies(requestList.size(), null));
+    // blobs are grouped by placement owner, or all together to be spread across workers
+    Map<String, List<Integer>> ownerIndices = new LinkedHashMap<>();
+    for (int i = 0; i < requestList.size(); i++) {
+      BatchUpdateBlobsRequest.Request request = requestList.get(i);
+      if (!isBatchable(request)) {
+        responses.set(
+            i,
+            putBlobResponseFuture(
+                request,
+                digestFunction,
+                writeDeadlineAfter,
+                writeDeadlineAfterUnits,
+                requestMetadata));
+        continue;
+      }
+      String owner =
+          placement
+              ? Iterables.getFirst(
+                  RendezvousHash.owners(request.getDigest().getHash(), capacities, 1), "")
+              : "";
+      ownerIndices.computeIfAbsent(owner, o -> new ArrayList<>()).add(i);
+    }
+
+    int nextWorker = 0;
+    for (Map.Entry<String, List<Integer>> entry : ownerIndices.entrySet()) {
+      for (List<Integer> indices : partitionBatchUpdates(requestList, entry.getValue())) {
+        String worker = entry.getKey();
+        if (worker.isEmpty()) {
+          worker = workers.get(nextWorker++ % workers.size());
+        }
+        List<BatchUpdateBlobsRequest.Request> batchRequests =
+            Lists.transform(indices, requestList::get);
+        ListenableFuture<List<BatchUpdateBlobsResponse.Response>> batchFuture =
+            batchUpdateBlobsOnWorker(
+                worker,
+                batchRequests,
+                digestFunction,
+                writeDeadlineAfter,
+                writeDeadlineAfterUnits,
+                requestMetadata);
+        for (int j = 0; j < indices.size(); j++) {
+          int index = j;
+          responses.set(
+              indices.get(j), transform(batchFuture, list -> list.get(index), directExecutor()));
+        }
+      }
+    }
+    return allAsList(responses);
+  }
+
+  private static List<List<Integer>> partitionBatchUpdates(
+      List<BatchUpdateBlobsRequest.Request> requests, List<Integer> indices) {
+    ImmutableList.Builder<List<Integer>> batches = ImmutableList.builder();
+    List<Integer> batch = new ArrayList<>();
+    long batchSize = 0;
+    for (int index : indices) {
+      long size = encodedBatchSize(requests.get(index));
+      if (!batch.isEmpty() && batchSize + size > MAX_BATCH_UPDATE_SIZE_BYTES) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        batchSize = 0;
+      }
+      batch.add(index);
+      batchSize += size;
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches.build();
+  }
+
+  // the request with its digest and the framing of the repeated field, not only its content
+  private static long encodedBatchSize(BatchUpdateBlobsRequest.Request request) {
+    return CodedOutputStream.computeMessageSize(
+        BatchUpdateBlobsRequest.REQUESTS_FIELD_NUMBER, request);
+  }
+
+  private static boolean isBatchable(BatchUpdateBlobsRequest.Request request) {
+    long size = request.getData().size();
+    return request.getCompressor() == Compressor.Value.IDENTITY
+        && size > 0
+        && size == request.getDigest().getSizeBytes()
+        && encodedBatchSize(request) <= MAX_BATCH_UPDATE_SIZE_BYTES;
+  }
+
+  private ListenableFuture<List<BatchUpdateBlobsResponse.Response>> batchUpdateBlobsOnWorker(
+      String worker,
+      List<BatchUpdateBlobsRequest.Request> requests,
+      DigestFunction.Value digestFunction,
+      long writeDeadlineAfter,
+      TimeUnit writeDeadlineAfterUnits,
+      RequestMetadata requestMetadata) {
+    ListenableFuture<List<BatchUpdateBlobsResponse.Response>> batchFuture =
+        batchUpdateService.submit(
+            Context.current()
+                .wrap(
+                    () -> {
+                      // each batch is a write of its own, bounded like any other
+                      Context.CancellableContext withDeadline =
+                          Context.current()
+                              .withDeadlineAfter(
+                                  writeDeadlineAfter,
+                                  writeDeadlineAfterUnits,
+                                  contextDeadlineScheduler);
+                      try {
+                        return withDeadline.call(
+                            () ->
+                                putBatchOnWorker(
+                                    worker, requests, digestFunction, requestMetadata));
+                      } finally {
+                        withDeadline.cancel(null);
+                      }
+                    }));
+    return catchingAsync(
+        batchFuture,
+        Exception.class,
+        e -> {
+          Status status = Status.fromThrowable(e);
+          if (status.getCode() == Code.UNAVAILABLE || status.getCode() == Code.UNIMPLEMENTED) {
+            removeMalfunctioningWorker(
+                worker, e, format("batchUpdateBlobs(%d blobs)", requests.size()));
+          }
+          // write the blobs individually to whichever workers will take them
+          return super.putAllBlobsFuture(
+              requests,
+              digestFunction,
+              writeDeadlineAfter,
+              writeDeadlineAfterUnits,
+              requestMetadata);
+        },
+        directExecutor());
+  }
+
+  private List<BatchUpdateBlobsResponse.Response> putBatchOnWorker(
+      String worker,
+      List<BatchUpdateBlobsRequest.Request> requests,
+      DigestFunction.Value digestFunction,
+      RequestMetadata requestMetadata)
+      throws IOException, InterruptedException {
+    Map<Digest, com.google.rpc.Status> failures = new HashMap<>();
+    try {
+      workerStub(worker).putAllBlobs(requests, digestFunction, requestMetadata);
+    } catch (PutAllBlobsException e) {
+      for (BatchUpdateBlobsResponse.Response response : e.getFailedResponses()) {
+        failures.put(response.getDigest(), response.getStatus());
+      }
+    }
+    ImmutableList.Builder<BatchUpdateBlobsResponse.Response> responses = ImmutableList.builder();
+    for (BatchUpdateBlobsRequest.Request request : requests) {
+      responses.add(
+          BatchUpdateBlobsResponse.Response.newBuilder()
+              .setDigest(request.getDigest())
+              .setStatus(failures.getOrDefault(request.getDigest(), OK))
+              .build());
+    }
+    return responses.build();
   }
 
   @Override
@@ -1214,6 +1706,69 @@ public class ServerInstance extends NodeInstance {
       long count,
       ServerCallStreamObserver<ByteString> blobObserver,
       RequestMetadata requestMetadata) {
+    if (!configs.getServer().isRendezvousBlobPlacement()) {
+      getBlobFromLocations(compressor, blobDigest, offset, count, blobObserver, requestMetadata);
+      return;
+    }
+
+    Deque<String> owners;
+    try {
+      owners = new ArrayDeque<>(placementOwners(blobDigest, PLACEMENT_READ_OWNERS));
+    } catch (RuntimeException e) {
+      blobObserver.onError(e);
+      return;
+    }
+    if (owners.isEmpty()) {
+      getBlobFromLocations(compressor, blobDigest, offset, count, blobObserver, requestMetadata);
+      return;
+    }
+    // try the computed owners without a location lookup, then fall back to the locations
+    fetchBlobFromWorker(
+        compressor,
+        blobDigest,
+        owners,
+        /* placement= */ true,
+        offset,
+        count,
+        new UniformDelegateServerCallStreamObserver<ByteString>(blobObserver) {
+          long received = 0;
+
+          @Override
+          public void onNext(ByteString nextChunk) {
+            blobObserver.onNext(nextChunk);
+            received += nextChunk.size();
+          }
+
+          @Override
+          public void onError(Throwable t) {
+            if (Status.fromThrowable(t).getCode() == Code.NOT_FOUND) {
+              getBlobFromLocations(
+                  compressor,
+                  blobDigest,
+                  offset + received,
+                  count - received,
+                  blobObserver,
+                  requestMetadata);
+            } else {
+              blobObserver.onError(t);
+            }
+          }
+
+          @Override
+          public void onCompleted() {
+            blobObserver.onCompleted();
+          }
+        },
+        requestMetadata);
+  }
+
+  private void getBlobFromLocations(
+      Compressor.Value compressor,
+      build.buildfarm.v1test.Digest blobDigest,
+      long offset,
+      long count,
+      ServerCallStreamObserver<ByteString> blobObserver,
+      RequestMetadata requestMetadata) {
     List<String> workersList;
     Set<String> workerSet;
     Set<String> locationSet;
@@ -1225,6 +1780,11 @@ public class ServerInstance extends NodeInstance {
       blobObserver.onError(e);
       return;
     }
+    if (missingBlobs.isMissing(blobDigest, Sets.intersection(locationSet, workerSet))) {
+      blobObserver.onError(Status.NOT_FOUND.asException());
+      return;
+    }
+    hotBlobReplicator.onRead(blobDigest, new HashSet<>(workersList), workerSet);
     boolean emptyWorkerList = workersList.isEmpty();
     final ListenableFuture<List<String>> populatedWorkerListFuture;
     if (emptyWorkerList) {
@@ -1302,7 +1862,7 @@ public class ServerInstance extends NodeInstance {
               final ServerCallStreamObserver<ByteString> checkedChunkObserver = this;
               addCallback(
                   workersListFuture,
-                  new WorkersCallback(rand) {
+                  new WorkersCallback(rand, hotBlobReplicator::load) {
                     @Override
                     public void onQueue(Deque<String> workers) {
                       ctx.run(
@@ -1312,6 +1872,7 @@ public class ServerInstance extends NodeInstance {
                                   compressor,
                                   blobDigest,
                                   workers,
+                                  /* placement= */ false,
                                   offset,
                                   count,
                                   checkedChunkObserver,
@@ -1324,11 +1885,13 @@ public class ServerInstance extends NodeInstance {
 
                     @Override
                     public void onFailure(Throwable t) {
+                      recordIfMissing(blobDigest, t);
                       blobObserver.onError(t);
                     }
                   },
                   directExecutor());
             } else {
+              recordIfMissing(blobDigest, t);
               blobObserver.onError(t);
             }
           }
@@ -1340,7 +1903,7 @@ public class ServerInstance extends NodeInstance {
         };
     addCallback(
         populatedWorkerListFuture,
-        new WorkersCallback(rand) {
+        new WorkersCallback(rand, hotBlobReplicator::load) {
           @Override
           public void onQueue(Deque<String> workers) {
             ctx.run(
@@ -1350,6 +1913,7 @@ public class ServerInstance extends NodeInstance {
                         compressor,
                         blobDigest,
                         workers,
+                        /* placement= */ false,
                         offset,
                         count,
                         chunkObserver,
@@ -1362,17 +1926,32 @@ public class ServerInstance extends NodeInstance {
 
           @Override
           public void onFailure(Throwable t) {
+            recordIfMissing(blobDigest, t);
             blobObserver.onError(t);
           }
         },
         directExecutor());
   }
 
+  // remembers a blob that no worker could provide
+  private void recordIfMissing(build.buildfarm.v1test.Digest blobDigest, Throwable t) {
+    if (Status.fromThrowable(t).getCode() == Code.NOT_FOUND) {
+      missingBlobs.add(blobDigest);
+    }
+  }
+
   public abstract static class WorkersCallback implements FutureCallback<List<String>> {
     private final Random rand;
+    private final ToLongFunction<String> load;
 
     public WorkersCallback(Random rand) {
+      this(rand, worker -> 0);
+    }
+
+    /** Workers are tried in increasing order of load, with ties in random order. */
+    public WorkersCallback(Random rand, ToLongFunction<String> load) {
       this.rand = rand;
+      this.load = load;
     }
 
     @Override
@@ -1381,6 +1960,7 @@ public class ServerInstance extends NodeInstance {
         onFailure(Status.NOT_FOUND.withDescription("No workers found.").asException());
       } else {
         Collections.shuffle(workersList, rand);
+        workersList.sort(Comparator.comparingLong(load));
         onQueue(new ArrayDeque<>(workersList));
       }
     }
@@ -1388,11 +1968,27 @@ public class ServerInstance extends NodeInstance {
     protected abstract void onQueue(Deque<String> workers);
   }
 
-  private Instance writeInstanceSupplier() {
-    String worker = getRandomWorker();
+  private Instance writeInstanceSupplier(build.buildfarm.v1test.Digest digest) {
+    String worker = null;
+    if (configs.getServer().isRendezvousBlobPlacement()) {
+      worker = Iterables.getFirst(placementOwners(digest, 1), null);
+    }
+    if (worker == null) {
+      worker = getRandomWorker();
+    }
     return workerStub(worker);
   }
 
+  // the preferred workers for a blob under rendezvous placement
+  private List<String> placementOwners(build.buildfarm.v1test.Digest digest, int count) {
+    try {
+      return RendezvousHash.owners(
+          digest.getHash(), backplane.getStorageWorkerCapacities(), count);
+    } catch (IOException e) {
+      throw Status.fromThrowable(e).asRuntimeException();
+    }
+  }
+
   String getRandomWorker() {
     Set<String> workerSet;
     try {
@@ -1454,12 +2050,16 @@ public class ServerInstance extends NodeInstance {
     if (maxEntrySizeBytes > 0 && digest.getSize() > maxEntrySizeBytes) {
       throw new EntryLimitException(digest.getSize(), maxEntrySizeBytes);
     }
+    missingBlobs.invalidate(digest);
     // FIXME small blob write to proto cache
-    return writes.get(compressor, digest, uuid, requestMetadata);
+    Write write = writes.get(compressor, digest, uuid, requestMetadata);
+    write.getFuture().addListener(() -> missingBlobs.invalidate(digest), directExecutor());
+    return write;
   }
 
   protected int getTreeDefaultPageSize() {
-    return 1024;
+    // unlimited, pages are bounded by getTreeMaxPageBytes
+    return -1;
   }
 
   protected int getTreeMaxPageSize() {
@@ -1495,6 +2095,10 @@ public class ServerInstance extends NodeInstance {
             return null;
           }
         },
+        // errors are reported when the directory is fetched
+        directoryBlobDigest ->
+            expectDirectory(reason, directoryBlobDigest, RequestMetadata.getDefaultInstance()),
+        TREE_PREFETCH_WINDOW,
         rootDigest,
         pageToken);
   }
@@ -1778,7 +2382,7 @@ public class ServerInstance extends NodeInstance {
       ExecutorService service,
       Duration timeout)
       throws EntryLimitException {
-    ByteString queuedOperationBlob = queuedOperation.toByteString();
+    ByteString queuedOperationBlob = compactQueuedOperation(queuedOperation).toByteString();
     build.buildfarm.v1test.Digest queuedOperationDigest = digestUtil.compute(queuedOperationBlob);
     QueuedOperationMetadata metadata =
         QueuedOperationMetadata.newBuilder()
@@ -1799,6 +2403,16 @@ public class ServerInstance extends NodeInstance {
         service);
   }
 
+  // omits recently queued directories from the tree, which workers resolve by digest
+  private QueuedOperation compactQueuedOperation(QueuedOperation queuedOperation) {
+    if (!configs.getServer().isReferenceQueuedDirectories()) {
+      return queuedOperation;
+    }
+    return queuedOperation.toBuilder()
+        .setTree(queuedDirectories.compact(queuedOperation.getTree()))
+        .build();
+  }
+
   private ListenableFuture<Long> writeBlobFuture(
       build.buildfarm.v1test.Digest digest,
       ByteString content,
@@ -1954,12 +2568,23 @@ public class ServerInstance extends NodeInstance {
     String operationName = executeEntry.getOperationName();
     checkState(operationName.equals(operation.getName()));
     RequestMetadata requestMetadata = executeEntry.getRequestMetadata();
+    // a queued operation which references directories is rebuilt for validation
     ListenableFuture<QueuedOperation> fetchQueuedOperationFuture =
-        expect(
-            queueEntry.getQueuedOperationDigest(),
-            QueuedOperation.parser(),
-            operationTransformService,
-            requestMetadata);
+        transform(
+            expect(
+                queueEntry.getQueuedOperationDigest(),
+                QueuedOperation.parser(),
+                operationTransformService,
+                requestMetadata),
+            (queuedOperation) -> {
+              if (!Trees.isComplete(queuedOperation.getTree())) {
+                throw Status.NOT_FOUND
+                    .withDescription("queued operation references directories")
+                    .asRuntimeException();
+              }
+              return queuedOperation;
+            },
+            directExecutor());
     build.buildfarm.v1test.Digest actionDigest = executeEntry.getActionDigest();
     ListenableFuture<QueuedOperation> queuedOperationFuture =
         catchingAsync(
@@ -2690,9 +3315,13 @@ public class ServerInstance extends NodeInstance {
                               .getQueuedOperationMetadata()
                               .getQueuedOperationDigest())));
               ByteString queuedOperationBlob =
-                  profiledQueuedMetadata.getQueuedOperation().toByteString();
+                  compactQueuedOperation(profiledQueuedMetadata.getQueuedOperation())
+                      .toByteString();
               build.buildfarm.v1test.Digest queuedOperationDigest =
-                  profiledQueuedMetadata.getQueuedOperationMetadata().getQueuedOperationDigest();
+                  digestUtil.compute(queuedOperationBlob);
+              profiledQueuedMetadata
+                  .getQueuedOperationMetadataBuilder()
+                  .setQueuedOperationDigest(queuedOperationDigest);
               long startUploadUSecs = stopwatch.elapsed(MICROSECONDS);
               return transform(
                   writeBlobFuture(
@@ -0,0 +1,95 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import build.buildfarm.v1test.ShardWorker;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * An immutable view of the registered workers, replaced copy-on-write.
+ *
+ * <p>Readers never lock and always observe a consistent map. The view is replaced wholesale by a
+ * registration scan and updated incrementally by worker change messages. Changes that arrive while
+ * a scan is in flight are replayed onto its result, since the scan may predate them.
+ */
+class WorkerSnapshot {
+  private final AtomicReference<ImmutableMap<String, ShardWorker>> workers =
+      new AtomicReference<>(ImmutableMap.of());
+
+  @GuardedBy("this")
+  private @Nullable List<Consumer<Map<String, ShardWorker>>> changesDuringRefresh = null;
+
+  ImmutableMap<String, ShardWorker> get() {
+    return workers.get();
+  }
+
+  /** Starts recording changes, to be replayed onto the workers of the next replace. */
+  synchronized void beginRefresh() {
+    changesDuringRefresh = new ArrayList<>();
+  }
+
+  /** Stops recording changes, discarding any not replayed, as when the scan failed. */
+  synchronized void endRefresh() {
+    changesDuringRefresh = null;
+  }
+
+  void put(ShardWorker worker) {
+    update(
+        current -> {
+          current.put(worker.getEndpoint(), worker);
+          return true;
+        });
+  }
+
+  boolean remove(String name) {
+    // recorded even if absent here, the scan in flight may still include it
+    return update(current -> current.remove(name) != null);
+  }
+
+  synchronized void replace(Map<String, ShardWorker> newWorkers) {
+    Map<String, ShardWorker> updated = new LinkedHashMap<>(newWorkers);
+    if (changesDuringRefresh != null) {
+      for (Consumer<Map<String, ShardWorker>> change : changesDuringRefresh) {
+        change.accept(updated);
+      }
+      changesDuringRefresh = null;
+    }
+    workers.set(ImmutableMap.copyOf(updated));
+  }
+
+  private synchronized boolean update(Change change) {
+    if (changesDuringRefresh != null) {
+      changesDuringRefresh.add(change::apply);
+    }
+    Map<String, ShardWorker> updated = new LinkedHashMap<>(workers.get());
+    boolean changed = change.apply(updated);
+    if (changed) {
+      workers.set(ImmutableMap.copyOf(updated));
+    }
+    return changed;
+  }
+
+  private interface Change {
+    boolean apply(Map<String, ShardWorker> workers);
+  }
+}
@@ -38,7 +38,7 @@ import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Supplier;
+import java.util.function.Function;
 
 class Writes {
   private final LoadingCache<BlobWriteKey, Instance> blobWriteInstances;
@@ -117,11 +117,11 @@ class Writes {
     }
   }
 
-  Writes(Supplier<Instance> instanceSupplier) {
-    this(instanceSupplier, /* writeExpiresAfter= */ 1);
+  Writes(Function<Digest, Instance> instanceForDigest) {
+    this(instanceForDigest, /* writeExpiresAfter= */ 1);
   }
 
-  Writes(Supplier<Instance> instanceSupplier, long writeExpiresAfter) {
+  Writes(Function<Digest, Instance> instanceForDigest, long writeExpiresAfter) {
     blobWriteInstances =
         CacheBuilder.newBuilder()
             .expireAfterWrite(writeExpiresAfter, TimeUnit.HOURS)
@@ -130,7 +130,7 @@ class Writes {
                   @SuppressWarnings("NullableProblems")
                   @Override
                   public Instance load(BlobWriteKey key) {
-                    return instanceSupplier.get();
+                    return instanceForDigest.apply(key.getDigest());
                   }
                 });
   }
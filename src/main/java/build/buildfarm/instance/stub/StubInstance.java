@@ -688,6 +688,25 @@ public class StubInstance extends InstanceBase {
     return newInput(readResourceName(compressor, digest), offset, requestMetadata);
   }
 
+  /** Read limit bytes of a blob from the offset. */
+  public InputStream newBlobInput(
+      Compressor.Value compressor,
+      build.buildfarm.v1test.Digest digest,
+      long offset,
+      long limit,
+      RequestMetadata requestMetadata)
+      throws IOException {
+    throwIfStopped();
+    return ByteStreamHelper.newInput(
+        readResourceName(compressor, digest),
+        offset,
+        limit,
+        () -> deadlined(bsStub).withInterceptors(attachMetadataInterceptor(requestMetadata)),
+        retrier::newBackoff,
+        retrier::isRetriable,
+        retryService);
+  }
+
   @Override
   public ListenableFuture<List<Response>> getAllBlobsFuture(
       Iterable<Digest> digests, DigestFunction.Value digestFunction) {
@@ -0,0 +1,225 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.metrics.jfr;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.java.Log;
+
+/**
+ * Serves time-boxed JFR recordings of this process, for analysis with JDK Mission Control, {@code
+ * jfr print}, or converted to flame graphs with async-profiler's {@code jfrconv}.
+ *
+ * <p>{@code GET /debug/jfr?seconds=30&settings=profile&events=allocation,monitor,socket} records
+ * for the given duration with a JFR configuration, enables the named groups of events on top of it,
+ * and responds with the recording. Monitor and socket events are recorded when they take at least
+ * {@code threshold_ms}. Only one recording is taken at a time.
+ *
+ * <p>Events that would disclose the environment, system properties, and command lines of the
+ * process, where credentials are commonly passed, are never recorded, since recordings are served
+ * without authentication.
+ */
+@Log
+public class JfrRecordingHandler implements HttpHandler {
+  public static final String PATH = "/debug/jfr";
+
+  private static final int DEFAULT_SECONDS = 30;
+  private static final String DEFAULT_SETTINGS = "profile";
+  private static final long DEFAULT_THRESHOLD_MILLIS = 10;
+  private static final ImmutableSet<String> SETTINGS = ImmutableSet.of("default", "profile");
+  private static final ImmutableMap<String, ImmutableList<String>> EVENTS =
+      ImmutableMap.of(
+          "allocation",
+          ImmutableList.of("jdk.ObjectAllocationSample"),
+          // contention on synchronized blocks, waits, and java.util.concurrent locks
+          "monitor",
+          ImmutableList.of("jdk.JavaMonitorEnter", "jdk.JavaMonitorWait", "jdk.ThreadPark"),
+          "socket",
+          ImmutableList.of("jdk.SocketRead", "jdk.SocketWrite"));
+
+  private static final ImmutableList<String> DISCLOSING_EVENTS =
+      ImmutableList.of(
+          "jdk.InitialEnvironmentVariable",
+          "jdk.InitialSystemProperty",
+          "jdk.JVMInformation",
+          "jdk.SystemProcess");
+
+  private final int maxRecordingSeconds;
+  private final Semaphore recordings = new Semaphore(1);
+
+  public JfrRecordingHandler(int maxRecordingSeconds) {
+    this.maxRecordingSeconds = maxRecordingSeconds;
+  }
+
+  private static final class BadRequestException extends Exception {
+    BadRequestException(String message) {
+      super(message);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> parameters = new HashMap<>();
+    if (query != null) {
+      for (String parameter : Splitter.on('&').omitEmptyStrings().split(query)) {
+        int index = parameter.indexOf('=');
+        String name = index < 0 ? parameter : parameter.substring(0, index);
+        String value = index < 0 ? "" : parameter.substring(index + 1);
+        parameters.put(URLDecoder.decode(name, UTF_8), URLDecoder.decode(value, UTF_8));
+      }
+    }
+    return parameters;
+  }
+
+  private static long parseLong(Map<String, String> parameters, String name, long defaultValue)
+      throws BadRequestException {
+    String value = parameters.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new BadRequestException(name + " must be an integer: " + value);
+    }
+  }
+
+  private Recording createRecording(Map<String, String> parameters)
+      throws BadRequestException, IOException, ParseException {
+    String settings = parameters.getOrDefault("settings", DEFAULT_SETTINGS);
+    if (!SETTINGS.contains(settings)) {
+      throw new BadRequestException("settings must be one of " + SETTINGS + ": " + settings);
+    }
+    Duration threshold =
+        Duration.ofMillis(parseLong(parameters, "threshold_ms", DEFAULT_THRESHOLD_MILLIS));
+    List<String> groups =
+        Splitter.on(',').omitEmptyStrings().splitToList(parameters.getOrDefault("events", ""));
+    for (String group : groups) {
+      if (!EVENTS.containsKey(group)) {
+        throw new BadRequestException("events must be among " + EVENTS.keySet() + ": " + group);
+      }
+    }
+
+    Recording recording = new Recording(Configuration.getConfiguration(settings));
+    recording.setName("buildfarm");
+    recording.setToDisk(true);
+    for (String group : groups) {
+      for (String event : EVENTS.get(group)) {
+        if (group.equals("allocation")) {
+          recording.enable(event).withStackTrace();
+        } else {
+          recording.enable(event).withThreshold(threshold).withStackTrace();
+        }
+      }
+    }
+    for (String event : DISCLOSING_EVENTS) {
+      recording.disable(event);
+    }
+    return recording;
+  }
+
+  private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+    byte[] body = (message + "\n").getBytes(UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(code, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        respond(exchange, 405, "only GET is supported");
+        return;
+      }
+      Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+      long seconds;
+      Recording recording;
+      try {
+        seconds = parseLong(parameters, "seconds", DEFAULT_SECONDS);
+        if (seconds <= 0 || seconds > maxRecordingSeconds) {
+          throw new BadRequestException(
+              "seconds must be between 1 and " + maxRecordingSeconds + ": " + seconds);
+        }
+        recording = createRecording(parameters);
+      } catch (BadRequestException e) {
+        respond(exchange, 400, e.getMessage());
+        return;
+      } catch (ParseException e) {
+        respond(exchange, 500, "could not load JFR settings: " + e.getMessage());
+        return;
+      }
+      if (!recordings.tryAcquire()) {
+        recording.close();
+        respond(exchange, 409, "a recording is already in progress");
+        return;
+      }
+      try {
+        record(exchange, recording, seconds);
+      } finally {
+        recording.close();
+        recordings.release();
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void record(HttpExchange exchange, Recording recording, long seconds) throws IOException {
+    log.log(Level.INFO, "starting a JFR recording of " + seconds + "s");
+    recording.start();
+    try {
+      Thread.sleep(seconds * 1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      recording.stop();
+      respond(exchange, 503, "recording was interrupted");
+      return;
+    }
+    recording.stop();
+    exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+    exchange
+        .getResponseHeaders()
+        .set("Content-Disposition", "attachment; filename=\"buildfarm.jfr\"");
+    exchange.sendResponseHeaders(200, 0);
+    try (OutputStream out = exchange.getResponseBody();
+        InputStream in = recording.getStream(/* start= */ null, /* end= */ null)) {
+      // an empty recording has no stream
+      if (in != null) {
+        in.transferTo(out);
+      }
+    }
+  }
+}
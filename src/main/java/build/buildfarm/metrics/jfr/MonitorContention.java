@@ -0,0 +1,97 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.metrics.jfr;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.prometheus.client.Counter;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.java.Log;
+
+/**
+ * Streams contended monitor enters from JFR and exports them as metrics by the class of the
+ * monitor, so that the most contended locks, such as those of the CASFileCache, are visible without
+ * a recording. Only enters blocked for at least the threshold are recorded, without stack traces,
+ * which keeps the overhead low enough to leave on.
+ */
+@Log
+public final class MonitorContention {
+  private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+  @VisibleForTesting static final String OTHER_CLASSES = "other";
+
+  private static final Counter contendedSeconds =
+      Counter.build()
+          .name("monitor_contended_seconds")
+          .labelNames("monitor_class")
+          .help("Time blocked entering contended monitors, by monitor class.")
+          .register();
+  private static final Counter contendedEnters =
+      Counter.build()
+          .name("monitor_contended_enters")
+          .labelNames("monitor_class")
+          .help("Contended monitor enters, by monitor class.")
+          .register();
+
+  private final int maxClasses;
+  private final Set<String> monitorClasses = ConcurrentHashMap.newKeySet();
+  private RecordingStream stream;
+
+  @VisibleForTesting
+  MonitorContention(int maxClasses) {
+    this.maxClasses = maxClasses;
+  }
+
+  public static MonitorContention start(Duration threshold, int maxClasses) {
+    MonitorContention monitorContention = new MonitorContention(maxClasses);
+    RecordingStream stream = new RecordingStream();
+    stream.enable(MONITOR_ENTER).withThreshold(threshold).withoutStackTrace();
+    stream.onEvent(MONITOR_ENTER, monitorContention::onMonitorEnter);
+    stream.startAsync();
+    monitorContention.stream = stream;
+    log.info("Streaming monitor contention of at least " + threshold.toMillis() + "ms");
+    return monitorContention;
+  }
+
+  public void stop() {
+    if (stream != null) {
+      stream.close();
+    }
+  }
+
+  /** The label for a monitor class, which are limited to the first classes seen. */
+  @VisibleForTesting
+  String label(String monitorClass) {
+    if (monitorClasses.contains(monitorClass)) {
+      return monitorClass;
+    }
+    // racing additions may exceed the limit by a few
+    if (monitorClasses.size() < maxClasses) {
+      monitorClasses.add(monitorClass);
+      return monitorClass;
+    }
+    return OTHER_CLASSES;
+  }
+
+  private void onMonitorEnter(RecordedEvent event) {
+    RecordedClass monitorClass = event.getClass("monitorClass");
+    String label = label(monitorClass == null ? "unknown" : monitorClass.getName());
+    contendedSeconds.labels(label).inc(event.getDuration().toNanos() / 1e9);
+    contendedEnters.labels(label).inc();
+  }
+}
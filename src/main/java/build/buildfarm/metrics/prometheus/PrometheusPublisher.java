@@ -14,21 +14,40 @@
 
 package build.buildfarm.metrics.prometheus;
 
+import build.buildfarm.common.config.Profiling;
+import build.buildfarm.metrics.jfr.JfrRecordingHandler;
+import build.buildfarm.metrics.jfr.MonitorContention;
+import com.sun.net.httpserver.HttpServer;
 import io.prometheus.client.exporter.HTTPServer;
 import io.prometheus.client.hotspot.DefaultExports;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
 import lombok.extern.java.Log;
 
 @Log
 public class PrometheusPublisher {
   private static HTTPServer server;
+  private static MonitorContention monitorContention;
 
-  public static void startHttpServer(int port) {
+  public static void startHttpServer(int port, Profiling profiling) {
     try {
       if (port > 0) {
         DefaultExports.initialize();
-        server = new HTTPServer(port);
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(port), 3);
+        if (profiling.isRecordingEnabled()) {
+          httpServer.createContext(
+              JfrRecordingHandler.PATH,
+              new JfrRecordingHandler(profiling.getMaxRecordingSeconds()));
+        }
+        server = new HTTPServer.Builder().withHttpServer(httpServer).build();
         log.info("Started Prometheus HTTP Server on port " + port);
+        if (profiling.isMonitorContentionEnabled()) {
+          monitorContention =
+              MonitorContention.start(
+                  Duration.ofMillis(profiling.getMonitorContentionThresholdMillis()),
+                  profiling.getMonitorContentionMaxClasses());
+        }
       } else {
         log.info("Prometheus port is not configured. HTTP Server will not be started");
       }
@@ -38,6 +57,9 @@ public class PrometheusPublisher {
   }
 
   public static void stopHttpServer() {
+    if (monitorContention != null) {
+      monitorContention.stop();
+    }
     if (server != null) {
       server.stop();
     }
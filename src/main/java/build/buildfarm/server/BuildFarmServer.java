@@ -180,7 +180,7 @@ public class BuildFarmServer extends LoggingMain {
 
     healthStatusManager.setStatus(
         HealthStatusManager.SERVICE_NAME_ALL_SERVICES, ServingStatus.SERVING);
-    PrometheusPublisher.startHttpServer(configs.getPrometheusPort());
+    PrometheusPublisher.startHttpServer(configs.getPrometheusPort(), configs.getProfiling());
     healthCheckMetric.labels("start").inc();
   }
 
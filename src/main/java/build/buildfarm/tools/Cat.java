@@ -730,6 +730,7 @@ class Cat {
     for (String operationName : stage.getOperationNamesList()) {
       System.out.printf("%s operation %s\n", stage.getName(), operationName);
     }
+    WorkerProfilePrinter.printStageLatency(stage);
   }
 
   private static void printOperationTime(OperationTimesBetweenStages time) {
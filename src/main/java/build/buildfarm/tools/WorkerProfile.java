@@ -119,7 +119,7 @@ class WorkerProfile {
       try {
         if (json != null) {
           ShardWorker.Builder builder = ShardWorker.newBuilder();
-          JsonFormat.parser().merge(json, builder);
+          JsonFormat.parser().ignoringUnknownFields().merge(json, builder);
           ShardWorker worker = builder.build();
           if (worker.getExpireAt() > now) {
             workers.add(worker.getEndpoint());
@@ -19,6 +19,7 @@ import static java.lang.String.format;
 import build.buildfarm.instance.Instance;
 import build.buildfarm.v1test.OperationTimesBetweenStages;
 import build.buildfarm.v1test.StageInformation;
+import build.buildfarm.v1test.StageLatency;
 import build.buildfarm.v1test.WorkerProfileMessage;
 import com.google.protobuf.Duration;
 import com.google.protobuf.util.Durations;
@@ -68,6 +69,27 @@ class WorkerProfilePrinter {
   public static void printStageInformation(StageInformation stage) {
     System.out.printf("%s slots configured: %d%n", stage.getName(), stage.getSlotsConfigured());
     System.out.printf("%s slots used %d%n", stage.getName(), stage.getSlotsUsed());
+    printStageLatency(stage);
+  }
+
+  static void printStageLatency(StageInformation stage) {
+    if (stage.hasLatency()) {
+      printStageLatency(stage.getName() + " latency", stage.getLatency());
+    }
+    if (stage.hasStall()) {
+      printStageLatency(stage.getName() + " stall", stage.getStall());
+    }
+  }
+
+  private static void printStageLatency(String name, StageLatency latency) {
+    System.out.printf(
+        "%s (%d operations): p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+        name,
+        latency.getCount(),
+        durationToMillis(latency.getP50()),
+        durationToMillis(latency.getP90()),
+        durationToMillis(latency.getP99()),
+        durationToMillis(latency.getMax()));
   }
 
   public static void printOperationTime(OperationTimesBetweenStages time) {
@@ -0,0 +1,95 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of microsecond durations with bounded relative error, for reporting percentiles.
+ *
+ * <p>Values are counted in buckets of 16 linear sub-buckets per power of two, in the manner of an
+ * HDR histogram with a precision of one part in 16, so that any percentile is reported within about
+ * 6% of its true value, from single microseconds to days. Recording is a single atomic increment,
+ * and percentiles are computed from the counts without stopping recording, so a reading may not
+ * reflect a consistent instant.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT =
+      (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) Math.max(value, 0);
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /** The largest value counted in the bucket. */
+  static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  public void record(long usecs) {
+    counts.incrementAndGet(bucketIndex(usecs));
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Compute the durations at or below which the given percentiles of recorded durations fall.
+   *
+   * @param percentiles in ascending order, each within [0, 100]
+   * @return the duration in microseconds for each percentile, or 0 for each if none were recorded
+   */
+  public long[] percentiles(double... percentiles) {
+    long[] snapshot = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    long[] values = new long[percentiles.length];
+    if (count == 0) {
+      return values;
+    }
+    int bucket = 0;
+    long seen = snapshot[0];
+    for (int i = 0; i < percentiles.length; i++) {
+      long rank = Math.max(1, (long) Math.ceil(percentiles[i] / 100.0 * count));
+      while (seen < rank && bucket < BUCKET_COUNT - 1) {
+        seen += snapshot[++bucket];
+      }
+      values[i] = highestEquivalentValue(bucket);
+    }
+    return values;
+  }
+}
@@ -18,12 +18,21 @@ import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MICROSECONDS;
 
 import com.google.common.base.Stopwatch;
+import io.prometheus.client.Histogram;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
 import lombok.Getter;
 
 public abstract class PipelineStage implements Runnable {
+  private static final Histogram stageTime =
+      Histogram.build()
+          .name("pipeline_stage_time_ms")
+          .labelNames("stage", "type")
+          .buckets(1, 5, 10, 50, 100, 500, 1000, 5000, 10000, 60000, 300000, 1800000)
+          .help("Pipeline stage operation latency and stall time in ms.")
+          .register();
+
   @Getter protected final String name;
   protected final WorkerContext workerContext;
   protected final PipelineStage output;
@@ -35,6 +44,10 @@ public abstract class PipelineStage implements Runnable {
   private boolean tickCancelledFlag = false;
   private String operationName = null;
 
+  // operation durations since the stage was created, for percentiles in the worker profile
+  @Getter private final LatencyHistogram latency = new LatencyHistogram();
+  @Getter private final LatencyHistogram stall = new LatencyHistogram();
+
   PipelineStage(
       String name, WorkerContext workerContext, PipelineStage output, PipelineStage error) {
     this.name = name;
@@ -184,6 +197,10 @@ public abstract class PipelineStage implements Runnable {
 
   protected void complete(String operationName, long usecs, long stallUSecs, String status) {
     this.operationName = operationName;
+    latency.record(usecs);
+    stall.record(stallUSecs);
+    stageTime.labels(name, "latency").observe(usecs / 1000.0);
+    stageTime.labels(name, "stall").observe(stallUSecs / 1000.0);
     getLogger()
         .log(
             Level.FINE,
@@ -18,9 +18,15 @@ import build.buildfarm.v1test.Digest;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public interface CasWriter {
-  void write(Digest digest, Path file) throws IOException, InterruptedException;
+  /**
+   * Inserts the file under digest, which was computed from the file when it had the hashed
+   * attributes.
+   */
+  void write(Digest digest, Path file, BasicFileAttributes hashedAttributes)
+      throws IOException, InterruptedException;
 
   void insertBlob(Digest digest, ByteString content) throws IOException, InterruptedException;
 }
@@ -0,0 +1,74 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker.shard;
+
+import build.bazel.remote.execution.v2.Directory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.prometheus.client.Counter;
+import javax.annotation.Nullable;
+
+/**
+ * Parsed directories shared by all of the actions on a worker, keyed by directory hash.
+ *
+ * <p>Directories that a queued operation references without including are resolved from this
+ * cache before being fetched from the CAS, and the fetched directories are cached, so that actions
+ * with overlapping input trees fetch and parse each directory once. Directories included in a
+ * queued operation are already parsed and are not cached. The cache is bounded by the serialized
+ * size of its directories, and only exists when queued operations reference directories.
+ */
+class DirectoryCache {
+  private static final Counter hitsCounter =
+      Counter.build()
+          .name("worker_directory_cache_hits")
+          .help("Number of directories found in the worker directory cache.")
+          .register();
+  private static final Counter missesCounter =
+      Counter.build()
+          .name("worker_directory_cache_misses")
+          .help("Number of directories not found in the worker directory cache.")
+          .register();
+
+  private final Cache<String, Directory> directories;
+
+  DirectoryCache(long maxSizeBytes) {
+    directories =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .weigher((String hash, Directory directory) -> directory.getSerializedSize())
+            .build();
+  }
+
+  /** The cached directory for the hash, or null if it is not cached. */
+  @Nullable
+  Directory get(String hash) {
+    Directory directory = directories.getIfPresent(hash);
+    if (directory == null) {
+      missesCounter.inc();
+    } else {
+      hitsCounter.inc();
+    }
+    return directory;
+  }
+
+  /**
+   * The cached instance of a fetched directory, caching it if there is none. The lookup that
+   * preceded the fetch has already been counted.
+   */
+  Directory intern(String hash, Directory directory) {
+    Directory cached = directories.asMap().putIfAbsent(hash, directory);
+    return cached == null ? directory : cached;
+  }
+}
@@ -18,6 +18,7 @@ import static java.util.concurrent.TimeUnit.DAYS;
 
 import build.bazel.remote.execution.v2.Compressor;
 import build.bazel.remote.execution.v2.RequestMetadata;
+import build.buildfarm.cas.cfc.CASFileCache;
 import build.buildfarm.common.Write;
 import build.buildfarm.common.function.IOSupplier;
 import build.buildfarm.v1test.Digest;
@@ -30,17 +31,29 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.UUID;
 
 class LocalCasWriter implements CasWriter {
   private ExecFileSystem execFileSystem;
+  private final boolean linkFiles;
 
-  public LocalCasWriter(ExecFileSystem execFileSystem) {
+  public LocalCasWriter(ExecFileSystem execFileSystem, boolean linkFiles) {
     this.execFileSystem = execFileSystem;
+    this.linkFiles = linkFiles;
   }
 
   @Override
-  public void write(Digest digest, Path file) throws IOException, InterruptedException {
+  public void write(Digest digest, Path file, BasicFileAttributes hashedAttributes)
+      throws IOException, InterruptedException {
+    // the digest was computed from the file, so linking it avoids reading it again, unless the
+    // file has changed since, when the write below hashes it again and rejects the mismatch
+    if (linkFiles
+        && digest.getSize() > 0
+        && execFileSystem.getStorage() instanceof CASFileCache fileCache
+        && fileCache.putLink(digest, file, hashedAttributes)) {
+      return;
+    }
     insertStream(digest, () -> Files.newInputStream(file));
   }
 
@@ -40,6 +40,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.Set;
@@ -62,7 +63,8 @@ public class RemoteCasWriter implements CasWriter {
   }
 
   @Override
-  public void write(Digest digest, Path file) throws IOException, InterruptedException {
+  public void write(Digest digest, Path file, BasicFileAttributes hashedAttributes)
+      throws IOException, InterruptedException {
     if (digest.getSize() > 0) {
       insertFileToCasMember(digest, file);
     }
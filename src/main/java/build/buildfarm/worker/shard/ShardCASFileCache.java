@@ -38,6 +38,7 @@ class ShardCASFileCache extends CASFileCache {
       long maxEntrySizeInBytes,
       int maxBucketLevels,
       boolean storeFileDirsIndexInMemory,
+      boolean compactFileDirsIndex,
       boolean execRootFallback,
       ExecutorService expireService,
       Executor accessRecorder,
@@ -52,6 +53,7 @@ class ShardCASFileCache extends CASFileCache {
         maxEntrySizeInBytes,
         maxBucketLevels,
         storeFileDirsIndexInMemory,
+        compactFileDirsIndex,
         execRootFallback,
         expireService,
         accessRecorder,
@@ -18,6 +18,7 @@ import static build.buildfarm.cas.ContentAddressableStorage.UNLIMITED_ENTRY_SIZE
 import static build.buildfarm.common.Actions.checkPreconditionFailure;
 import static build.buildfarm.common.Errors.VIOLATION_TYPE_INVALID;
 import static build.buildfarm.common.Errors.VIOLATION_TYPE_MISSING;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.DAYS;
 
@@ -27,9 +28,11 @@ import build.bazel.remote.execution.v2.Command;
 import build.bazel.remote.execution.v2.Compressor;
 import build.bazel.remote.execution.v2.DigestFunction;
 import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
 import build.bazel.remote.execution.v2.ExecutionStage;
 import build.bazel.remote.execution.v2.Platform;
 import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.BuildfarmExecutors;
 import build.buildfarm.common.Claim;
 import build.buildfarm.common.CommandUtils;
 import build.buildfarm.common.DigestPath;
@@ -55,6 +58,8 @@ import build.buildfarm.v1test.Digest;
 import build.buildfarm.v1test.QueueEntry;
 import build.buildfarm.v1test.QueuedOperation;
 import build.buildfarm.worker.DequeueMatchEvaluator;
+import build.buildfarm.worker.ExecDirException;
+import build.buildfarm.worker.ExecDirException.ViolationException;
 import build.buildfarm.worker.ExecFileSystem;
 import build.buildfarm.worker.ExecutionPolicies;
 import build.buildfarm.worker.MatchListener;
@@ -74,6 +79,9 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.longrunning.Operation;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Duration;
@@ -89,11 +97,16 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.UserPrincipal;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
@@ -111,6 +124,12 @@ class ShardWorkerContext implements WorkerContext {
   private static final Counter operationPollerCounter =
       Counter.build().name("operation_poller").help("Number of operations polled.").register();
 
+  private static final ListeningExecutorService outputHashingService =
+      BuildfarmExecutors.getOutputHashingPool();
+
+  private static final ListeningExecutorService directoryFetchService =
+      listeningDecorator(BuildfarmExecutors.getFetchServicePool());
+
   private static BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
 
   private final String name;
@@ -141,6 +160,12 @@ class ShardWorkerContext implements WorkerContext {
   private final boolean errorOperationOutputSizeExceeded;
   private final boolean provideOwnedClaim;
 
+  // caches only the directories that referenceQueuedDirectories omits from queued operations
+  private final @Nullable DirectoryCache directoryCache =
+      configs.getServer().isReferenceQueuedDirectories()
+          ? new DirectoryCache(configs.getWorker().getDirectoryCacheMaxSizeBytes())
+          : null;
+
   static SetMultimap<String, String> getMatchProvisions(
       Iterable<ExecutionPolicy> policies, String name, int executeStageWidth) {
     ImmutableSetMultimap.Builder<String, String> provisions = ImmutableSetMultimap.builder();
@@ -287,7 +312,113 @@ class ShardWorkerContext implements WorkerContext {
   public QueuedOperation getQueuedOperation(QueueEntry queueEntry)
       throws IOException, InterruptedException {
     ByteString queuedOperationBlob = getBlob(queueEntry.getQueuedOperationDigest());
-    return ProtoUtils.parseQueuedOperation(queuedOperationBlob, queueEntry);
+    QueuedOperation queuedOperation =
+        ProtoUtils.parseQueuedOperation(queuedOperationBlob, queueEntry);
+    if (queuedOperation == null) {
+      return null;
+    }
+    return resolveDirectories(
+        queuedOperation,
+        queueEntry.getExecuteEntry().getActionDigest().getDigestFunction());
+  }
+
+  // resolves the directories that the queued operation references without including through the
+  // directory cache, fetching those that are not cached
+  private QueuedOperation resolveDirectories(
+      QueuedOperation queuedOperation, DigestFunction.Value digestFunction)
+      throws IOException, InterruptedException {
+    build.buildfarm.v1test.Tree tree = queuedOperation.getTree();
+    Map<String, Directory> resolved = new HashMap<>();
+    Set<String> visited = new HashSet<>();
+    List<build.bazel.remote.execution.v2.Digest> level =
+        ImmutableList.of(DigestUtil.toDigest(tree.getRootDigest()));
+    // one round of fetches for each level of the tree
+    while (!level.isEmpty()) {
+      List<Directory> directories = new ArrayList<>();
+      List<build.bazel.remote.execution.v2.Digest> missing = new ArrayList<>();
+      for (build.bazel.remote.execution.v2.Digest digest : level) {
+        if (digest.getSizeBytes() == 0 || !visited.add(digest.getHash())) {
+          continue;
+        }
+        Directory directory = tree.getDirectoriesMap().get(digest.getHash());
+        if (directory == null) {
+          directory = directoryCache == null ? null : directoryCache.get(digest.getHash());
+          if (directory == null) {
+            missing.add(digest);
+            continue;
+          }
+          resolved.put(digest.getHash(), directory);
+        }
+        directories.add(directory);
+      }
+      List<Directory> fetched = fetchDirectories(missing, digestFunction);
+      for (int i = 0; i < missing.size(); i++) {
+        String hash = missing.get(i).getHash();
+        Directory directory =
+            directoryCache == null ? fetched.get(i) : directoryCache.intern(hash, fetched.get(i));
+        resolved.put(hash, directory);
+        directories.add(directory);
+      }
+      List<build.bazel.remote.execution.v2.Digest> nextLevel = new ArrayList<>();
+      for (Directory directory : directories) {
+        for (DirectoryNode child : directory.getDirectoriesList()) {
+          nextLevel.add(child.getDigest());
+        }
+      }
+      level = nextLevel;
+    }
+    if (resolved.isEmpty()) {
+      return queuedOperation;
+    }
+    return queuedOperation.toBuilder()
+        .setTree(tree.toBuilder().putAllDirectories(resolved))
+        .build();
+  }
+
+  // the worker CAS has no batch read that spans remote holders, so the directories of a level
+  // are fetched concurrently
+  private List<Directory> fetchDirectories(
+      List<build.bazel.remote.execution.v2.Digest> digests, DigestFunction.Value digestFunction)
+      throws IOException, InterruptedException {
+    if (digests.size() <= 1) {
+      ImmutableList.Builder<Directory> directories = ImmutableList.builder();
+      for (build.bazel.remote.execution.v2.Digest digest : digests) {
+        directories.add(fetchDirectory(DigestUtil.fromDigest(digest, digestFunction)));
+      }
+      return directories.build();
+    }
+    List<ListenableFuture<Directory>> futures = new ArrayList<>(digests.size());
+    for (build.bazel.remote.execution.v2.Digest digest : digests) {
+      Digest directoryDigest = DigestUtil.fromDigest(digest, digestFunction);
+      futures.add(directoryFetchService.submit(() -> fetchDirectory(directoryDigest)));
+    }
+    try {
+      return Futures.allAsList(futures).get();
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfInstanceOf(e.getCause(), InterruptedException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    } finally {
+      for (ListenableFuture<Directory> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private Directory fetchDirectory(Digest digest) throws IOException, InterruptedException {
+    ByteString directoryBlob = getBlob(digest);
+    if (directoryBlob == null) {
+      throw new ExecDirException(
+          Path.of(DigestUtil.toString(digest)),
+          ImmutableList.of(
+              new ViolationException(
+                  digest,
+                  /* path= */ null,
+                  /* isExecutable= */ false,
+                  new NoSuchFileException(DigestUtil.toString(digest)))));
+    }
+    return Directory.parseFrom(directoryBlob);
   }
 
   // FIXME make OwnedClaim with owner
@@ -525,8 +656,9 @@ class ShardWorkerContext implements WorkerContext {
     }
   }
 
-  private void insertFile(Digest digest, Path file) throws IOException, InterruptedException {
-    writer.write(digest, file);
+  private void insertFile(HashedFile hashedFile, Path file)
+      throws IOException, InterruptedException {
+    writer.write(hashedFile.digest(), file, hashedFile.attributes());
   }
 
   private void updateActionResultStdOutputs(
@@ -566,7 +698,8 @@ class ShardWorkerContext implements WorkerContext {
       Path outputPath,
       Path workingDirectory,
       String entrySizeViolationType,
-      PreconditionFailure.Builder preconditionFailure)
+      PreconditionFailure.Builder preconditionFailure,
+      @Nullable ListenableFuture<HashedFile> digestFuture)
       throws IOException, InterruptedException {
     String outputFile = toREOutputPath(workingDirectory.relativize(outputPath).toString());
 
@@ -608,12 +741,16 @@ class ShardWorkerContext implements WorkerContext {
     // want to decrement input references *before* this to ensure that we cannot
     // cause an internal deadlock
 
-    Digest digest;
+    HashedFile hashedFile;
     try {
-      digest = digestUtil.compute(outputPath);
+      hashedFile =
+          digestFuture == null
+              ? HashedFile.hash(digestUtil, outputPath)
+              : getOutputDigest(digestFuture);
     } catch (NoSuchFileException e) {
       return;
     }
+    Digest digest = hashedFile.digest();
 
     resultBuilder
         .addOutputFilesBuilder()
@@ -622,7 +759,7 @@ class ShardWorkerContext implements WorkerContext {
         .setIsExecutable(Files.isExecutable(outputPath));
 
     try {
-      insertFile(digest, outputPath);
+      insertFile(hashedFile, outputPath);
     } catch (EntryLimitException e) {
       preconditionFailure
           .addViolationsBuilder()
@@ -633,6 +770,45 @@ class ShardWorkerContext implements WorkerContext {
     }
   }
 
+  /**
+   * The digest of an output file, with the attributes it had when hashing began, so that an
+   * insertion which trusts the digest can detect a file changed since.
+   */
+  private record HashedFile(Digest digest, BasicFileAttributes attributes) {
+    static HashedFile hash(DigestUtil digestUtil, Path file) throws IOException {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return new HashedFile(digestUtil.compute(file), attributes);
+    }
+  }
+
+  private static HashedFile getOutputDigest(ListenableFuture<HashedFile> digestFuture)
+      throws IOException, InterruptedException {
+    try {
+      return digestFuture.get();
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Starts hashing the regular output files concurrently when there are several of them, since the
+   * largest outputs otherwise dominate the time to report a result.
+   */
+  private static Map<Path, ListenableFuture<HashedFile>> computeOutputFileDigests(
+      DigestUtil digestUtil, List<Path> outputPaths) {
+    List<Path> outputFiles = outputPaths.stream().filter(Files::isRegularFile).toList();
+    Map<Path, ListenableFuture<HashedFile>> digestFutures = new HashMap<>();
+    if (outputFiles.size() > 1) {
+      for (Path outputFile : outputFiles) {
+        digestFutures.put(
+            outputFile, outputHashingService.submit(() -> HashedFile.hash(digestUtil, outputFile)));
+      }
+    }
+    return digestFutures;
+  }
+
   private void uploadOutputDirectory(
       ActionResult.Builder resultBuilder,
       DigestUtil digestUtil,
@@ -699,23 +875,33 @@ class ShardWorkerContext implements WorkerContext {
     Path workingDirectory = actionRoot.resolve(command.getWorkingDirectory());
     List<Path> outputPaths = CommandUtils.getResolvedOutputPaths(command, workingDirectory);
     DigestUtil digestUtil = new DigestUtil(HashFunction.get(actionDigest.getDigestFunction()));
-    for (Path outputPath : outputPaths) {
-      if (Files.isDirectory(outputPath)) {
-        uploadOutputDirectory(
-            resultBuilder,
-            digestUtil,
-            outputPath,
-            workingDirectory,
-            entrySizeViolationType,
-            preconditionFailure);
-      } else {
-        uploadOutputFile(
-            resultBuilder,
-            digestUtil,
-            outputPath,
-            workingDirectory,
-            entrySizeViolationType,
-            preconditionFailure);
+    Map<Path, ListenableFuture<HashedFile>> outputFileDigests =
+        computeOutputFileDigests(digestUtil, outputPaths);
+    try {
+      for (Path outputPath : outputPaths) {
+        if (Files.isDirectory(outputPath)) {
+          uploadOutputDirectory(
+              resultBuilder,
+              digestUtil,
+              outputPath,
+              workingDirectory,
+              entrySizeViolationType,
+              preconditionFailure);
+        } else {
+          uploadOutputFile(
+              resultBuilder,
+              digestUtil,
+              outputPath,
+              workingDirectory,
+              entrySizeViolationType,
+              preconditionFailure,
+              outputFileDigests.get(outputPath));
+        }
+      }
+    } finally {
+      // no-op for completed hashes, stops the rest if an upload failed
+      for (ListenableFuture<HashedFile> digestFuture : outputFileDigests.values()) {
+        digestFuture.cancel(true);
       }
     }
     checkPreconditionFailure(actionDigest, preconditionFailure.build());
@@ -433,6 +433,7 @@ public final class Worker extends LoggingMain {
             // delegate level
             cas.getHexBucketLevels(),
             cas.isFileDirectoriesIndexInMemory(),
+            cas.isFileDirectoriesIndexCompact(),
             cas.isExecRootCopyFallback(),
             removeDirectoryService,
             accessRecorder,
@@ -537,11 +538,23 @@ public final class Worker extends LoggingMain {
     throw Status.UNAVAILABLE.withDescription("backplane was stopped").asRuntimeException();
   }
 
+  private long getStorageCapacity() {
+    // the size the cache settled on, which is derived from its volume when unconfigured
+    if (execFileSystem.getStorage() instanceof CASFileCache fileCache) {
+      return fileCache.maxSize();
+    }
+    return configs.getWorker().getStorages().getFirst().getMaxSizeBytes();
+  }
+
   private void startFailsafeRegistration() {
     String endpoint = configs.getWorker().getPublicName();
     ShardWorker.Builder worker = ShardWorker.newBuilder().setEndpoint(endpoint);
     worker.setWorkerType(configs.getWorker().getWorkerType());
     worker.setFirstRegisteredAt(loadWorkerStartTimeInMillis());
+    // only advertised for placement, keeping registrations readable by servers that predate it
+    if (configs.getServer().isRendezvousBlobPlacement()) {
+      worker.setCapacity(getStorageCapacity());
+    }
     int registrationIntervalMillis = 10000;
     int registrationOffsetMillis = registrationIntervalMillis * 3;
     new Thread(
@@ -699,7 +712,7 @@ public final class Worker extends LoggingMain {
       Retrier retrier = new Retrier(Backoff.sequential(5), Retrier.DEFAULT_IS_RETRIABLE);
       writer = new RemoteCasWriter(backplane, workerStubs, retrier);
     } else {
-      writer = new LocalCasWriter(execFileSystem);
+      writer = new LocalCasWriter(execFileSystem, configs.getWorker().isLinkOutputFiles());
     }
 
     ShardWorkerContext context =
@@ -741,7 +754,7 @@ public final class Worker extends LoggingMain {
     server.start();
     healthStatusManager.setStatus(
         HealthStatusManager.SERVICE_NAME_ALL_SERVICES, ServingStatus.SERVING);
-    PrometheusPublisher.startHttpServer(configs.getPrometheusPort());
+    PrometheusPublisher.startHttpServer(configs.getPrometheusPort(), configs.getProfiling());
     startFailsafeRegistration();
 
     pipeline.start();
@@ -17,15 +17,18 @@ package build.buildfarm.worker.shard;
 import build.buildfarm.backplane.Backplane;
 import build.buildfarm.cas.cfc.CASFileCache;
 import build.buildfarm.v1test.StageInformation;
+import build.buildfarm.v1test.StageLatency;
 import build.buildfarm.v1test.WorkerListMessage;
 import build.buildfarm.v1test.WorkerListRequest;
 import build.buildfarm.v1test.WorkerProfileGrpc;
 import build.buildfarm.v1test.WorkerProfileMessage;
 import build.buildfarm.v1test.WorkerProfileRequest;
+import build.buildfarm.worker.LatencyHistogram;
 import build.buildfarm.worker.PipelineStage;
 import build.buildfarm.worker.PutOperationStage;
 import build.buildfarm.worker.PutOperationStage.OperationStageDurations;
 import build.buildfarm.worker.SuperscalarPipelineStage;
+import com.google.protobuf.util.Durations;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import javax.annotation.Nullable;
@@ -57,9 +60,25 @@ public class WorkerProfileService extends WorkerProfileGrpc.WorkerProfileImplBas
     this.backplane = backplane;
   }
 
-  private StageInformation unaryStageInformation(String name, @Nullable String operationName) {
+  private static StageLatency stageLatency(LatencyHistogram histogram) {
+    long[] usecs = histogram.percentiles(50, 90, 99, 100);
+    return StageLatency.newBuilder()
+        .setCount(histogram.getCount())
+        .setP50(Durations.fromMicros(usecs[0]))
+        .setP90(Durations.fromMicros(usecs[1]))
+        .setP99(Durations.fromMicros(usecs[2]))
+        .setMax(Durations.fromMicros(usecs[3]))
+        .build();
+  }
+
+  private StageInformation unaryStageInformation(PipelineStage stage) {
     StageInformation.Builder builder =
-        StageInformation.newBuilder().setName(name).setSlotsConfigured(1);
+        StageInformation.newBuilder()
+            .setName(stage.getName())
+            .setSlotsConfigured(1)
+            .setLatency(stageLatency(stage.getLatency()))
+            .setStall(stageLatency(stage.getStall()));
+    String operationName = stage.getOperationName();
     if (operationName != null) {
       builder.setSlotsUsed(1).addOperationNames(operationName);
     }
@@ -72,6 +91,8 @@ public class WorkerProfileService extends WorkerProfileGrpc.WorkerProfileImplBas
         .setSlotsConfigured(stage.getWidth())
         .setSlotsUsed(stage.getSlotUsage())
         .addAllOperationNames(stage.getOperationNames())
+        .setLatency(stageLatency(stage.getLatency()))
+        .setStall(stageLatency(stage.getStall()))
         .build();
   }
 
@@ -100,12 +121,11 @@ public class WorkerProfileService extends WorkerProfileGrpc.WorkerProfileImplBas
     // produce: slots that are not consistent with operations, operations
     // in multiple stages even in reverse due to claim progress
     // in short: this is for monitoring, not for guaranteed consistency checks
-    String matchOperation = matchStage.getOperationName();
     replyBuilder
         .addStages(superscalarStageInformation(reportResultStage))
         .addStages(superscalarStageInformation(executeActionStage))
         .addStages(superscalarStageInformation(inputFetchStage))
-        .addStages(unaryStageInformation(matchStage.getName(), matchOperation));
+        .addStages(unaryStageInformation(matchStage));
 
     // get average time costs on each stage
     OperationStageDurations[] durations = completeStage.getAverageTimeCostPerStage();
@@ -57,6 +57,28 @@ Java_build_buildfarm_common_blake3_Blake3MessageDigest_blake3_1hasher_1update(
   }
 }
 
+extern "C" JNIEXPORT void JNICALL
+Java_build_buildfarm_common_blake3_Blake3MessageDigest_blake3_1hasher_1update_1direct(
+    JNIEnv *env, jobject obj, jbyteArray jhasher, jobject input, jint offset,
+    jint input_len) {
+  // resolved before entering the critical region, where no JNI calls may be
+  // made
+  jbyte *input_addr = (jbyte *)env->GetDirectBufferAddress(input);
+  if (input_addr == nullptr) {
+    // the caller would otherwise advance past input that was never hashed
+    jclass exception = env->FindClass("java/lang/IllegalArgumentException");
+    if (exception != nullptr) {
+      env->ThrowNew(exception, "input is not a direct buffer");
+    }
+    return;
+  }
+  blake3_hasher *hasher = (blake3_hasher *)get_byte_array(env, jhasher);
+  if (hasher) {
+    blake3_hasher_update(hasher, input_addr + offset, input_len);
+    release_byte_array(env, jhasher, (jbyte *)hasher);
+  }
+}
+
 extern "C" JNIEXPORT void JNICALL
 Java_build_buildfarm_common_blake3_Blake3MessageDigest_blake3_1hasher_1finalize(
     JNIEnv *env, jobject obj, jbyteArray jhasher, jbyteArray out,
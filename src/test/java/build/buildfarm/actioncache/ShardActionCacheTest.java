@@ -0,0 +1,162 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.actioncache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import build.bazel.remote.execution.v2.ActionResult;
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.ActionKey;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public class ShardActionCacheTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private final List<Runnable> loads = new ArrayList<>();
+  private Backplane backplane;
+  private ShardActionCache actionCache;
+
+  @Before
+  public void setUp() {
+    backplane = mock(Backplane.class);
+    // loads run only when the test drains them, so that misses overlap
+    ListeningExecutorService service = mock(ListeningExecutorService.class);
+    doAnswer(invocation -> loads.add(invocation.getArgument(0))).when(service).execute(any());
+    actionCache = new ShardActionCache(/* maxLocalCacheSize= */ 1000, backplane, service);
+  }
+
+  private void runLoads() {
+    for (Runnable load : loads) {
+      load.run();
+    }
+    loads.clear();
+  }
+
+  private static ActionKey actionKey(int i) {
+    return DigestUtil.asActionKey(DIGEST_UTIL.compute(ByteString.copyFromUtf8("action" + i)));
+  }
+
+  private static ActionResult actionResult(ActionKey actionKey) {
+    return ActionResult.newBuilder()
+        .setStdoutRaw(ByteString.copyFromUtf8(actionKey.toString()))
+        .build();
+  }
+
+  private void provideActionResults() throws IOException {
+    when(backplane.getActionResults(any()))
+        .thenAnswer(
+            invocation -> {
+              ImmutableMap.Builder<ActionKey, ActionResult> actionResults = ImmutableMap.builder();
+              for (ActionKey actionKey : invocation.<Iterable<ActionKey>>getArgument(0)) {
+                actionResults.put(actionKey, actionResult(actionKey));
+              }
+              return actionResults.build();
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void concurrentMissesShareOneLoad() throws Exception {
+    provideActionResults();
+    ActionKey first = actionKey(1);
+    ActionKey second = actionKey(2);
+
+    ListenableFuture<ActionResult> firstResult = actionCache.get(first);
+    ListenableFuture<ActionResult> secondResult = actionCache.get(second);
+    runLoads();
+
+    assertThat(firstResult.get()).isEqualTo(actionResult(first));
+    assertThat(secondResult.get()).isEqualTo(actionResult(second));
+    ArgumentCaptor<Iterable<ActionKey>> keys = ArgumentCaptor.forClass(Iterable.class);
+    verify(backplane, times(1)).getActionResults(keys.capture());
+    assertThat(keys.getValue()).containsExactly(first, second);
+    verify(backplane, never()).getActionResult(any(ActionKey.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void largeLoadsAreSplitIntoBatches() throws Exception {
+    provideActionResults();
+    List<ListenableFuture<ActionResult>> results = new ArrayList<>();
+    for (int i = 0; i < 150; i++) {
+      results.add(actionCache.get(actionKey(i)));
+    }
+    runLoads();
+
+    for (int i = 0; i < 150; i++) {
+      assertThat(results.get(i).get()).isEqualTo(actionResult(actionKey(i)));
+    }
+    ArgumentCaptor<Iterable<ActionKey>> keys = ArgumentCaptor.forClass(Iterable.class);
+    verify(backplane, times(2)).getActionResults(keys.capture());
+    assertThat(Iterables.size(keys.getAllValues().get(0))).isEqualTo(100);
+    assertThat(Iterables.size(keys.getAllValues().get(1))).isEqualTo(50);
+  }
+
+  @Test
+  public void missingActionResultsAreNull() throws Exception {
+    ActionKey present = actionKey(1);
+    ActionKey missing = actionKey(2);
+    when(backplane.getActionResults(any()))
+        .thenReturn(ImmutableMap.of(present, actionResult(present)));
+
+    ListenableFuture<ActionResult> presentResult = actionCache.get(present);
+    ListenableFuture<ActionResult> missingResult = actionCache.get(missing);
+    runLoads();
+
+    assertThat(presentResult.get()).isEqualTo(actionResult(present));
+    assertThat(missingResult.get()).isNull();
+  }
+
+  @Test
+  public void loadFailureFailsEveryWaitingLookup() throws Exception {
+    when(backplane.getActionResults(any()))
+        .thenThrow(new IOException(Status.UNAVAILABLE.asRuntimeException()));
+
+    List<ListenableFuture<ActionResult>> results =
+        ImmutableList.of(actionCache.get(actionKey(1)), actionCache.get(actionKey(2)));
+    runLoads();
+
+    for (ListenableFuture<ActionResult> result : results) {
+      ExecutionException e = assertThrows(ExecutionException.class, result::get);
+      assertThat(Status.fromThrowable(e.getCause()).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+    }
+  }
+}
@@ -31,6 +31,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -70,6 +71,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import com.google.protobuf.ByteString;
 import io.grpc.Deadline;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -79,8 +81,15 @@ import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CyclicBarrier;
@@ -97,6 +106,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.stubbing.Answer;
@@ -204,6 +214,113 @@ class CASFileCacheTest {
     assertThat(Files.exists(path)).isTrue();
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void getLimitsReadToCount() throws IOException, InterruptedException {
+    ByteString blob = ByteString.copyFromUtf8("Hello, World");
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    blobs.put(blobDigest, blob);
+    fileCache.put(blobDigest, false);
+    ServerCallStreamObserver<ByteString> blobObserver = mock(ServerCallStreamObserver.class);
+    when(blobObserver.isReady()).thenReturn(true);
+    ByteString.Output received = ByteString.newOutput();
+    doAnswer(
+            invocation -> {
+              ((ByteString) invocation.getArgument(0)).writeTo(received);
+              return null;
+            })
+        .when(blobObserver)
+        .onNext(any(ByteString.class));
+
+    fileCache.get(
+        Compressor.Value.IDENTITY,
+        blobDigest,
+        /* offset= */ 7,
+        /* count= */ 3,
+        blobObserver,
+        RequestMetadata.getDefaultInstance());
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+    verify(blobObserver, times(1)).setOnReadyHandler(onReadyHandler.capture());
+    onReadyHandler.getValue().run();
+
+    assertThat(received.toByteString()).isEqualTo(blob.substring(7, 10));
+    verify(blobObserver, times(1)).onCompleted();
+  }
+
+  @Test
+  public void putLinkInsertsSingleLinkedFile() throws IOException, InterruptedException {
+    ByteString blob = ByteString.copyFromUtf8("Hello, World");
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    String key = CASFileCache.getKey(blobDigest, /* isExecutable= */ false);
+    Path output = root.resolveSibling("output");
+    Files.write(output, blob.toByteArray());
+    BasicFileAttributes attributes = Files.readAttributes(output, BasicFileAttributes.class);
+    // link counts are only available with the unix attribute view
+    boolean linkable = Files.getFileStore(root).supportsFileAttributeView("unix");
+    try {
+      assertThat(fileCache.putLink(blobDigest, output, attributes)).isEqualTo(linkable);
+      assertThat(storage.containsKey(key)).isEqualTo(linkable);
+      if (linkable) {
+        assertThat(Files.isSameFile(fileCache.getPath(key), output)).isTrue();
+        assertThat(fileCache.size()).isEqualTo(blobDigest.getSize());
+        verify(onPut, times(1)).accept(blobDigest);
+      }
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void putLinkDeclinesMultiplyLinkedFile() throws IOException, InterruptedException {
+    ByteString blob = ByteString.copyFromUtf8("Hello, World");
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    Path output = root.resolveSibling("output");
+    Path input = root.resolveSibling("input");
+    Files.write(output, blob.toByteArray());
+    Files.createLink(input, output);
+    BasicFileAttributes attributes = Files.readAttributes(output, BasicFileAttributes.class);
+    try {
+      assertThat(fileCache.putLink(blobDigest, output, attributes)).isFalse();
+      assertThat(storage.containsKey(CASFileCache.getKey(blobDigest, /* isExecutable= */ false)))
+          .isFalse();
+      assertThat(fileCache.size()).isEqualTo(0);
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void putLinkDeclinesFileChangedSinceHashing() throws IOException, InterruptedException {
+    ByteString blob = ByteString.copyFromUtf8("Hello, World");
+    Digest blobDigest = DIGEST_UTIL.compute(blob);
+    Path output = root.resolveSibling("output");
+    Files.write(output, blob.toByteArray());
+    BasicFileAttributes attributes = Files.readAttributes(output, BasicFileAttributes.class);
+    // rewritten in place with content of the same size by a lingering writer
+    Files.write(output, ByteString.copyFromUtf8("Hello, Earth").toByteArray());
+    Files.setLastModifiedTime(
+        output, FileTime.fromMillis(attributes.lastModifiedTime().toMillis() + 1000));
+    boolean posix = Files.getFileStore(root).supportsFileAttributeView("posix");
+    Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-xr-x");
+    if (posix) {
+      Files.setPosixFilePermissions(output, permissions);
+    }
+    try {
+      assertThat(fileCache.putLink(blobDigest, output, attributes)).isFalse();
+      assertThat(storage.containsKey(CASFileCache.getKey(blobDigest, /* isExecutable= */ false)))
+          .isFalse();
+      assertThat(fileCache.size()).isEqualTo(0);
+      verify(onPut, never()).accept(blobDigest);
+      // the output shared its inode with the abandoned link
+      if (posix) {
+        assertThat(Files.getPosixFilePermissions(output)).isEqualTo(permissions);
+      }
+    } finally {
+      Files.delete(output);
+    }
+  }
+
   @Test(expected = IllegalStateException.class)
   public void putEmptyFileThrowsIllegalStateException() throws IOException, InterruptedException {
     InputStreamFactory mockInputStreamFactory = mock(InputStreamFactory.class);
@@ -262,6 +379,132 @@ class CASFileCacheTest {
     assertThat(Files.isDirectory(dirPath.resolve("subdir"))).isTrue();
   }
 
+  // a directory containing subdir/file, with its generation recorded against known directory
+  // modification times, so that any later change to them is observable
+  private Digest putNestedDirectory(
+      Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex)
+      throws IOException, InterruptedException {
+    ByteString file = ByteString.copyFromUtf8("Peanut Butter");
+    Digest fileDigest = DIGEST_UTIL.compute(file);
+    blobs.put(fileDigest, file);
+    Directory subDirectory =
+        Directory.newBuilder()
+            .addFiles(
+                FileNode.newBuilder().setName("file").setDigest(DigestUtil.toDigest(fileDigest)))
+            .build();
+    Digest subdirDigest = DIGEST_UTIL.compute(subDirectory);
+    Directory directory =
+        Directory.newBuilder()
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("subdir")
+                    .setDigest(DigestUtil.toDigest(subdirDigest)))
+            .build();
+    Digest dirDigest = DIGEST_UTIL.compute(directory);
+    directoriesIndex.put(DigestUtil.toDigest(dirDigest), directory);
+    directoriesIndex.put(DigestUtil.toDigest(subdirDigest), subDirectory);
+    Path dirPath =
+        getInterruptiblyOrIOException(
+                fileCache.putDirectory(dirDigest, directoriesIndex, putService))
+            .path();
+    Files.setLastModifiedTime(dirPath, FileTime.fromMillis(0));
+    Files.setLastModifiedTime(dirPath.resolve("subdir"), FileTime.fromMillis(0));
+    CASFileCache.DirectoryEntry entry = fileCache.getDirectoryEntry(dirDigest);
+    entry.generation = null;
+    entry.recordGeneration(dirPath, directoriesIndex);
+    return dirDigest;
+  }
+
+  private CASFileCache.PathResult reuseDirectory(
+      Digest dirDigest, Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex)
+      throws IOException, InterruptedException {
+    fileCache.getDirectoryEntry(dirDigest).existsDeadline = Deadline.after(0, SECONDS);
+    return getInterruptiblyOrIOException(
+        fileCache.putDirectory(dirDigest, directoriesIndex, putService));
+  }
+
+  // removes the nested file, preserving the modification time of its directory
+  private void removeNestedFileUnnoticed(Path dirPath) throws IOException {
+    Path subdirPath = dirPath.resolve("subdir");
+    FileStore fileStore = Files.getFileStore(root);
+    Directories.enableAllWriteAccess(subdirPath, fileStore);
+    FileTime modified = Files.getLastModifiedTime(subdirPath);
+    Files.delete(subdirPath.resolve("file"));
+    Files.setLastModifiedTime(subdirPath, modified);
+    Directories.disableAllWriteAccess(subdirPath, fileStore);
+  }
+
+  @Test
+  public void reusedDirectoryIsValidatedByGeneration() throws IOException, InterruptedException {
+    Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex = new HashMap<>();
+    Digest dirDigest = putNestedDirectory(directoriesIndex);
+    Path dirPath = fileCache.getDirectoryPath(dirDigest);
+    assertThat(fileCache.getDirectoryEntry(dirDigest).generation).isNotNull();
+
+    // the files are not walked, a removal that preserves every directory's modification time
+    // goes unnoticed
+    removeNestedFileUnnoticed(dirPath);
+    CASFileCache.PathResult result = reuseDirectory(dirDigest, directoriesIndex);
+
+    assertThat(result.isMissed()).isFalse();
+    assertThat(Files.exists(dirPath.resolve("subdir").resolve("file"))).isFalse();
+  }
+
+  @Test
+  public void reusedDirectoryDetectsNestedRemoval() throws IOException, InterruptedException {
+    Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex = new HashMap<>();
+    Digest dirDigest = putNestedDirectory(directoriesIndex);
+    Path dirPath = fileCache.getDirectoryPath(dirDigest);
+    Path subdirPath = dirPath.resolve("subdir");
+    Directories.enableAllWriteAccess(subdirPath, Files.getFileStore(root));
+    Files.delete(subdirPath.resolve("file"));
+
+    CASFileCache.PathResult result = reuseDirectory(dirDigest, directoriesIndex);
+
+    assertThat(result.isMissed()).isTrue();
+    assertThat(Files.exists(subdirPath.resolve("file"))).isTrue();
+  }
+
+  @Test
+  public void reusedDirectoryDetectsNestedReplacement() throws IOException, InterruptedException {
+    Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex = new HashMap<>();
+    Digest dirDigest = putNestedDirectory(directoriesIndex);
+    Path dirPath = fileCache.getDirectoryPath(dirDigest);
+    Path subdirPath = dirPath.resolve("subdir");
+    Directories.enableAllWriteAccess(subdirPath, Files.getFileStore(root));
+    Path replacement = subdirPath.resolve("replacement");
+    Files.write(replacement, ByteString.copyFromUtf8("Jelly").toByteArray());
+    Files.move(replacement, subdirPath.resolve("file"), StandardCopyOption.REPLACE_EXISTING);
+
+    CASFileCache.PathResult result = reuseDirectory(dirDigest, directoriesIndex);
+
+    assertThat(result.isMissed()).isTrue();
+    assertThat(Files.readAllBytes(subdirPath.resolve("file")))
+        .isEqualTo(ByteString.copyFromUtf8("Peanut Butter").toByteArray());
+  }
+
+  @Test
+  public void loadedDirectoryIsCheckedInFullOnce() throws IOException, InterruptedException {
+    Map<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex = new HashMap<>();
+    Digest dirDigest = putNestedDirectory(directoriesIndex);
+    Path dirPath = fileCache.getDirectoryPath(dirDigest);
+    // trees loaded at startup have no generation
+    fileCache.getDirectoryEntry(dirDigest).generation = null;
+
+    CASFileCache.PathResult result = reuseDirectory(dirDigest, directoriesIndex);
+
+    assertThat(result.isMissed()).isFalse();
+    assertThat(fileCache.getDirectoryEntry(dirDigest).generation).isNotNull();
+
+    // the full check walks the files, and notices a removal that the generation would not
+    fileCache.getDirectoryEntry(dirDigest).generation = null;
+    removeNestedFileUnnoticed(dirPath);
+    result = reuseDirectory(dirDigest, directoriesIndex);
+
+    assertThat(result.isMissed()).isTrue();
+    assertThat(Files.exists(dirPath.resolve("subdir").resolve("file"))).isTrue();
+  }
+
   @Test
   public void putDirectoryIOExceptionRollsBack() throws IOException, InterruptedException {
     ByteString file = ByteString.copyFromUtf8("Peanut Butter");
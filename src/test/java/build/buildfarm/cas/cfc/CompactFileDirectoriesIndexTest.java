@@ -0,0 +1,111 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.cas.cfc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompactFileDirectoriesIndexTest {
+  private final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private EntryPathStrategy entryPathStrategy;
+  private CompactFileDirectoriesIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    Path root =
+        Iterables.getFirst(
+            Jimfs.newFileSystem(Configuration.unix()).getRootDirectories(),
+            /* defaultValue= */ null);
+    entryPathStrategy = new HexBucketEntryPathStrategy(root, /* levels= */ 0);
+    for (Path dir : entryPathStrategy) {
+      Files.createDirectories(dir);
+    }
+    index = new CompactFileDirectoriesIndex(entryPathStrategy);
+  }
+
+  private Digest directory(String name) {
+    return DIGEST_UTIL.compute(ByteString.copyFromUtf8(name));
+  }
+
+  @Test
+  public void sharedEntryRemovesAllOfItsDirectories() throws IOException {
+    Digest first = directory("first");
+    Digest second = directory("second");
+    index.put(first, ImmutableList.of("a", "b"));
+    index.put(second, ImmutableList.of("b", "c"));
+
+    assertThat(index.removeEntry("b")).containsExactly(first, second);
+    // the remaining entries no longer reference the removed directories
+    assertThat(index.removeEntry("a")).isEmpty();
+    assertThat(index.removeEntry("c")).isEmpty();
+    assertThat(Files.exists(index.path(first))).isFalse();
+    assertThat(Files.exists(index.path(second))).isFalse();
+  }
+
+  @Test
+  public void removedDirectoryIsUnlinkedFromEntries() throws IOException {
+    Digest first = directory("first");
+    Digest second = directory("second");
+    index.put(first, ImmutableList.of("a", "b"));
+    index.put(second, ImmutableList.of("b"));
+
+    index.remove(first);
+
+    assertThat(index.removeEntry("a")).isEmpty();
+    assertThat(index.removeEntry("b")).containsExactly(second);
+  }
+
+  @Test
+  public void duplicateEntriesAreIndexedOnce() throws IOException {
+    Digest first = directory("first");
+    index.put(first, ImmutableList.of("a", "a", "b"));
+
+    assertThat(index.directoryEntries(first)).containsExactly("a", "a", "b");
+    assertThat(index.removeEntry("a")).containsExactly(first);
+    assertThat(index.removeEntry("b")).isEmpty();
+  }
+
+  @Test
+  public void idsAreReusedAfterRemoval() throws IOException {
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 1000; i++) {
+        index.put(directory("directory-" + i), ImmutableList.of("entry-" + i, "shared-" + i % 10));
+      }
+      for (int i = 0; i < 10; i++) {
+        assertThat(index.removeEntry("shared-" + i)).hasSize(100);
+      }
+      for (int i = 0; i < 1000; i++) {
+        assertThat(index.removeEntry("entry-" + i)).isEmpty();
+      }
+    }
+  }
+}
@@ -49,6 +49,8 @@ public class DirectoriesIndexTest {
       directoriesIndex = new MemoryFileDirectoriesIndex(entryPathStrategy);
     } else if (type == DirectoriesIndexType.SetMultimap) {
       directoriesIndex = new MemoryDirectoriesIndex();
+    } else if (type == DirectoriesIndexType.Compact) {
+      directoriesIndex = new CompactFileDirectoriesIndex(entryPathStrategy);
     } else {
       throw new IllegalArgumentException("DirectoriesIndex type is not supported.");
     }
@@ -102,7 +104,8 @@ public class DirectoriesIndexTest {
   protected enum DirectoriesIndexType {
     Sqlite,
     HashMap,
-    SetMultimap
+    SetMultimap,
+    Compact
   }
 
   // Testing SqliteFileDirectoriesIndex implementation
@@ -202,4 +205,53 @@ public class DirectoriesIndexTest {
           DirectoriesIndexType.HashMap);
     }
   }
+
+  // Testing CompactFileDirectoriesIndex implementation
+  @RunWith(JUnit4.class)
+  @SuppressWarnings("PMD.TestClassWithoutTestCases")
+  public static class WindowsCompactFileDirectoriesIndexTest extends DirectoriesIndexTest {
+    public WindowsCompactFileDirectoriesIndexTest() {
+      super(
+          Iterables.getFirst(
+              Jimfs.newFileSystem(
+                      Configuration.windows().toBuilder()
+                          .setAttributeViews("basic", "owner", "dos", "acl", "posix", "user")
+                          .build())
+                  .getRootDirectories(),
+              null),
+          DirectoriesIndexType.Compact);
+    }
+  }
+
+  @RunWith(JUnit4.class)
+  @SuppressWarnings("PMD.TestClassWithoutTestCases")
+  public static class UnixCompactFileDirectoriesIndexTest extends DirectoriesIndexTest {
+    public UnixCompactFileDirectoriesIndexTest() {
+      super(
+          Iterables.getFirst(
+              Jimfs.newFileSystem(
+                      Configuration.unix().toBuilder()
+                          .setAttributeViews("basic", "owner", "posix", "unix")
+                          .build())
+                  .getRootDirectories(),
+              null),
+          DirectoriesIndexType.Compact);
+    }
+  }
+
+  @RunWith(JUnit4.class)
+  @SuppressWarnings("PMD.TestClassWithoutTestCases")
+  public static class OsCompactFileDirectoriesIndexTest extends DirectoriesIndexTest {
+    public OsCompactFileDirectoriesIndexTest() {
+      super(
+          Iterables.getFirst(
+              Jimfs.newFileSystem(
+                      Configuration.osX().toBuilder()
+                          .setAttributeViews("basic", "owner", "posix", "unix")
+                          .build())
+                  .getRootDirectories(),
+              null),
+          DirectoriesIndexType.Compact);
+    }
+  }
 }
@@ -22,6 +22,7 @@ import build.bazel.remote.execution.v2.DigestFunction;
 import build.buildfarm.common.DigestUtil.ActionKey;
 import build.buildfarm.common.DigestUtil.HashFunction;
 import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.hash.HashingOutputStream;
 import com.google.common.jimfs.Configuration;
@@ -311,4 +312,35 @@ public class DigestUtilTest {
     assertThat(digestUtil.compute(bazelPath))
         .isEqualTo(digestUtil.build(bazelMd5Hash, bazelContent.size()));
   }
+
+  @Test
+  public void computeDirectPathMatchesContent() throws IOException {
+    Path bazelPath = Files.createTempFile("bazel", null);
+    try {
+      try (OutputStream out = Files.newOutputStream(bazelPath)) {
+        bazelContent.writeTo(out);
+      }
+      for (String hashName : ImmutableList.of("SHA256", "BLAKE3")) {
+        DigestUtil digestUtil = DigestUtil.forHash(hashName);
+        assertThat(digestUtil.compute(bazelPath, /* directThreshold= */ 0))
+            .isEqualTo(digestUtil.compute(bazelContent));
+      }
+    } finally {
+      Files.delete(bazelPath);
+    }
+  }
+
+  @Test
+  public void computeDirectPathReadsAnyFileSystem() throws IOException {
+    // jimfs does not support mapping files, but may be read into a direct buffer
+    Path root =
+        Iterables.getFirst(Jimfs.newFileSystem(Configuration.unix()).getRootDirectories(), null);
+    Path bazelPath = root.resolve("bazel");
+    try (OutputStream out = Files.newOutputStream(bazelPath)) {
+      bazelContent.writeTo(out);
+    }
+    DigestUtil digestUtil = DigestUtil.forHash("SHA256");
+    assertThat(digestUtil.compute(bazelPath, /* directThreshold= */ 0))
+        .isEqualTo(digestUtil.build(bazelSha256Hash, bazelContent.size()));
+  }
 }
@@ -0,0 +1,103 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.bazel.remote.execution.v2.DigestFunction;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.v1test.Digest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TreeIteratorTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(DigestUtil.HashFunction.SHA256);
+
+  private final Map<Digest, Directory> directories = new HashMap<>();
+  private Digest rootDigest;
+  private List<Digest> childDigests;
+
+  private Digest putDirectory(Directory directory) {
+    Digest digest = DIGEST_UTIL.compute(directory);
+    directories.put(digest, directory);
+    return digest;
+  }
+
+  @Before
+  public void setUp() {
+    Directory.Builder root = Directory.newBuilder();
+    childDigests = new ArrayList<>();
+    for (String name : new String[] {"a", "b", "c"}) {
+      Digest childDigest =
+          putDirectory(
+              Directory.newBuilder().addFiles(FileNode.newBuilder().setName(name)).build());
+      childDigests.add(childDigest);
+      root.addDirectories(
+          DirectoryNode.newBuilder().setName(name).setDigest(DigestUtil.toDigest(childDigest)));
+    }
+    rootDigest = putDirectory(root.build());
+  }
+
+  private static List<Digest> traverse(TreeIterator iterator) {
+    List<Digest> digests = new ArrayList<>();
+    while (iterator.hasNext()) {
+      digests.add(
+          DigestUtil.fromDigest(iterator.next().getDigest(), DigestFunction.Value.SHA256));
+    }
+    return digests;
+  }
+
+  @Test
+  public void prefetchingPreservesOrder() {
+    List<Digest> prefetched = new ArrayList<>();
+    TreeIterator iterator =
+        new TreeIterator(
+            directories::get, prefetched::add, /* prefetchWindow= */ 1, rootDigest, "");
+
+    assertThat(traverse(iterator))
+        .containsExactly(rootDigest, childDigests.get(0), childDigests.get(1), childDigests.get(2))
+        .inOrder();
+    assertThat(prefetched).containsExactlyElementsIn(childDigests).inOrder();
+  }
+
+  @Test
+  public void prefetchWindowLeadsTraversal() {
+    List<Digest> prefetched = new ArrayList<>();
+    TreeIterator iterator =
+        new TreeIterator(
+            directories::get, prefetched::add, /* prefetchWindow= */ 2, rootDigest, "");
+
+    iterator.next();
+    assertThat(prefetched).containsExactly(childDigests.get(0), childDigests.get(1)).inOrder();
+    iterator.next();
+    assertThat(prefetched).containsExactlyElementsIn(childDigests).inOrder();
+  }
+
+  @Test
+  public void noPrefetchingByDefault() {
+    TreeIterator iterator = new TreeIterator(directories::get, rootDigest, "");
+
+    assertThat(traverse(iterator)).hasSize(4);
+  }
+}
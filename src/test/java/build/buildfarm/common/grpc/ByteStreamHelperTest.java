@@ -28,6 +28,7 @@ import com.google.bytestream.ByteStreamGrpc.ByteStreamImplBase;
 import com.google.bytestream.ByteStreamProto.ReadRequest;
 import com.google.bytestream.ByteStreamProto.ReadResponse;
 import com.google.common.base.Suppliers;
+import com.google.protobuf.ByteString;
 import io.grpc.Channel;
 import io.grpc.Status;
 import io.grpc.inprocess.InProcessChannelBuilder;
@@ -99,4 +100,40 @@ public class ByteStreamHelperTest {
 
     verify(serviceImpl, times(1)).read(eq(readRequest), any(StreamObserver.class));
   }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void newInputReadsLimitedRange() throws IOException {
+    String resourceName = "limited/resource";
+    ReadRequest readRequest =
+        ReadRequest.newBuilder()
+            .setResourceName(resourceName)
+            .setReadOffset(4)
+            .setReadLimit(3)
+            .build();
+    doAnswer(
+            invocation -> {
+              StreamObserver<ReadResponse> observer = invocation.getArgument(1);
+              observer.onNext(
+                  ReadResponse.newBuilder().setData(ByteString.copyFromUtf8("abc")).build());
+              observer.onCompleted();
+              return null;
+            })
+        .when(serviceImpl)
+        .read(eq(readRequest), any(StreamObserver.class));
+
+    try (InputStream in =
+        ByteStreamHelper.newInput(
+            resourceName,
+            /* offset= */ 4,
+            /* limit= */ 3,
+            Suppliers.ofInstance(ByteStreamGrpc.newStub(channel)),
+            NO_RETRIES::newBackoff,
+            NO_RETRIES::isRetriable,
+            /* retryService= */ null)) {
+      assertThat(ByteString.readFrom(in).toStringUtf8()).isEqualTo("abc");
+    }
+
+    verify(serviceImpl, times(1)).read(eq(readRequest), any(StreamObserver.class));
+  }
 }
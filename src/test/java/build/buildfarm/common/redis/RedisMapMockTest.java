@@ -20,10 +20,17 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import redis.clients.jedis.ClusterPipeline;
 import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
 
 /**
  * @class RedisMapMockTest
@@ -95,4 +102,59 @@ public class RedisMapMockTest {
     verify(redis, times(1)).get("test:key");
     assertThat(value).isEqualTo("value");
   }
+
+  // Function under test: mget
+  // Reason for testing: values are fetched in batches and returned in key order
+  // Failure explanation: keys were not batched or values were misaligned
+  @Test
+  @SuppressWarnings("unchecked")
+  public void mgetBatchesKeysInOrder() throws Exception {
+    // ARRANGE
+    UnifiedJedis redis = mock(UnifiedJedis.class);
+    Pipeline pipeline = mock(Pipeline.class);
+    when(redis.pipelined()).thenReturn(pipeline);
+    Response<List<String>> first = mock(Response.class);
+    when(first.get()).thenReturn(Arrays.asList("1", null));
+    Response<List<String>> second = mock(Response.class);
+    when(second.get()).thenReturn(Arrays.asList("3"));
+    when(pipeline.mget("test:a", "test:b")).thenReturn(first);
+    when(pipeline.mget("test:c")).thenReturn(second);
+    RedisMap map = new RedisMap("test");
+
+    // ACT
+    List<String> values = map.mget(redis, ImmutableList.of("a", "b", "c"), 2);
+
+    // ASSERT
+    verify(pipeline, times(1)).mget("test:a", "test:b");
+    verify(pipeline, times(1)).mget("test:c");
+    verify(pipeline, times(1)).sync();
+    assertThat(values).containsExactly("1", null, "3").inOrder();
+  }
+
+  // Function under test: mget
+  // Reason for testing: a cluster MGET may not span slots
+  // Failure explanation: keys from different slots were requested together
+  @Test
+  @SuppressWarnings("unchecked")
+  public void mgetGroupsClusterKeysBySlot() throws Exception {
+    // ARRANGE
+    JedisCluster redis = mock(JedisCluster.class);
+    ClusterPipeline pipeline = mock(ClusterPipeline.class);
+    when(redis.pipelined()).thenReturn(pipeline);
+    Response<List<String>> tagged = mock(Response.class);
+    when(tagged.get()).thenReturn(Arrays.asList("1", "3"));
+    Response<List<String>> untagged = mock(Response.class);
+    when(untagged.get()).thenReturn(Arrays.asList("2"));
+    when(pipeline.mget("test:{a}1", "test:{a}3")).thenReturn(tagged);
+    when(pipeline.mget("test:b")).thenReturn(untagged);
+    RedisMap map = new RedisMap("test");
+
+    // ACT
+    List<String> values = map.mget(redis, ImmutableList.of("{a}1", "b", "{a}3"), 10);
+
+    // ASSERT
+    verify(pipeline, times(1)).mget("test:{a}1", "test:{a}3");
+    verify(pipeline, times(1)).mget("test:b");
+    assertThat(values).containsExactly("1", "2", "3").inOrder();
+  }
 }
@@ -16,12 +16,14 @@ package build.buildfarm.common.redis;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyDouble;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import build.buildfarm.common.Visitor;
+import com.google.common.collect.ImmutableList;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -36,6 +38,7 @@ import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.KeyValue;
 
 /**
  * @class RedisPriorityQueueMockTest
@@ -174,6 +177,24 @@ public class RedisPriorityQueueMockTest {
     verify(redis, times(1)).zadd("test", 2, "125:foo2");
   }
 
+  // Function under test: offer
+  // Reason for testing: blocked takers are woken when a value is offered
+  // Failure explanation: the offer does not push a token onto the signal list
+  @Test
+  public void offerSignalsTakers() throws Exception {
+    // ARRANGE
+    when(clock.millis()).thenReturn(123L);
+    RedisPriorityQueue queue = new RedisPriorityQueue(redis, "test", clock);
+
+    // ACT
+    queue.offer("foo");
+
+    // ASSERT
+    verify(redis, times(1)).zadd("test", 0, "123:foo");
+    verify(redis, times(1))
+        .eval(any(String.class), eq(ImmutableList.of("test_signal")), any(List.class));
+  }
+
   // Function under test: removeFromDequeue
   // Reason for testing: we can remove an element from the dequeue
   // Failure explanation: we are either unable to get an element into the dequeue or unable to
@@ -224,6 +245,51 @@ public class RedisPriorityQueueMockTest {
     assertThat(val).isEqualTo(null);
   }
 
+  // Function under test: take
+  // Reason for testing: an empty take blocks on the signal list rather than sleeping
+  // Failure explanation: the take does not wait for a signal before retrying
+  @Test
+  public void takeBlocksOnSignalWhenEmpty() throws Exception {
+    // ARRANGE
+    when(redis.eval(any(String.class), any(List.class), any(List.class))).thenReturn(null, "foo");
+    RedisPriorityQueue queue = new RedisPriorityQueue(redis, "test");
+
+    // ACT
+    String val = queue.take(Duration.ofSeconds(1));
+
+    // ASSERT
+    assertThat(val).isEqualTo("foo");
+    verify(redis, times(1)).blpop(anyDouble(), eq("test_signal"));
+  }
+
+  // Function under test: take
+  // Reason for testing: a take woken by a token has consumed the token of the element it takes
+  // Failure explanation: the take consumes a second token, which could strand another taker
+  @Test
+  public void takeWokenBySignalDoesNotConsumeAnother() throws Exception {
+    // ARRANGE
+    when(redis.eval(any(String.class), any(List.class), any(List.class))).thenReturn(null, "foo");
+    when(redis.blpop(anyDouble(), eq("test_signal")))
+        .thenReturn(new KeyValue<>("test_signal", "1"));
+    RedisPriorityQueue queue = new RedisPriorityQueue(redis, "test");
+
+    // ACT
+    String val = queue.take(Duration.ofSeconds(1));
+
+    // ASSERT
+    assertThat(val).isEqualTo("foo");
+    verify(redis, times(1))
+        .eval(
+            any(String.class),
+            eq(ImmutableList.of("test")),
+            eq(ImmutableList.of("test", "test_dequeue", "test_signal", "1")));
+    verify(redis, times(1))
+        .eval(
+            any(String.class),
+            eq(ImmutableList.of("test")),
+            eq(ImmutableList.of("test", "test_dequeue", "test_signal", "0")));
+  }
+
   // Function under test: take
   // Reason for testing: the take is interrupted
   // Failure explanation: the take was not interrupted as expected
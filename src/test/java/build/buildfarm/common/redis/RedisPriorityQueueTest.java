@@ -24,6 +24,7 @@ import build.buildfarm.common.config.BuildfarmConfigs;
 import build.buildfarm.instance.shard.JedisClusterFactory;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -269,6 +270,38 @@ public class RedisPriorityQueueTest {
     verifyNoInteractions(service);
   }
 
+  // Function under test: dequeue
+  // Reason for testing: Test dequeue is woken by an offer rather than polling
+  // Failure explanation: dequeue does not return promptly once a value is offered
+  @Test
+  public void checkDequeueWokenByOffer() throws Exception {
+    // ARRANGE
+    RedisPriorityQueue queue = new RedisPriorityQueue(redis, "test");
+    Jedis offerRedis = new Jedis(pooled.getPool().getResource());
+    Thread offerer =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(500);
+              } catch (InterruptedException e) {
+                return;
+              }
+              new RedisPriorityQueue(offerRedis, "test").offer("foo");
+            });
+
+    // ACT
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    offerer.start();
+    String val = queue.take(Duration.ofSeconds(10));
+    long timeElapsed = stopwatch.elapsed(MILLISECONDS);
+    offerer.join();
+    offerRedis.close();
+
+    // ASSERT
+    assertThat(val).isEqualTo("foo");
+    assertThat(timeElapsed).isLessThan(5000L);
+  }
+
   // Function under test: dequeue
   // Reason for testing: The queue supports negative priorities.
   // Failure explanation: negative prioritizes are not handled in the correct order.
@@ -309,6 +342,33 @@ public class RedisPriorityQueueTest {
     verifyNoInteractions(service);
   }
 
+  // Function under test: poll
+  // Reason for testing: polls consume the tokens pushed by offers, and an empty queue clears them
+  // Failure explanation: stale tokens accumulate and wake takers of an empty queue
+  @Test
+  public void pollConsumesSignals() throws Exception {
+    // ARRANGE
+    RedisPriorityQueue queue = new RedisPriorityQueue(redis, "test");
+    queue.offer("foo");
+    queue.offer("bar");
+    queue.offer("baz");
+    assertThat(redis.llen(queue.getSignalName())).isEqualTo(3);
+
+    // ACT
+    queue.poll();
+
+    // ASSERT
+    assertThat(redis.llen(queue.getSignalName())).isEqualTo(2);
+
+    // ACT
+    queue.removeAll(Iterables.getOnlyElement(redis.zrange("test", 0, 0)));
+    queue.poll();
+    queue.poll();
+
+    // ASSERT
+    assertThat(redis.llen(queue.getSignalName())).isEqualTo(0);
+  }
+
   // Function under test: visit
   // Reason for testing: each element in the queue can be visited
   // Failure explanation: we are unable to visit each element in the queue
@@ -35,6 +35,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import build.bazel.remote.execution.v2.Action;
 import build.bazel.remote.execution.v2.ActionResult;
 import build.bazel.remote.execution.v2.Command;
 import build.bazel.remote.execution.v2.Compressor;
@@ -58,6 +59,7 @@ import build.buildfarm.common.TreeIterator.DirectoryEntry;
 import build.buildfarm.common.Watcher;
 import build.buildfarm.common.Write;
 import build.buildfarm.common.Write.WriteCompleteException;
+import build.buildfarm.common.config.BuildfarmConfigs;
 import build.buildfarm.common.io.FeedbackOutputStream;
 import build.buildfarm.common.net.URL;
 import build.buildfarm.v1test.BackplaneStatus;
@@ -668,6 +670,142 @@ public class NodeInstanceTest {
     assertThat(violation.getDescription()).isEqualTo(String.format(missingFmt, "foo/quux"));
   }
 
+  @Test
+  public void validatedSubtreesAreNotRevisited() {
+    build.bazel.remote.execution.v2.Digest fileDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("file")));
+    Directory sub =
+        Directory.newBuilder()
+            .addFiles(FileNode.newBuilder().setName("file").setDigest(fileDigest))
+            .build();
+    build.bazel.remote.execution.v2.Digest subDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(sub));
+    Directory root =
+        Directory.newBuilder()
+            .addDirectories(DirectoryNode.newBuilder().setName("sub").setDigest(subDigest))
+            .build();
+    build.bazel.remote.execution.v2.Digest rootDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(root));
+    Action action = Action.newBuilder().setInputRootDigest(rootDigest).build();
+    Command command = Command.newBuilder().addArguments("true").build();
+    NodeInstance instance = new DummyServerInstance();
+
+    PreconditionFailure.Builder preconditionFailure = PreconditionFailure.newBuilder();
+    ImmutableSet.Builder<build.bazel.remote.execution.v2.Digest> inputDigests =
+        ImmutableSet.builder();
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        ImmutableMap.of(rootDigest, root, subDigest, sub),
+        inputDigests::add,
+        preconditionFailure);
+    assertThat(preconditionFailure.getViolationsCount()).isEqualTo(0);
+    assertThat(inputDigests.build()).containsExactly(fileDigest);
+
+    // the subtree is not consulted again, and still contributes its inputs
+    inputDigests = ImmutableSet.builder();
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        ImmutableMap.of(rootDigest, root),
+        inputDigests::add,
+        preconditionFailure);
+    assertThat(preconditionFailure.getViolationsCount()).isEqualTo(0);
+    assertThat(inputDigests.build()).containsExactly(fileDigest);
+  }
+
+  @Test
+  public void inputRootsAreValidatedUntilSeenTwice() {
+    build.bazel.remote.execution.v2.Digest fileDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("file")));
+    Directory sub =
+        Directory.newBuilder()
+            .addFiles(FileNode.newBuilder().setName("file").setDigest(fileDigest))
+            .build();
+    build.bazel.remote.execution.v2.Digest subDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(sub));
+    Directory root =
+        Directory.newBuilder()
+            .addDirectories(DirectoryNode.newBuilder().setName("sub").setDigest(subDigest))
+            .build();
+    build.bazel.remote.execution.v2.Digest rootDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(root));
+    Action action = Action.newBuilder().setInputRootDigest(rootDigest).build();
+    Command command = Command.newBuilder().addArguments("true").build();
+    NodeInstance instance = new DummyServerInstance();
+    ImmutableMap<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex =
+        ImmutableMap.of(rootDigest, root, subDigest, sub);
+
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        directoriesIndex,
+        digest -> {},
+        PreconditionFailure.newBuilder());
+
+    // a root seen once is not retained, and must be present in the index
+    PreconditionFailure.Builder preconditionFailure = PreconditionFailure.newBuilder();
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        ImmutableMap.of(),
+        digest -> {},
+        preconditionFailure);
+    assertThat(preconditionFailure.getViolationsCount()).isEqualTo(1);
+    assertThat(preconditionFailure.getViolations(0).getType()).isEqualTo(VIOLATION_TYPE_MISSING);
+
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        directoriesIndex,
+        digest -> {},
+        PreconditionFailure.newBuilder());
+
+    // a root seen again is retained, and its children are walked through the cache
+    preconditionFailure = PreconditionFailure.newBuilder();
+    ImmutableSet.Builder<build.bazel.remote.execution.v2.Digest> inputDigests =
+        ImmutableSet.builder();
+    instance.validateAction(
+        DIGEST_UTIL.getDigestFunction(),
+        action,
+        command,
+        ImmutableMap.of(),
+        inputDigests::add,
+        preconditionFailure);
+    assertThat(preconditionFailure.getViolationsCount()).isEqualTo(0);
+    assertThat(inputDigests.build()).containsExactly(fileDigest);
+  }
+
+  @Test
+  public void inputPathsResolveAgainstTree() {
+    Directory sub =
+        Directory.newBuilder().addFiles(FileNode.newBuilder().setName("file")).build();
+    build.bazel.remote.execution.v2.Digest subDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(sub));
+    Directory root =
+        Directory.newBuilder()
+            .addDirectories(DirectoryNode.newBuilder().setName("sub").setDigest(subDigest))
+            .build();
+    build.bazel.remote.execution.v2.Digest rootDigest =
+        DigestUtil.toDigest(DIGEST_UTIL.compute(root));
+    ImmutableMap<build.bazel.remote.execution.v2.Digest, Directory> directoriesIndex =
+        ImmutableMap.of(rootDigest, root, subDigest, sub);
+
+    assertThat(NodeInstance.isInputDirectory("", rootDigest, directoriesIndex)).isTrue();
+    assertThat(NodeInstance.isInputDirectory("sub", rootDigest, directoriesIndex)).isTrue();
+    assertThat(NodeInstance.isInputDirectory("sub/", rootDigest, directoriesIndex)).isFalse();
+    assertThat(NodeInstance.isInputDirectory("sub/file", rootDigest, directoriesIndex)).isFalse();
+    assertThat(NodeInstance.isInputFile("sub/file", rootDigest, directoriesIndex)).isTrue();
+    assertThat(NodeInstance.isInputFile("sub", rootDigest, directoriesIndex)).isFalse();
+    assertThat(NodeInstance.isInputFile("file", rootDigest, directoriesIndex)).isFalse();
+    assertThat(NodeInstance.isInputFile("other/file", rootDigest, directoriesIndex)).isFalse();
+  }
+
   @SuppressWarnings("unchecked")
   private static void doBlob(
       ContentAddressableStorage contentAddressableStorage,
@@ -772,6 +910,43 @@ public class NodeInstanceTest {
         .containsAtLeast(fileDigest, childFileDigest, otherFileDigest);
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void verifiedOutputsAreNotCheckedAgain() throws Exception {
+    BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
+    configs.getServer().getCaches().setActionResultOutputsVerifiedSeconds(60);
+    try {
+      RequestMetadata requestMetadata =
+          RequestMetadata.newBuilder()
+              .setCorrelatedInvocationsId(
+                  "https://localhost:12345/test/build?ENSURE_OUTPUTS_PRESENT=true#92af266a-c5bf-48ca-a723-344ae516a786")
+              .build();
+      ContentAddressableStorage contentAddressableStorage = mock(ContentAddressableStorage.class);
+      ActionCache actionCache = mock(ActionCache.class);
+      NodeInstance instance = new DummyServerInstance(contentAddressableStorage, actionCache);
+      when(contentAddressableStorage.findMissingBlobs(any(Iterable.class), any()))
+          .thenReturn(ImmutableList.of());
+      ActionKey actionKey =
+          DigestUtil.asActionKey(DIGEST_UTIL.compute(ByteString.copyFromUtf8("action")));
+      ActionResult actionResult =
+          ActionResult.newBuilder()
+              .setStdoutDigest(
+                  DigestUtil.toDigest(DIGEST_UTIL.compute(ByteString.copyFromUtf8("stdout"))))
+              .build();
+      when(actionCache.get(actionKey)).thenReturn(immediateFuture(actionResult));
+
+      assertThat(instance.getActionResult(actionKey, requestMetadata).get())
+          .isEqualTo(actionResult);
+      assertThat(instance.getActionResult(actionKey, requestMetadata).get())
+          .isEqualTo(actionResult);
+
+      verify(contentAddressableStorage, times(1))
+          .findMissingBlobs(any(Iterable.class), eq(actionKey.getDigest().getDigestFunction()));
+    } finally {
+      configs.getServer().getCaches().setActionResultOutputsVerifiedSeconds(0);
+    }
+  }
+
   @Test
   public void fetchBlobWriteCompleteIsSuccess() throws Exception {
     ByteString content = ByteString.copyFromUtf8("Fetch Blob Content");
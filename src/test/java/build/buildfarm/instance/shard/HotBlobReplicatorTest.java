@@ -0,0 +1,153 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.Write;
+import build.buildfarm.common.io.FeedbackOutputStream;
+import build.buildfarm.instance.Instance;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HotBlobReplicatorTest {
+  private static final ByteString CONTENT = ByteString.copyFromUtf8("hot");
+  private static final Digest DIGEST =
+      Digest.newBuilder().setHash("hot").setSize(CONTENT.size()).build();
+
+  private Backplane backplane;
+  private Instance source;
+  private Instance target;
+  private ByteArrayOutputStream written;
+  private Map<String, Instance> stubs;
+
+  @Before
+  public void setUp() throws Exception {
+    backplane = mock(Backplane.class);
+    source = mock(Instance.class);
+    target = mock(Instance.class);
+    written = new ByteArrayOutputStream();
+    stubs = ImmutableMap.of("source", source, "target", target);
+
+    when(source.newBlobInput(
+            eq(Compressor.Value.IDENTITY), eq(DIGEST), eq(0L), anyLong(), any(), any()))
+        .thenAnswer(invocation -> CONTENT.newInput());
+    Write write = mock(Write.class);
+    when(write.getOutput(anyLong(), any(), any()))
+        .thenReturn(
+            new FeedbackOutputStream() {
+              @Override
+              public void write(int b) {
+                written.write(b);
+              }
+
+              @Override
+              public boolean isReady() {
+                return true;
+              }
+            });
+    when(write.getFuture()).thenReturn(immediateFuture(DIGEST.getSize()));
+    when(target.getBlobWrite(eq(Compressor.Value.IDENTITY), eq(DIGEST), any(), any()))
+        .thenReturn(write);
+  }
+
+  private HotBlobReplicator newReplicator(int replicas, int readThreshold) {
+    return new HotBlobReplicator(
+        backplane, stubs::get, replicas, readThreshold, directExecutor(), new Random());
+  }
+
+  @Test
+  public void hotBlobIsCopiedAndRegistered() throws IOException {
+    HotBlobReplicator replicator = newReplicator(/* replicas= */ 1, /* readThreshold= */ 2);
+
+    replicator.onRead(DIGEST, ImmutableSet.of("source"), ImmutableSet.of("source", "target"));
+    verify(backplane, never()).addBlobLocation(any(), any());
+
+    replicator.onRead(DIGEST, ImmutableSet.of("source"), ImmutableSet.of("source", "target"));
+    verify(backplane).addBlobLocation(DIGEST, "target");
+    assertThat(ByteString.copyFrom(written.toByteArray())).isEqualTo(CONTENT);
+    assertThat(replicator.load("source")).isEqualTo(0L);
+  }
+
+  @Test
+  public void replicatedBlobIsNotCopied() throws IOException {
+    HotBlobReplicator replicator = newReplicator(/* replicas= */ 1, /* readThreshold= */ 1);
+
+    replicator.onRead(
+        DIGEST, ImmutableSet.of("source", "target"), ImmutableSet.of("source", "target"));
+
+    verify(backplane, never()).addBlobLocation(any(), any());
+  }
+
+  @Test
+  public void disabledReplicationNeverCopies() throws IOException {
+    HotBlobReplicator replicator = newReplicator(/* replicas= */ 0, /* readThreshold= */ 1);
+
+    replicator.onRead(DIGEST, ImmutableSet.of("source"), ImmutableSet.of("source", "target"));
+
+    verify(backplane, never()).addBlobLocation(any(), any());
+  }
+
+  @Test
+  public void leastLoadedPrefersIdleWorkers() {
+    HotBlobReplicator replicator = newReplicator(/* replicas= */ 0, /* readThreshold= */ 1);
+    replicator.readStarted("busy");
+    replicator.readStarted("busy");
+    replicator.readStarted("warm");
+
+    assertThat(replicator.leastLoaded(ImmutableList.of("busy", "warm", "idle"), 3))
+        .containsExactly("idle", "warm", "busy")
+        .inOrder();
+
+    replicator.readFinished("busy");
+    replicator.readFinished("busy");
+    assertThat(replicator.load("busy")).isEqualTo(0L);
+  }
+
+  @Test
+  public void unmatchedReadFinishedLeavesWorkerIdle() {
+    HotBlobReplicator replicator = newReplicator(/* replicas= */ 0, /* readThreshold= */ 1);
+    replicator.readStarted("worker");
+    replicator.readFinished("worker");
+    replicator.readFinished("worker");
+    assertThat(replicator.load("worker")).isEqualTo(0L);
+
+    replicator.readStarted("worker");
+    assertThat(replicator.load("worker")).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static build.bazel.remote.execution.v2.Compressor.Value.IDENTITY;
+import static build.bazel.remote.execution.v2.Compressor.Value.ZSTD;
+import static com.google.common.truth.Truth.assertThat;
+
+import build.buildfarm.common.ZstdCompressingInputStream;
+import build.buildfarm.v1test.Digest;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InternalCompressionTest {
+  private static final ByteString CONTENT =
+      ByteString.copyFromUtf8("compressible content ".repeat(1024));
+  private static final Digest DIGEST =
+      Digest.newBuilder().setHash("content").setSize(CONTENT.size()).build();
+
+  private static ByteString compressed() throws IOException {
+    try (InputStream in = new ZstdCompressingInputStream(CONTENT.newInput())) {
+      return ByteString.readFrom(in);
+    }
+  }
+
+  @Test
+  public void largeWholeBlobReadsAreCompressed() {
+    InternalCompression compression = new InternalCompression(/* minSizeBytes= */ 1024);
+
+    assertThat(compression.fetchCompressor(IDENTITY, DIGEST, /* offset= */ 0, /* count= */ 0))
+        .isEqualTo(ZSTD);
+    assertThat(
+            compression.fetchCompressor(
+                IDENTITY, DIGEST, /* offset= */ 0, /* count= */ DIGEST.getSize()))
+        .isEqualTo(ZSTD);
+    assertThat(compression.fetchCompressor(IDENTITY, DIGEST, /* offset= */ 1, /* count= */ 0))
+        .isEqualTo(IDENTITY);
+    assertThat(compression.fetchCompressor(ZSTD, DIGEST, /* offset= */ 0, /* count= */ 0))
+        .isEqualTo(ZSTD);
+    assertThat(
+            compression.fetchCompressor(
+                IDENTITY,
+                DIGEST.toBuilder().setSize(1023).build(),
+                /* offset= */ 0,
+                /* count= */ 0))
+        .isEqualTo(IDENTITY);
+  }
+
+  @Test
+  public void limitedReadsAreNotCompressed() {
+    InternalCompression compression = new InternalCompression(/* minSizeBytes= */ 1024);
+
+    assertThat(
+            compression.fetchCompressor(
+                IDENTITY, DIGEST, /* offset= */ 0, /* count= */ DIGEST.getSize() - 1))
+        .isEqualTo(IDENTITY);
+  }
+
+  @Test
+  public void disabledCompressionIsNeverSelected() {
+    InternalCompression compression = new InternalCompression(/* minSizeBytes= */ 0);
+
+    assertThat(compression.fetchCompressor(IDENTITY, DIGEST, /* offset= */ 0, /* count= */ 0))
+        .isEqualTo(IDENTITY);
+  }
+
+  @Test
+  public void compressedInputIsDecompressed() throws IOException {
+    InternalCompression compression = new InternalCompression(/* minSizeBytes= */ 1024);
+
+    try (InputStream in = compression.newInput(IDENTITY, ZSTD, compressed().newInput())) {
+      assertThat(ByteString.readFrom(in)).isEqualTo(CONTENT);
+    }
+  }
+
+  @Test
+  public void compressedChunksAreDecoded() throws IOException {
+    InternalCompression compression = new InternalCompression(/* minSizeBytes= */ 1024);
+    InternalCompression.ChunkDecoder decoder = compression.newChunkDecoder(IDENTITY, ZSTD);
+    ByteString compressed = compressed();
+
+    ByteString.Output decoded = ByteString.newOutput();
+    for (int offset = 0; offset < compressed.size(); offset += 7) {
+      decoder
+          .decode(compressed.substring(offset, Math.min(compressed.size(), offset + 7)))
+          .writeTo(decoded);
+    }
+    decoder.close();
+
+    assertThat(decoder.isDecompressing()).isTrue();
+    assertThat(decoded.toByteString()).isEqualTo(CONTENT);
+  }
+
+  @Test
+  public void identityChunksAreUnchanged() throws IOException {
+    InternalCompression compression = new InternalCompression(/* minSizeBytes= */ 0);
+    InternalCompression.ChunkDecoder decoder = compression.newChunkDecoder(IDENTITY, IDENTITY);
+
+    assertThat(decoder.isDecompressing()).isFalse();
+    assertThat(decoder.decode(CONTENT)).isSameInstanceAs(CONTENT);
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.v1test.Digest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MissingBlobsTest {
+  private static final Digest MISSING = Digest.newBuilder().setHash("missing").setSize(1).build();
+  private static final Digest LOCATED = Digest.newBuilder().setHash("located").setSize(1).build();
+
+  @Test
+  public void recordedMissIsAnsweredLocally() {
+    MissingBlobs missingBlobs = new MissingBlobs(/* expireAfterMillis= */ 60_000, 16);
+    missingBlobs.add(MISSING);
+
+    assertThat(missingBlobs.isMissing(MISSING, ImmutableSet.of())).isTrue();
+    assertThat(missingBlobs.isMissing(LOCATED, ImmutableSet.of())).isFalse();
+  }
+
+  @Test
+  public void locationInvalidatesMiss() {
+    MissingBlobs missingBlobs = new MissingBlobs(/* expireAfterMillis= */ 60_000, 16);
+    missingBlobs.add(MISSING);
+
+    assertThat(missingBlobs.isMissing(MISSING, ImmutableSet.of("worker"))).isFalse();
+    assertThat(missingBlobs.isMissing(MISSING, ImmutableSet.of())).isFalse();
+  }
+
+  @Test
+  public void writeInvalidatesMiss() {
+    MissingBlobs missingBlobs = new MissingBlobs(/* expireAfterMillis= */ 60_000, 16);
+    missingBlobs.add(MISSING);
+    missingBlobs.invalidate(MISSING);
+
+    assertThat(missingBlobs.isMissing(MISSING, ImmutableSet.of())).isFalse();
+  }
+
+  @Test
+  public void recentlyMissingExcludesLocatedBlobs() throws IOException {
+    MissingBlobs missingBlobs = new MissingBlobs(/* expireAfterMillis= */ 60_000, 16);
+    missingBlobs.add(MISSING);
+    missingBlobs.add(LOCATED);
+    Backplane backplane = mock(Backplane.class);
+    when(backplane.getBlobDigestsWorkers(any()))
+        .thenReturn(ImmutableMap.of(LOCATED, ImmutableSet.of("worker")));
+
+    assertThat(missingBlobs.recentlyMissing(ImmutableList.of(MISSING, LOCATED), backplane))
+        .containsExactly(MISSING);
+    assertThat(missingBlobs.isMissing(LOCATED, ImmutableSet.of())).isFalse();
+  }
+
+  @Test
+  public void disabledCacheNeverAnswers() throws IOException {
+    MissingBlobs missingBlobs = new MissingBlobs(/* expireAfterMillis= */ 0, 16);
+    missingBlobs.add(MISSING);
+    Backplane backplane = mock(Backplane.class);
+
+    assertThat(missingBlobs.isEnabled()).isFalse();
+    assertThat(missingBlobs.recentlyMissing(ImmutableList.of(MISSING), backplane)).isEmpty();
+    verify(backplane, never()).getBlobDigestsWorkers(any());
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
+import build.buildfarm.common.Trees;
+import build.buildfarm.v1test.Digest;
+import build.buildfarm.v1test.Tree;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QueuedDirectoriesTest {
+  private static final DigestUtil DIGEST_UTIL = new DigestUtil(HashFunction.SHA256);
+
+  private static Tree tree(String rootFile, Directory shared) {
+    Digest sharedDigest = DIGEST_UTIL.compute(shared);
+    Directory root =
+        Directory.newBuilder()
+            .addFiles(FileNode.newBuilder().setName(rootFile))
+            .addDirectories(
+                DirectoryNode.newBuilder()
+                    .setName("shared")
+                    .setDigest(DigestUtil.toDigest(sharedDigest)))
+            .build();
+    Digest rootDigest = DIGEST_UTIL.compute(root);
+    return Tree.newBuilder()
+        .setRootDigest(rootDigest)
+        .putDirectories(rootDigest.getHash(), root)
+        .putDirectories(sharedDigest.getHash(), shared)
+        .build();
+  }
+
+  @Test
+  public void recentlyQueuedDirectoriesAreReferenced() {
+    Directory shared =
+        Directory.newBuilder().addFiles(FileNode.newBuilder().setName("file")).build();
+    QueuedDirectories queuedDirectories = new QueuedDirectories(/* maxEntries= */ 16);
+
+    Tree first = tree("first", shared);
+    assertThat(queuedDirectories.compact(first)).isEqualTo(first);
+    assertThat(Trees.isComplete(first)).isTrue();
+
+    Tree second = tree("second", shared);
+    Tree compact = queuedDirectories.compact(second);
+    assertThat(compact.getDirectoriesMap().keySet())
+        .containsExactly(second.getRootDigest().getHash());
+    assertThat(Trees.isComplete(compact)).isFalse();
+  }
+
+  @Test
+  public void rootIsAlwaysIncluded() {
+    Directory shared = Directory.getDefaultInstance();
+    QueuedDirectories queuedDirectories = new QueuedDirectories(/* maxEntries= */ 16);
+    Tree tree = tree("root", shared);
+
+    queuedDirectories.compact(tree);
+
+    assertThat(queuedDirectories.compact(tree).getDirectoriesMap())
+        .containsKey(tree.getRootDigest().getHash());
+  }
+}
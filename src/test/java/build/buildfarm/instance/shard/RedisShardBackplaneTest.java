@@ -116,6 +116,30 @@ public class RedisShardBackplaneTest {
     assertThat(workerChange.getTypeCase()).isEqualTo(WorkerChange.TypeCase.REMOVE);
   }
 
+  @Test
+  public void storageWorkersAreServedFromSnapshot() throws IOException {
+    UnifiedJedis jedis = mock(UnifiedJedis.class);
+    when(mockJedisClusterFactory.get()).thenReturn(jedis);
+    String storageWorkerKey = configs.getBackplane().getWorkersHashName() + "_storage";
+    when(jedis.hgetAll(storageWorkerKey))
+        .thenReturn(
+            ImmutableMap.of(
+                "worker1",
+                "{\"endpoint\": \"worker1\", \"expireAt\": \"9999999999999\","
+                    + " \"workerType\": 3}"));
+    when(jedis.hdel(storageWorkerKey, "worker1")).thenReturn(1L);
+    RedisShardBackplane backplane = createBackplane("storage-workers-snapshot-test");
+    backplane.start("startTime/test:0000");
+
+    assertThat(backplane.getStorageWorkers()).containsExactly("worker1");
+    assertThat(backplane.getStorageWorkers()).containsExactly("worker1");
+    verify(jedis, times(1)).hgetAll(storageWorkerKey);
+
+    assertThat(backplane.removeWorker("worker1", "test")).isTrue();
+    assertThat(backplane.getStorageWorkers()).isEmpty();
+    verify(jedis, times(1)).hgetAll(storageWorkerKey);
+  }
+
   OperationChange verifyChangePublished(String channel, UnifiedJedis jedis) throws IOException {
     ArgumentCaptor<String> changeCaptor = ArgumentCaptor.forClass(String.class);
     verify(jedis, times(1)).publish(eq(channel), changeCaptor.capture());
@@ -504,4 +528,12 @@ public class RedisShardBackplaneTest {
             JsonFormat.printer().print(shardWorker));
     verify(jedis, times(1)).publish(anyString(), anyString());
   }
+
+  @Test
+  public void parseWorkerChangeIgnoresUnknownFields() throws IOException {
+    WorkerChange workerChange =
+        RedisShardBackplane.parseWorkerChange(
+            "{\"name\": \"worker:8981\", \"addedFromNewerVersion\": 1}");
+    assertThat(workerChange.getName()).isEqualTo("worker:8981");
+  }
 }
@@ -28,9 +28,11 @@ import static redis.clients.jedis.Protocol.Command.SUBSCRIBE;
 import static redis.clients.jedis.Protocol.Command.UNSUBSCRIBE;
 import static redis.clients.jedis.Protocol.ResponseKeyword;
 
+import build.bazel.remote.execution.v2.ExecuteOperationMetadata;
+import build.bazel.remote.execution.v2.ExecutionStage;
+import build.buildfarm.common.function.IOFunction;
 import build.buildfarm.instance.shard.RedisShardSubscriber.TimedWatchFuture;
 import build.buildfarm.v1test.OperationChange;
-import build.buildfarm.v1test.ShardWorker;
 import build.buildfarm.v1test.WorkerChange;
 import build.buildfarm.v1test.WorkerType;
 import com.google.common.collect.ImmutableList;
@@ -41,19 +43,20 @@ import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 import com.google.common.truth.Correspondence;
 import com.google.longrunning.Operation;
+import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -185,8 +188,20 @@ public class RedisShardSubscriberTest {
 
   RedisShardSubscriber createSubscriber(
       ListMultimap<String, TimedWatchFuture> watchers, Executor executor) {
+    return createSubscriber(watchers, /* fetchOperation= */ name -> null, executor);
+  }
+
+  RedisShardSubscriber createSubscriber(
+      ListMultimap<String, TimedWatchFuture> watchers,
+      IOFunction<String, Operation> fetchOperation,
+      Executor executor) {
     return new RedisShardSubscriber(
-        watchers, /* workers= */ null, WorkerType.NONE.getNumber(), "worker-channel", executor);
+        watchers,
+        /* workers= */ null,
+        WorkerType.NONE.getNumber(),
+        "worker-channel",
+        fetchOperation,
+        executor);
   }
 
   RedisShardSubscriber createSubscriber(ListMultimap<String, TimedWatchFuture> watchers) {
@@ -282,6 +297,55 @@ public class RedisShardSubscriberTest {
     assertThat(operationSubscriber.expiredWatchedOperationChannels(now)).isEmpty();
   }
 
+  @Test
+  public void subscribedChannelsOmitsUnsetWorkerChannel() {
+    ListMultimap<String, TimedWatchFuture> watchers =
+        MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    RedisShardSubscriber operationSubscriber =
+        new RedisShardSubscriber(
+            watchers,
+            /* workers= */ null,
+            WorkerType.NONE.getNumber(),
+            /* workerChannel= */ null,
+            /* fetchOperation= */ name -> null,
+            directExecutor());
+    String watchedChannel = "watched-channel";
+    watchers.put(watchedChannel, null);
+    assertThat(operationSubscriber.subscribedChannels()).containsExactly(watchedChannel);
+  }
+
+  @Test
+  public void subscriberGroupRoutesChannelsBySlot() {
+    int shards = 4;
+    ImmutableList.Builder<ListMultimap<String, TimedWatchFuture>> watchersBuilder =
+        ImmutableList.builder();
+    ImmutableList.Builder<RedisShardSubscriber> subscribers = ImmutableList.builder();
+    for (int i = 0; i < shards; i++) {
+      ListMultimap<String, TimedWatchFuture> watchers =
+          MultimapBuilder.linkedHashKeys().arrayListValues().build();
+      watchersBuilder.add(watchers);
+      subscribers.add(createSubscriber(watchers, directExecutor()));
+    }
+    List<ListMultimap<String, TimedWatchFuture>> shardWatchers = watchersBuilder.build();
+    RedisShardSubscriberGroup group = new RedisShardSubscriberGroup(subscribers.build());
+
+    ImmutableList.Builder<String> channels = ImmutableList.builder();
+    for (int i = 0; i < 32; i++) {
+      String channel = "channel-" + i;
+      channels.add(channel);
+      shardWatchers
+          .get(RedisShardSubscriberGroup.shardIndex(channel, shards))
+          .put(channel, new LidlessTimedWatchFuture(new UnobservableWatcher()));
+    }
+
+    for (int i = 0; i < shards; i++) {
+      for (String channel : shardWatchers.get(i).keySet()) {
+        assertThat(group.get(channel)).isSameInstanceAs(group.getSubscribers().get(i));
+      }
+    }
+    assertThat(group.watchedOperationChannels()).containsExactlyElementsIn(channels.build());
+  }
+
   @Test
   public void existingChannelWatcherSuppressesSubscription() {
     ListMultimap<String, TimedWatchFuture> watchers =
@@ -337,6 +401,115 @@ public class RedisShardSubscriberTest {
     proceedThread.join();
   }
 
+  @Test
+  public void notifyFetchesOnlyWatchedOperations() throws InvalidProtocolBufferException {
+    ListMultimap<String, TimedWatchFuture> watchers =
+        MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    String operationName = "notify-operation";
+    Operation operation =
+        Operation.newBuilder()
+            .setName(operationName)
+            .setMetadata(
+                Any.pack(
+                    ExecuteOperationMetadata.newBuilder()
+                        .setStage(ExecutionStage.Value.EXECUTING)
+                        .build()))
+            .build();
+    AtomicInteger fetches = new AtomicInteger();
+    RedisShardSubscriber operationSubscriber =
+        createSubscriber(
+            watchers,
+            name -> {
+              fetches.incrementAndGet();
+              return operation;
+            },
+            directExecutor());
+    String notifyChannel = "notify-channel";
+    AtomicReference<Operation> observed = new AtomicReference<>();
+    watchers.put(
+        notifyChannel,
+        new LidlessTimedWatchFuture(
+            new TimedWatcher(Instant.EPOCH) {
+              @Override
+              public void observe(Operation observedOperation) {
+                observed.set(observedOperation);
+              }
+            }));
+    String notifyJson =
+        printOperationChange(
+            OperationChange.newBuilder()
+                .setNotify(
+                    OperationChange.Notify.newBuilder()
+                        .setExpiresAt(toTimestamp(Instant.now().plusSeconds(10)))
+                        .setName(operationName)
+                        .build())
+                .build());
+
+    operationSubscriber.onMessage("unwatched-channel", notifyJson);
+    assertThat(fetches.get()).isEqualTo(0);
+
+    operationSubscriber.onMessage(notifyChannel, notifyJson);
+    assertThat(fetches.get()).isEqualTo(1);
+    assertThat(observed.get()).isEqualTo(operation);
+    assertThat(watchers.get(notifyChannel).get(0).getWatcher().isExpiredAt(Instant.now()))
+        .isFalse();
+  }
+
+  @Test
+  public void notifyDuringFetchFetchesAgain() throws InvalidProtocolBufferException {
+    ListMultimap<String, TimedWatchFuture> watchers =
+        MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    String operationName = "notify-during-fetch-operation";
+    String notifyChannel = "notify-during-fetch-channel";
+    String notifyJson =
+        printOperationChange(
+            OperationChange.newBuilder()
+                .setNotify(
+                    OperationChange.Notify.newBuilder()
+                        .setExpiresAt(toTimestamp(Instant.now().plusSeconds(10)))
+                        .setName(operationName)
+                        .build())
+                .build());
+    AtomicInteger fetches = new AtomicInteger();
+    AtomicReference<RedisShardSubscriber> subscriberReference = new AtomicReference<>();
+    RedisShardSubscriber operationSubscriber =
+        createSubscriber(
+            watchers,
+            name -> {
+              // a change stored and published while the first fetch is in progress
+              if (fetches.incrementAndGet() == 1) {
+                subscriberReference.get().onMessage(notifyChannel, notifyJson);
+              }
+              ExecutionStage.Value stage =
+                  fetches.get() == 1 ? ExecutionStage.Value.QUEUED : ExecutionStage.Value.EXECUTING;
+              return Operation.newBuilder()
+                  .setName(name)
+                  .setMetadata(
+                      Any.pack(ExecuteOperationMetadata.newBuilder().setStage(stage).build()))
+                  .build();
+            },
+            directExecutor());
+    subscriberReference.set(operationSubscriber);
+    AtomicReference<Operation> observed = new AtomicReference<>();
+    watchers.put(
+        notifyChannel,
+        new LidlessTimedWatchFuture(
+            new TimedWatcher(Instant.EPOCH) {
+              @Override
+              public void observe(Operation observedOperation) {
+                observed.set(observedOperation);
+              }
+            }));
+
+    operationSubscriber.onMessage(notifyChannel, notifyJson);
+    assertThat(fetches.get()).isEqualTo(2);
+    assertThat(observed.get().getMetadata().unpack(ExecuteOperationMetadata.class).getStage())
+        .isEqualTo(ExecutionStage.Value.EXECUTING);
+
+    operationSubscriber.onMessage(notifyChannel, notifyJson);
+    assertThat(fetches.get()).isEqualTo(3);
+  }
+
   @Test
   public void shouldResetWatchers() {
     ListMultimap<String, TimedWatchFuture> watchers =
@@ -405,12 +578,17 @@ public class RedisShardSubscriberTest {
 
   @Test
   public void addSupportedWorkerTypeOnWorkerChange() throws IOException {
-    Map<String, ShardWorker> workers = new HashMap<>();
+    WorkerSnapshot workers = new WorkerSnapshot();
     int storageWorkerType = WorkerType.STORAGE.getNumber();
     String workerChannel = "worker-channel";
     RedisShardSubscriber operationSubscriber =
         new RedisShardSubscriber(
-            /* watchers */ null, workers, storageWorkerType, workerChannel, directExecutor());
+            /* watchers */ null,
+            workers,
+            storageWorkerType,
+            workerChannel,
+            /* fetchOperation= */ name -> null,
+            directExecutor());
     String workerChangeJson =
         JsonFormat.printer()
             .print(
@@ -419,17 +597,22 @@ public class RedisShardSubscriberTest {
                     .setAdd(WorkerChange.Add.newBuilder().setWorkerType(storageWorkerType).build())
                     .build());
     operationSubscriber.onMessage(workerChannel, workerChangeJson);
-    assertThat(workers.size()).isEqualTo(1);
+    assertThat(workers.get().size()).isEqualTo(1);
   }
 
   @Test
   public void ignoreUnsupportedWorkerTypeOnWorkerChange() throws IOException {
-    Map<String, ShardWorker> workers = new HashMap<>();
+    WorkerSnapshot workers = new WorkerSnapshot();
     int workerType = WorkerType.STORAGE.getNumber();
     String workerChannel = "worker-channel";
     RedisShardSubscriber operationSubscriber =
         new RedisShardSubscriber(
-            /* watchers */ null, workers, workerType, workerChannel, directExecutor());
+            /* watchers */ null,
+            workers,
+            workerType,
+            workerChannel,
+            /* fetchOperation= */ name -> null,
+            directExecutor());
     String workerChangeJson =
         JsonFormat.printer()
             .print(
@@ -441,6 +624,6 @@ public class RedisShardSubscriberTest {
                             .build())
                     .build());
     operationSubscriber.onMessage(workerChannel, workerChangeJson);
-    assertThat(workers.isEmpty()).isTrue();
+    assertThat(workers.get().isEmpty()).isTrue();
   }
 }
@@ -0,0 +1,283 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import build.bazel.remote.execution.v2.Compressor;
+import build.bazel.remote.execution.v2.RequestMetadata;
+import build.buildfarm.backplane.Backplane;
+import build.buildfarm.common.config.BuildfarmConfigs;
+import build.buildfarm.instance.stub.StubInstance;
+import build.buildfarm.v1test.Digest;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RemoteInputStreamFactoryTest {
+  private static final ByteString CONTENT = ByteString.copyFromUtf8("abcdefghijklmnopqrstuvwxyz");
+  private static final Digest DIGEST =
+      Digest.newBuilder().setHash("alphabet").setSize(CONTENT.size()).build();
+  private static final int RANGE_SIZE = 4;
+
+  private final BuildfarmConfigs configs = BuildfarmConfigs.getInstance();
+  private Backplane backplane;
+  private StubInstance first;
+  private StubInstance second;
+
+  @Before
+  public void setUp() throws IOException {
+    configs.setRangedFetchMinSizeBytes(1);
+    configs.setRangedFetchRangeSizeBytes(RANGE_SIZE);
+    configs.setRangedFetchParallelism(2);
+    backplane = mock(Backplane.class);
+    first = mock(StubInstance.class);
+    second = mock(StubInstance.class);
+    when(backplane.getStorageWorkers())
+        .thenAnswer(invocation -> Sets.newHashSet("first", "second"));
+    when(backplane.getBlobLocationSet(eq(DIGEST))).thenReturn(ImmutableSet.of("first", "second"));
+  }
+
+  @After
+  public void tearDown() {
+    // reset BuildfarmConfigs
+    configs.setRangedFetchMinSizeBytes(0);
+    configs.setRangedFetchRangeSizeBytes(16 * 1024 * 1024);
+    configs.setRangedFetchParallelism(4);
+    configs.setRangedFetchMaxBytes(256 * 1024 * 1024);
+  }
+
+  private RemoteInputStreamFactory newFactory() {
+    Map<String, StubInstance> stubs = ImmutableMap.of("first", first, "second", second);
+    return new RemoteInputStreamFactory(
+        backplane,
+        new Random(),
+        CacheBuilder.newBuilder().build(CacheLoader.from(stubs::get)),
+        (worker, t, context) -> {});
+  }
+
+  private static void provideRanges(StubInstance stub) throws IOException {
+    when(stub.newBlobInput(
+            eq(Compressor.Value.IDENTITY),
+            eq(DIGEST),
+            anyLong(),
+            anyLong(),
+            any(RequestMetadata.class)))
+        .thenAnswer(
+            invocation -> {
+              int offset = Math.toIntExact(invocation.<Long>getArgument(2));
+              int limit = Math.toIntExact(invocation.<Long>getArgument(3));
+              return CONTENT.substring(offset, offset + limit).newInput();
+            });
+  }
+
+  private static void provideStream(StubInstance stub) throws IOException {
+    when(stub.newBlobInput(
+            eq(Compressor.Value.IDENTITY),
+            eq(DIGEST),
+            anyLong(),
+            anyLong(),
+            any(TimeUnit.class),
+            any(RequestMetadata.class)))
+        .thenAnswer(
+            invocation ->
+                CONTENT.substring(Math.toIntExact(invocation.<Long>getArgument(2))).newInput());
+  }
+
+  private static ByteString read(InputStream in) throws IOException {
+    try (in) {
+      return ByteString.readFrom(in);
+    }
+  }
+
+  @Test
+  public void rangesAreReadInOrder() throws IOException {
+    provideRanges(first);
+    provideRanges(second);
+    RemoteInputStreamFactory factory = newFactory();
+
+    assertThat(read(factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 0)))
+        .isEqualTo(CONTENT);
+    assertThat(read(factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 5)))
+        .isEqualTo(CONTENT.substring(5));
+    assertThat(factory.getHotBlobReplicator().load("first")).isEqualTo(0L);
+    assertThat(factory.getHotBlobReplicator().load("second")).isEqualTo(0L);
+  }
+
+  @Test
+  public void rangesFailOverToRemainingHolders() throws IOException {
+    when(first.newBlobInput(
+            eq(Compressor.Value.IDENTITY),
+            eq(DIGEST),
+            anyLong(),
+            anyLong(),
+            any(RequestMetadata.class)))
+        .thenThrow(new NoSuchFileException("alphabet"));
+    provideRanges(second);
+    RemoteInputStreamFactory factory = newFactory();
+
+    assertThat(read(factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 0)))
+        .isEqualTo(CONTENT);
+    verify(backplane, atLeastOnce()).removeBlobLocation(DIGEST, "first");
+    assertThat(factory.getHotBlobReplicator().load("first")).isEqualTo(0L);
+  }
+
+  @Test
+  public void overlongRangeContinuesAsStream() throws IOException {
+    // a holder that ignores the limit of the range
+    when(first.newBlobInput(
+            eq(Compressor.Value.IDENTITY),
+            eq(DIGEST),
+            anyLong(),
+            anyLong(),
+            any(RequestMetadata.class)))
+        .thenAnswer(
+            invocation ->
+                CONTENT.substring(Math.toIntExact(invocation.<Long>getArgument(2))).newInput());
+    provideStream(first);
+    when(backplane.getBlobLocationSet(eq(DIGEST))).thenReturn(ImmutableSet.of("first"));
+    RemoteInputStreamFactory factory = newFactory();
+
+    assertThat(read(factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 0)))
+        .isEqualTo(CONTENT);
+    verify(first, atLeastOnce())
+        .newBlobInput(
+            eq(Compressor.Value.IDENTITY),
+            eq(DIGEST),
+            eq(0L),
+            anyLong(),
+            any(TimeUnit.class),
+            any(RequestMetadata.class));
+  }
+
+  @Test
+  public void rangesAreBoundedByHeldBytes() throws IOException {
+    configs.setRangedFetchMaxBytes(RANGE_SIZE);
+    AtomicInteger fetching = new AtomicInteger();
+    AtomicInteger maxFetching = new AtomicInteger();
+    for (StubInstance stub : ImmutableSet.of(first, second)) {
+      when(stub.newBlobInput(
+              eq(Compressor.Value.IDENTITY),
+              eq(DIGEST),
+              anyLong(),
+              anyLong(),
+              any(RequestMetadata.class)))
+          .thenAnswer(
+              invocation -> {
+                maxFetching.accumulateAndGet(fetching.incrementAndGet(), Math::max);
+                int offset = Math.toIntExact(invocation.<Long>getArgument(2));
+                int limit = Math.toIntExact(invocation.<Long>getArgument(3));
+                fetching.decrementAndGet();
+                return CONTENT.substring(offset, offset + limit).newInput();
+              });
+    }
+    RemoteInputStreamFactory factory = newFactory();
+
+    assertThat(read(factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 0)))
+        .isEqualTo(CONTENT);
+    assertThat(maxFetching.get()).isEqualTo(1);
+    verify(first, never())
+        .newBlobInput(
+            any(Compressor.Value.class),
+            any(Digest.class),
+            anyLong(),
+            anyLong(),
+            any(TimeUnit.class),
+            any(RequestMetadata.class));
+  }
+
+  @Test
+  public void rangesLargerThanHeldBytesAreStreamed() throws IOException {
+    configs.setRangedFetchMaxBytes(RANGE_SIZE - 1);
+    provideStream(first);
+    provideStream(second);
+    RemoteInputStreamFactory factory = newFactory();
+
+    assertThat(read(factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 0)))
+        .isEqualTo(CONTENT);
+    verify(first, never())
+        .newBlobInput(
+            any(Compressor.Value.class),
+            any(Digest.class),
+            anyLong(),
+            anyLong(),
+            any(RequestMetadata.class));
+  }
+
+  @Test
+  public void closeCancelsPendingRanges() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    for (StubInstance stub : ImmutableSet.of(first, second)) {
+      when(stub.newBlobInput(
+              eq(Compressor.Value.IDENTITY),
+              eq(DIGEST),
+              anyLong(),
+              anyLong(),
+              any(RequestMetadata.class)))
+          .thenAnswer(
+              invocation -> {
+                long offset = invocation.getArgument(2);
+                if (offset != 0) {
+                  started.countDown();
+                  try {
+                    new CountDownLatch(1).await();
+                  } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new ClosedByInterruptException();
+                  }
+                }
+                return CONTENT.substring(0, RANGE_SIZE).newInput();
+              });
+    }
+    RemoteInputStreamFactory factory = newFactory();
+
+    InputStream in = factory.newInput(Compressor.Value.IDENTITY, DIGEST, /* offset= */ 0);
+    byte[] buf = new byte[RANGE_SIZE];
+    assertThat(in.read(buf)).isEqualTo(RANGE_SIZE);
+    assertThat(ByteString.copyFrom(buf)).isEqualTo(CONTENT.substring(0, RANGE_SIZE));
+    assertThat(started.await(10, SECONDS)).isTrue();
+    in.close();
+
+    assertThat(interrupted.await(10, SECONDS)).isTrue();
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RendezvousHashTest {
+  private static final Map<String, Long> WORKERS =
+      ImmutableMap.of("worker1", 0L, "worker2", 0L, "worker3", 0L, "worker4", 0L);
+
+  @Test
+  public void ownersAreStableAndDistinct() {
+    List<String> owners = RendezvousHash.owners("key", WORKERS, 2);
+
+    assertThat(owners).hasSize(2);
+    assertThat(owners).containsNoDuplicates();
+    assertThat(RendezvousHash.owners("key", WORKERS, 2)).isEqualTo(owners);
+    assertThat(RendezvousHash.owners("key", WORKERS, 10)).hasSize(WORKERS.size());
+  }
+
+  @Test
+  public void removingWorkerOnlyMovesItsKeys() {
+    Map<String, Long> remaining = new HashMap<>(WORKERS);
+    remaining.remove("worker4");
+
+    for (int i = 0; i < 1000; i++) {
+      String key = "key" + i;
+      String owner = RendezvousHash.owners(key, WORKERS, 1).get(0);
+      String newOwner = RendezvousHash.owners(key, remaining, 1).get(0);
+      if (!owner.equals("worker4")) {
+        assertThat(newOwner).isEqualTo(owner);
+      }
+    }
+  }
+
+  @Test
+  public void ownershipFollowsCapacity() {
+    Map<String, Long> capacities = ImmutableMap.of("large", 3000L, "small", 1000L);
+
+    int large = 0;
+    for (int i = 0; i < 4000; i++) {
+      if (RendezvousHash.owners("key" + i, capacities, 1).get(0).equals("large")) {
+        large++;
+      }
+    }
+    // expect three quarters of the keys
+    assertThat(large).isGreaterThan(2700);
+    assertThat(large).isLessThan(3300);
+  }
+}
@@ -48,6 +48,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import build.bazel.remote.execution.v2.Action;
+import build.bazel.remote.execution.v2.BatchReadBlobsResponse.Response;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsRequest;
+import build.bazel.remote.execution.v2.BatchUpdateBlobsResponse;
 import build.bazel.remote.execution.v2.ActionResult;
 import build.bazel.remote.execution.v2.Command;
 import build.bazel.remote.execution.v2.Compressor;
@@ -69,9 +72,11 @@ import build.buildfarm.common.DigestUtil;
 import build.buildfarm.common.DigestUtil.ActionKey;
 import build.buildfarm.common.DigestUtil.HashFunction;
 import build.buildfarm.common.Poller;
+import build.buildfarm.common.Size;
 import build.buildfarm.common.Watcher;
 import build.buildfarm.common.Write.NullWrite;
 import build.buildfarm.common.config.BuildfarmConfigs;
+import build.buildfarm.instance.Instance.PutAllBlobsException;
 import build.buildfarm.instance.stub.StubInstance;
 import build.buildfarm.v1test.ExecuteEntry;
 import build.buildfarm.v1test.QueueEntry;
@@ -82,6 +87,7 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -96,6 +102,8 @@ import com.google.protobuf.util.Durations;
 import com.google.rpc.Code;
 import com.google.rpc.PreconditionFailure;
 import com.google.rpc.PreconditionFailure.Violation;
+import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.protobuf.StatusProto;
@@ -1153,6 +1161,296 @@ public class ServerInstanceTest {
     verify(mockInstanceLoader, atLeastOnce()).load(eq(workerName));
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void getAllBlobsFutureBatchesReadsByWorker() throws Exception {
+    when(mockInstanceLoader.load(anyString())).thenReturn(mockWorkerInstance);
+    when(mockBackplane.getStorageWorkers()).thenReturn(ImmutableSet.of("worker1", "worker2"));
+
+    ByteString fooBlob = ByteString.copyFromUtf8("foo");
+    ByteString barBlob = ByteString.copyFromUtf8("bar");
+    build.buildfarm.v1test.Digest fooDigest = DIGEST_UTIL.compute(fooBlob);
+    build.buildfarm.v1test.Digest barDigest = DIGEST_UTIL.compute(barBlob);
+    when(mockBackplane.getBlobDigestsWorkers(any(Iterable.class)))
+        .thenReturn(
+            ImmutableMap.of(
+                fooDigest, ImmutableSet.of("worker1"), barDigest, ImmutableSet.of("worker1")));
+    List<Response> workerResponses =
+        ImmutableList.of(
+            Response.newBuilder()
+                .setDigest(DigestUtil.toDigest(barDigest))
+                .setData(barBlob)
+                .setStatus(com.google.rpc.Status.newBuilder().setCode(Code.OK.getNumber()))
+                .build(),
+            Response.newBuilder()
+                .setDigest(DigestUtil.toDigest(fooDigest))
+                .setData(fooBlob)
+                .setStatus(com.google.rpc.Status.newBuilder().setCode(Code.OK.getNumber()))
+                .build());
+    when(mockWorkerInstance.getAllBlobsFuture(any(Iterable.class), any(DigestFunction.Value.class)))
+        .thenReturn(immediateFuture(workerResponses));
+
+    List<Response> responses =
+        instance
+            .getAllBlobsFuture(
+                ImmutableList.of(DigestUtil.toDigest(fooDigest), DigestUtil.toDigest(barDigest)),
+                DIGEST_UTIL.getDigestFunction())
+            .get();
+
+    assertThat(Iterables.transform(responses, Response::getData))
+        .containsExactly(fooBlob, barBlob)
+        .inOrder();
+    verify(mockInstanceLoader, times(1)).load(eq("worker1"));
+    verify(mockWorkerInstance, times(1))
+        .getAllBlobsFuture(any(Iterable.class), any(DigestFunction.Value.class));
+    verify(mockWorkerInstance, never())
+        .getBlob(
+            any(Compressor.Value.class),
+            any(build.buildfarm.v1test.Digest.class),
+            any(Long.class),
+            any(Long.class),
+            any(ServerCallStreamObserver.class),
+            any(RequestMetadata.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void undecodableCompressedFetchIsCancelledWithDataLoss() throws Exception {
+    BuildfarmConfigs buildfarmConfigs = instance.getBuildFarmConfigs();
+    buildfarmConfigs.setInternalZstdMinSizeBytes(1);
+    ServerInstance compressingInstance =
+        new ServerInstance(
+            "shard",
+            mockBackplane,
+            new ShardActionCache(10, mockBackplane, newDirectExecutorService()),
+            /* runDispatchedMonitor= */ false,
+            /* dispatchedMonitorIntervalSeconds= */ 0,
+            /* runOperationQueuer= */ false,
+            /* maxBlobSize= */ 0,
+            /* maxCpu= */ 1,
+            /* maxRequeueAttempts= */ 1,
+            /* maxActionTimeout= */ Duration.getDefaultInstance(),
+            /* useDenyList= */ true,
+            /* mergeExecutions= */ true,
+            mockOnStop,
+            CacheBuilder.newBuilder().build(mockInstanceLoader),
+            /* actionCacheFetchService= */ listeningDecorator(newSingleThreadExecutor()),
+            false);
+    // reset BuildfarmConfigs
+    buildfarmConfigs.setInternalZstdMinSizeBytes(0);
+
+    ByteString blob = ByteString.copyFromUtf8("content");
+    build.buildfarm.v1test.Digest blobDigest = DIGEST_UTIL.compute(blob);
+    when(mockBackplane.getStorageWorkers()).thenReturn(ImmutableSet.of("worker"));
+    when(mockBackplane.getBlobLocationSet(eq(blobDigest))).thenReturn(ImmutableSet.of("worker"));
+    when(mockInstanceLoader.load(eq("worker"))).thenReturn(mockWorkerInstance);
+    List<Context> fetchContexts = new ArrayList<>();
+    doAnswer(
+            (Answer<Void>)
+                invocation -> {
+                  StreamObserver<ByteString> blobObserver =
+                      (StreamObserver) invocation.getArguments()[4];
+                  fetchContexts.add(Context.current());
+                  blobObserver.onNext(ByteString.copyFromUtf8("not zstd"));
+                  // the fetch reports its cancellation
+                  blobObserver.onError(Status.CANCELLED.asException());
+                  return null;
+                })
+        .when(mockWorkerInstance)
+        .getBlob(
+            eq(Compressor.Value.ZSTD),
+            eq(blobDigest),
+            eq(0L),
+            eq(0L),
+            any(ServerCallStreamObserver.class),
+            any(RequestMetadata.class));
+    ServerCallStreamObserver<ByteString> blobObserver = mock(ServerCallStreamObserver.class);
+
+    compressingInstance.getBlob(
+        Compressor.Value.IDENTITY,
+        blobDigest,
+        /* offset= */ 0,
+        /* count= */ 0,
+        blobObserver,
+        RequestMetadata.getDefaultInstance());
+
+    assertThat(fetchContexts).hasSize(1);
+    assertThat(fetchContexts.get(0).isCancelled()).isTrue();
+    ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+    verify(blobObserver, times(1)).onError(errorCaptor.capture());
+    assertThat(Status.fromThrowable(errorCaptor.getValue()).getCode())
+        .isEqualTo(Status.Code.DATA_LOSS);
+    verify(blobObserver, never()).onNext(any(ByteString.class));
+    verify(blobObserver, never()).onCompleted();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void endedFetchesCancelTheirContexts() throws Exception {
+    ByteString blob = ByteString.copyFromUtf8("content");
+    build.buildfarm.v1test.Digest blobDigest = DIGEST_UTIL.compute(blob);
+    when(mockBackplane.getStorageWorkers()).thenReturn(ImmutableSet.of("worker1", "worker2"));
+    when(mockBackplane.getBlobLocationSet(eq(blobDigest)))
+        .thenReturn(ImmutableSet.of("worker1", "worker2"));
+    when(mockInstanceLoader.load(any(String.class))).thenReturn(mockWorkerInstance);
+    List<Context> fetchContexts = new ArrayList<>();
+    doAnswer(
+            (Answer<Void>)
+                invocation -> {
+                  StreamObserver<ByteString> blobObserver =
+                      (StreamObserver) invocation.getArguments()[4];
+                  // each fetch, including the retry, starts in a live context
+                  assertThat(Context.current().isCancelled()).isFalse();
+                  fetchContexts.add(Context.current());
+                  if (fetchContexts.size() == 1) {
+                    blobObserver.onError(Status.NOT_FOUND.asException());
+                  } else {
+                    blobObserver.onNext(blob);
+                    blobObserver.onCompleted();
+                  }
+                  return null;
+                })
+        .when(mockWorkerInstance)
+        .getBlob(
+            eq(Compressor.Value.IDENTITY),
+            eq(blobDigest),
+            eq(0L),
+            eq(0L),
+            any(ServerCallStreamObserver.class),
+            any(RequestMetadata.class));
+    ServerCallStreamObserver<ByteString> blobObserver = mock(ServerCallStreamObserver.class);
+
+    instance.getBlob(
+        Compressor.Value.IDENTITY,
+        blobDigest,
+        /* offset= */ 0,
+        /* count= */ 0,
+        blobObserver,
+        RequestMetadata.getDefaultInstance());
+
+    assertThat(fetchContexts).hasSize(2);
+    assertThat(fetchContexts.get(0).isCancelled()).isTrue();
+    assertThat(fetchContexts.get(1).isCancelled()).isTrue();
+    assertThat(Context.current().isCancelled()).isFalse();
+    verify(blobObserver, times(1)).onNext(blob);
+    verify(blobObserver, times(1)).onCompleted();
+    verify(blobObserver, never()).onError(any(Throwable.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void putAllBlobsFuturePacksBlobsForWorker() throws Exception {
+    when(mockInstanceLoader.load(eq("worker"))).thenReturn(mockWorkerInstance);
+    when(mockBackplane.getStorageWorkers()).thenReturn(ImmutableSet.of("worker"));
+
+    ByteString fooBlob = ByteString.copyFromUtf8("foo");
+    ByteString barBlob = ByteString.copyFromUtf8("bar");
+    Digest fooDigest = DigestUtil.toDigest(DIGEST_UTIL.compute(fooBlob));
+    Digest barDigest = DigestUtil.toDigest(DIGEST_UTIL.compute(barBlob));
+    com.google.rpc.Status invalid =
+        com.google.rpc.Status.newBuilder().setCode(Code.INVALID_ARGUMENT.getNumber()).build();
+    PutAllBlobsException exception = new PutAllBlobsException();
+    exception.addFailedResponse(
+        BatchUpdateBlobsResponse.Response.newBuilder()
+            .setDigest(barDigest)
+            .setStatus(invalid)
+            .build());
+    when(mockWorkerInstance.putAllBlobs(
+            any(Iterable.class), any(DigestFunction.Value.class), any(RequestMetadata.class)))
+        .thenThrow(exception);
+
+    List<BatchUpdateBlobsResponse.Response> responses =
+        instance
+            .putAllBlobsFuture(
+                ImmutableList.of(
+                    BatchUpdateBlobsRequest.Request.newBuilder()
+                        .setDigest(fooDigest)
+                        .setData(fooBlob)
+                        .build(),
+                    BatchUpdateBlobsRequest.Request.newBuilder()
+                        .setDigest(barDigest)
+                        .setData(barBlob)
+                        .build()),
+                DIGEST_UTIL.getDigestFunction(),
+                /* writeDeadlineAfter= */ 10,
+                SECONDS,
+                RequestMetadata.getDefaultInstance())
+            .get();
+
+    verify(mockWorkerInstance, times(1))
+        .putAllBlobs(
+            any(Iterable.class), any(DigestFunction.Value.class), any(RequestMetadata.class));
+    assertThat(responses).hasSize(2);
+    assertThat(responses.get(0).getDigest()).isEqualTo(fooDigest);
+    assertThat(responses.get(0).getStatus().getCode()).isEqualTo(Code.OK.getNumber());
+    assertThat(responses.get(1).getDigest()).isEqualTo(barDigest);
+    assertThat(responses.get(1).getStatus()).isEqualTo(invalid);
+  }
+
+  private static BatchUpdateBlobsRequest.Request updateRequest(ByteString blob) {
+    return BatchUpdateBlobsRequest.Request.newBuilder()
+        .setDigest(DigestUtil.toDigest(DIGEST_UTIL.compute(blob)))
+        .setData(blob)
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void putAllBlobsFutureCountsEncodedSizeAgainstBatches() throws Exception {
+    when(mockInstanceLoader.load(eq("worker"))).thenReturn(mockWorkerInstance);
+    when(mockBackplane.getStorageWorkers()).thenReturn(ImmutableSet.of("worker"));
+    // the content alone fits in one batch, but not with each digest and its framing
+    ImmutableList.Builder<BatchUpdateBlobsRequest.Request> requests = ImmutableList.builder();
+    for (int i = 0; i < 3; i++) {
+      byte[] content = new byte[Math.toIntExact(Size.mbToBytes(1))];
+      Arrays.fill(content, (byte) i);
+      requests.add(updateRequest(ByteString.copyFrom(content)));
+    }
+
+    List<BatchUpdateBlobsResponse.Response> responses =
+        instance
+            .putAllBlobsFuture(
+                requests.build(),
+                DIGEST_UTIL.getDigestFunction(),
+                /* writeDeadlineAfter= */ 10,
+                SECONDS,
+                RequestMetadata.getDefaultInstance())
+            .get();
+
+    verify(mockWorkerInstance, times(2))
+        .putAllBlobs(
+            any(Iterable.class), any(DigestFunction.Value.class), any(RequestMetadata.class));
+    assertThat(responses).hasSize(3);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void putAllBlobsFutureAppliesWriteDeadlineToEachBatch() throws Exception {
+    when(mockInstanceLoader.load(eq("worker"))).thenReturn(mockWorkerInstance);
+    when(mockBackplane.getStorageWorkers()).thenReturn(ImmutableSet.of("worker"));
+    List<Deadline> deadlines = new ArrayList<>();
+    when(mockWorkerInstance.putAllBlobs(
+            any(Iterable.class), any(DigestFunction.Value.class), any(RequestMetadata.class)))
+        .thenAnswer(
+            invocation -> {
+              deadlines.add(Context.current().getDeadline());
+              return ImmutableList.of();
+            });
+
+    instance
+        .putAllBlobsFuture(
+            ImmutableList.of(updateRequest(ByteString.copyFromUtf8("foo"))),
+            DIGEST_UTIL.getDigestFunction(),
+            /* writeDeadlineAfter= */ 10,
+            SECONDS,
+            RequestMetadata.getDefaultInstance())
+        .get();
+
+    assertThat(deadlines).hasSize(1);
+    assertThat(deadlines.get(0)).isNotNull();
+    assertThat(deadlines.get(0).timeRemaining(SECONDS)).isAtMost(10);
+  }
+
   @Test
   public void findMissingBlobsTest_ViaBackPlane() throws Exception {
     Set<String> activeWorkers = ImmutableSet.of("worker1", "worker2", "worker3");
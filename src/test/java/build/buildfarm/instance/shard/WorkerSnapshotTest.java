@@ -0,0 +1,82 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.instance.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.buildfarm.v1test.ShardWorker;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class WorkerSnapshotTest {
+  private static ShardWorker worker(String name) {
+    return ShardWorker.newBuilder().setEndpoint(name).build();
+  }
+
+  @Test
+  public void changesUpdateTheView() {
+    WorkerSnapshot snapshot = new WorkerSnapshot();
+    snapshot.put(worker("worker1"));
+    snapshot.put(worker("worker2"));
+
+    assertThat(snapshot.remove("worker1")).isTrue();
+    assertThat(snapshot.remove("worker1")).isFalse();
+    assertThat(snapshot.get().keySet()).containsExactly("worker2");
+  }
+
+  @Test
+  public void changesDuringRefreshAreReplayedOntoItsResult() {
+    WorkerSnapshot snapshot = new WorkerSnapshot();
+    snapshot.put(worker("worker1"));
+
+    snapshot.beginRefresh();
+    // arrive after the scan has read the registrations
+    snapshot.put(worker("worker3"));
+    snapshot.remove("worker2");
+    snapshot.replace(ImmutableMap.of("worker1", worker("worker1"), "worker2", worker("worker2")));
+
+    assertThat(snapshot.get().keySet()).containsExactly("worker1", "worker3");
+  }
+
+  @Test
+  public void changesAfterRefreshAreNotReplayed() {
+    WorkerSnapshot snapshot = new WorkerSnapshot();
+    snapshot.beginRefresh();
+    snapshot.put(worker("worker1"));
+    snapshot.replace(ImmutableMap.of());
+
+    snapshot.replace(ImmutableMap.of("worker2", worker("worker2")));
+
+    assertThat(snapshot.get().keySet()).containsExactly("worker2");
+  }
+
+  @Test
+  public void changesDuringFailedRefreshAreNotReplayed() {
+    WorkerSnapshot snapshot = new WorkerSnapshot();
+    snapshot.put(worker("worker1"));
+    snapshot.beginRefresh();
+    snapshot.remove("worker1");
+    // the scan failed without a replace
+    snapshot.endRefresh();
+
+    // a later scan observes worker1 registered again
+    snapshot.replace(ImmutableMap.of("worker1", worker("worker1")));
+
+    assertThat(snapshot.get().keySet()).containsExactly("worker1");
+  }
+}
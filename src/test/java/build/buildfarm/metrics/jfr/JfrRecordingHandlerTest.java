@@ -0,0 +1,117 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.metrics.jfr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JfrRecordingHandlerTest {
+  private HttpServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(JfrRecordingHandler.PATH, new JfrRecordingHandler(2));
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private HttpURLConnection get(String query) throws IOException {
+    URI uri =
+        URI.create(
+            "http://"
+                + server.getAddress().getHostString()
+                + ":"
+                + server.getAddress().getPort()
+                + JfrRecordingHandler.PATH
+                + "?"
+                + query);
+    return (HttpURLConnection) uri.toURL().openConnection();
+  }
+
+  @Test
+  public void recordingIsReturned() throws IOException {
+    HttpURLConnection connection = get("seconds=1&events=allocation,monitor,socket");
+    assertThat(connection.getResponseCode()).isEqualTo(200);
+    try (InputStream in = connection.getInputStream()) {
+      byte[] recording = in.readAllBytes();
+      // the magic of the JFR file format
+      assertThat(Arrays.copyOf(recording, 4)).isEqualTo(new byte[] {'F', 'L', 'R', 0});
+    }
+  }
+
+  @Test
+  public void recordingExcludesProcessEnvironment() throws IOException {
+    HttpURLConnection connection = get("seconds=1&settings=default");
+    assertThat(connection.getResponseCode()).isEqualTo(200);
+    Path path = Files.createTempFile("recording", ".jfr");
+    try {
+      try (InputStream in = connection.getInputStream()) {
+        Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      List<String> eventTypes = new ArrayList<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+        eventTypes.add(event.getEventType().getName());
+      }
+      assertThat(eventTypes).isNotEmpty();
+      assertThat(eventTypes)
+          .containsNoneOf(
+              "jdk.InitialEnvironmentVariable",
+              "jdk.InitialSystemProperty",
+              "jdk.JVMInformation",
+              "jdk.SystemProcess");
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void durationIsLimited() throws IOException {
+    assertThat(get("seconds=3").getResponseCode()).isEqualTo(400);
+    assertThat(get("seconds=0").getResponseCode()).isEqualTo(400);
+    assertThat(get("seconds=soon").getResponseCode()).isEqualTo(400);
+  }
+
+  @Test
+  public void unknownSettingsAndEventsAreRejected() throws IOException {
+    assertThat(get("settings=custom").getResponseCode()).isEqualTo(400);
+    assertThat(get("events=allocation,gc").getResponseCode()).isEqualTo(400);
+  }
+}
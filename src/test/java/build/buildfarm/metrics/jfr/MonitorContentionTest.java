@@ -0,0 +1,34 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.metrics.jfr;
+
+import static build.buildfarm.metrics.jfr.MonitorContention.OTHER_CLASSES;
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MonitorContentionTest {
+  @Test
+  public void labelsAreLimitedToFirstClasses() {
+    MonitorContention monitorContention = new MonitorContention(/* maxClasses= */ 2);
+    assertThat(monitorContention.label("a.A")).isEqualTo("a.A");
+    assertThat(monitorContention.label("b.B")).isEqualTo("b.B");
+    assertThat(monitorContention.label("c.C")).isEqualTo(OTHER_CLASSES);
+    assertThat(monitorContention.label("a.A")).isEqualTo("a.A");
+  }
+}
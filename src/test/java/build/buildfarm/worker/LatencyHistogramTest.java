@@ -0,0 +1,82 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+  @Test
+  public void emptyHistogramReportsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertThat(histogram.getCount()).isEqualTo(0L);
+    assertThat(histogram.percentiles(50, 99)).asList().containsExactly(0L, 0L);
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long usecs = 1; usecs <= 10; usecs++) {
+      histogram.record(usecs);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(10L);
+    assertThat(histogram.percentiles(0, 50, 90, 100)).asList().containsExactly(1L, 5L, 9L, 10L);
+  }
+
+  @Test
+  public void percentilesAreWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long usecs = 1; usecs <= 100_000; usecs++) {
+      histogram.record(usecs);
+    }
+
+    long[] values = histogram.percentiles(50, 90, 99, 100);
+    long[] expected = {50_000, 90_000, 99_000, 100_000};
+    for (int i = 0; i < expected.length; i++) {
+      assertThat(values[i]).isAtLeast(expected[i]);
+      assertThat((double) values[i]).isAtMost(expected[i] * (1 + 1 / 16.0));
+    }
+  }
+
+  @Test
+  public void tailIsNotHiddenByAverage() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 980; i++) {
+      histogram.record(1_000);
+    }
+    for (int i = 0; i < 20; i++) {
+      histogram.record(60_000_000);
+    }
+
+    long[] values = histogram.percentiles(50, 99);
+    assertThat(values[0]).isAtMost(1_063L);
+    assertThat(values[1]).isAtLeast(60_000_000L);
+  }
+
+  @Test
+  public void bucketsCoverAllValues() {
+    for (long value : new long[] {0, 15, 16, 17, 31, 32, 1L << 40, Long.MAX_VALUE}) {
+      long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(value));
+      assertThat(highest).isAtLeast(value);
+    }
+    assertThat(LatencyHistogram.bucketIndex(-1)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright 2026 The Buildfarm Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package build.buildfarm.worker.shard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.FileNode;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DirectoryCacheTest {
+  private static final Directory DIRECTORY =
+      Directory.newBuilder().addFiles(FileNode.newBuilder().setName("file")).build();
+
+  @Test
+  public void internReturnsCachedInstance() {
+    DirectoryCache cache = new DirectoryCache(1024);
+    Directory parsed = DIRECTORY.toBuilder().build();
+
+    assertThat(cache.intern("hash", DIRECTORY)).isSameInstanceAs(DIRECTORY);
+    assertThat(cache.intern("hash", parsed)).isSameInstanceAs(DIRECTORY);
+    assertThat(cache.get("hash")).isSameInstanceAs(DIRECTORY);
+  }
+
+  @Test
+  public void missingDirectoryIsNull() {
+    DirectoryCache cache = new DirectoryCache(1024);
+
+    assertThat(cache.get("hash")).isNull();
+  }
+
+  @Test
+  public void directoriesLargerThanCacheAreNotRetained() {
+    DirectoryCache cache = new DirectoryCache(/* maxSizeBytes= */ 0);
+
+    assertThat(cache.intern("hash", DIRECTORY)).isSameInstanceAs(DIRECTORY);
+    assertThat(cache.get("hash")).isNull();
+  }
+}
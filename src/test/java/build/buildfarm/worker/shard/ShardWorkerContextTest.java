@@ -28,13 +28,20 @@ import static org.mockito.Mockito.when;
 
 import build.bazel.remote.execution.v2.ActionResult;
 import build.bazel.remote.execution.v2.Command;
+import build.bazel.remote.execution.v2.Compressor;
 import build.bazel.remote.execution.v2.DigestFunction;
+import build.bazel.remote.execution.v2.Directory;
+import build.bazel.remote.execution.v2.DirectoryNode;
+import build.bazel.remote.execution.v2.FileNode;
 import build.bazel.remote.execution.v2.OutputFile;
 import build.bazel.remote.execution.v2.Platform;
 import build.bazel.remote.execution.v2.Platform.Property;
+import build.bazel.remote.execution.v2.SymlinkNode;
 import build.buildfarm.backplane.Backplane;
 import build.buildfarm.cas.ContentAddressableStorage;
 import build.buildfarm.common.Claim;
+import build.buildfarm.common.DigestUtil;
+import build.buildfarm.common.DigestUtil.HashFunction;
 import build.buildfarm.common.Dispenser;
 import build.buildfarm.common.InputStreamFactory;
 import build.buildfarm.common.config.BuildfarmConfigs;
@@ -42,7 +49,10 @@ import build.buildfarm.common.config.ExecutionPolicy;
 import build.buildfarm.common.config.Queue;
 import build.buildfarm.instance.Instance;
 import build.buildfarm.v1test.Digest;
+import build.buildfarm.v1test.ExecuteEntry;
 import build.buildfarm.v1test.QueueEntry;
+import build.buildfarm.v1test.QueuedOperation;
+import build.buildfarm.v1test.Tree;
 import build.buildfarm.worker.ExecFileSystem;
 import build.buildfarm.worker.MatchListener;
 import build.buildfarm.worker.WorkerContext;
@@ -51,11 +61,14 @@ import build.buildfarm.worker.resources.LocalResourceSet.PoolResource;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.jimfs.Jimfs;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Duration;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -235,4 +248,77 @@ public class ShardWorkerContextTest {
     verify(listener, times(2)).onWaitEnd();
     verifyNoMoreInteractions(listener);
   }
+
+  private static DirectoryNode directoryNode(String name, Digest digest) {
+    return DirectoryNode.newBuilder().setName(name).setDigest(DigestUtil.toDigest(digest)).build();
+  }
+
+  @Test
+  public void getQueuedOperationFetchesOmittedDirectories() throws Exception {
+    DigestUtil digestUtil = new DigestUtil(HashFunction.SHA256);
+    Map<String, ByteString> blobs = new HashMap<>();
+    Directory leaf =
+        Directory.newBuilder()
+            .addSymlinks(SymlinkNode.newBuilder().setName("link").setTarget("target"))
+            .build();
+    Digest leafDigest = digestUtil.compute(leaf);
+    blobs.put(leafDigest.getHash(), leaf.toByteString());
+    Directory left =
+        Directory.newBuilder().addDirectories(directoryNode("leaf", leafDigest)).build();
+    Digest leftDigest = digestUtil.compute(left);
+    blobs.put(leftDigest.getHash(), left.toByteString());
+    Directory right =
+        Directory.newBuilder().addFiles(FileNode.newBuilder().setName("file")).build();
+    Digest rightDigest = digestUtil.compute(right);
+    blobs.put(rightDigest.getHash(), right.toByteString());
+    Directory root =
+        Directory.newBuilder()
+            .addDirectories(directoryNode("left", leftDigest))
+            .addDirectories(directoryNode("right", rightDigest))
+            .build();
+    Digest rootDigest = digestUtil.compute(root);
+    // only the root is included, the subdirectories are referenced
+    QueuedOperation queuedOperation =
+        QueuedOperation.newBuilder()
+            .setTree(
+                Tree.newBuilder()
+                    .setRootDigest(rootDigest)
+                    .putDirectories(rootDigest.getHash(), root))
+            .build();
+    Digest queuedOperationDigest = digestUtil.compute(queuedOperation.toByteString());
+    blobs.put(queuedOperationDigest.getHash(), queuedOperation.toByteString());
+    when(inputStreamFactory.newInput(any(Compressor.Value.class), any(Digest.class), eq(0L)))
+        .thenAnswer(
+            invocation -> blobs.get(invocation.getArgument(1, Digest.class).getHash()).newInput());
+    QueueEntry queueEntry =
+        QueueEntry.newBuilder()
+            .setExecuteEntry(
+                ExecuteEntry.newBuilder()
+                    .setActionDigest(
+                        Digest.newBuilder().setDigestFunction(digestUtil.getDigestFunction())))
+            .setQueuedOperationDigest(queuedOperationDigest)
+            .build();
+    WorkerContext context = createTestContext();
+
+    QueuedOperation resolved = context.getQueuedOperation(queueEntry);
+
+    assertThat(resolved.getTree().getDirectoriesMap())
+        .containsExactly(
+            rootDigest.getHash(),
+            root,
+            leftDigest.getHash(),
+            left,
+            rightDigest.getHash(),
+            right,
+            leafDigest.getHash(),
+            leaf);
+    // the queued operation and each omitted directory
+    verify(inputStreamFactory, times(4))
+        .newInput(any(Compressor.Value.class), any(Digest.class), eq(0L));
+
+    // fetched directories are resolved from the directory cache
+    assertThat(context.getQueuedOperation(queueEntry)).isEqualTo(resolved);
+    verify(inputStreamFactory, times(5))
+        .newInput(any(Compressor.Value.class), any(Digest.class), eq(0L));
+  }
 }